@@ -0,0 +1,69 @@
+package tetris.jmh;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the benchmarks of TetrisBenchmark under JMH, one forked JVM for each
+ * name, with the same warmup and measurement iterations. JMH will not take a
+ * benchmark from the default package, which the game is in, so the
+ * operations are looked up by name through TetrisBenchmark.getOperation()
+ * when each fork starts, and are set up exactly as the console harness sets
+ * them up.
+ *
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class TetrisBenchmarks {
+    
+    @Param({"well_checkCollision", "well_ghostDrop", "well_getDropDistance",
+        "movegen_generate", "table_probeAndStore", "well_copyFrom",
+        "well_copyBlocksFrom", "well_copyFrom_settle_0_lines",
+        "well_copyFrom_settle_1_lines", "well_copyFrom_settle_2_lines",
+        "well_copyFrom_settle_3_lines", "well_copyFrom_settle_4_lines",
+        "tetrimino_getCoordinates", "bag_pickTetrimino",
+        "engine_randomInputAndTick", "engine_writeSnapshot",
+        "engine_readSnapshot", "view_update_drain", "grid_paintComponent",
+        "grid_clearRow"})
+    public String name;
+    
+    private LongSupplier operation;
+    
+    /**
+     * Looks up the operation of the benchmark being run.
+     * @throws ReflectiveOperationException if TetrisBenchmark is missing
+     */
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        operation = (LongSupplier) Class.forName("TetrisBenchmark")
+            .getMethod("getOperation", String.class).invoke(null, name);
+    }
+    
+    /**
+     * Runs the operation once.
+     * @return the value of the operation, which JMH consumes
+     */
+    @Benchmark
+    public long run() {
+        return operation.getAsLong();
+    }
+
+}
@@ -1,12 +1,18 @@
 
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import javax.swing.*;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 /**
  * This class creates a customized JPanel designed to display a grid of blocks.
+ * The blocks are drawn into an offscreen image as they change, so painting the
+ * panel only has to copy that image to the screen. Only the blocks that have
+ * changed are repainted. Changes can be grouped between calls to beginUpdate()
+ * and endUpdate(), so that the panel is only asked to repaint once, for the
+ * smallest rectangle holding all the changes.
  * 
  * @author John Cowgill, Baldwin Browne, Chunda Zeng
  * @version October 26, 2014
@@ -43,6 +49,32 @@ public class BlockGridPanel extends JPanel {
      */
     private List<Block[]> blocks;
     
+    /**
+     * The rows and columns of the blocks that have changed since the panel was
+     * last asked to repaint. There are no changed blocks if dirty_top is
+     * greater than dirty_bottom.
+     */
+    private int dirty_top, dirty_bottom, dirty_left, dirty_right;
+    
+    /**
+     * The number of calls to beginUpdate() without a matching endUpdate().
+     */
+    private int update_depth;
+    
+    /**
+     * The offscreen image holding the drawn blocks, and the Graphics used to
+     * draw into it. The image is one pixel wider and taller than the grid so
+     * that the outlines of the last column and row fit.
+     */
+    private BufferedImage image;
+    private Graphics2D image_graphics;
+    
+    /**
+     * The TetrisMetrics that the time taken to paint the panel is recorded
+     * in, or null if it is not recorded.
+     */
+    private TetrisMetrics metrics;
+    
     /**
      * Constructor for a new BlockGridPanel.
      * @param rows the number of rows on the grid
@@ -58,10 +90,12 @@ public class BlockGridPanel extends JPanel {
         this.rows = 0; // This value will be set by addNewRow below
         this.columns = columns;
         this.block_size = block_size;
-        blocks = new LinkedList<Block[]>(); // Create the list of rows
+        blocks = new ArrayList<Block[]>(); // Create the list of rows
+        clearDirtyRegion();
         for(int r = 0; r < rows; r++) {
             addNewRow(r, null, null); // Add all of the rows to the list
         }
+        resizeImage(); // Create the offscreen image and draw the blocks
     }
     
     /**
@@ -81,6 +115,15 @@ public class BlockGridPanel extends JPanel {
         }
         blocks.add(r, row);
         rows++;
+        if(image != null) {
+            // Move the rows below down in the image, then draw the new row
+            resizeImage();
+            image_graphics.setClip(null);
+            image_graphics.copyArea(0, r * block_size, image.getWidth(),
+                (rows - 1 - r) * block_size + 1, 0, block_size);
+            renderBlocks(r, 0, r, columns - 1);
+        }
+        markDirty(r, 0, rows - 1, columns - 1); // The rows below have moved
     }
     
     /**
@@ -93,7 +136,51 @@ public class BlockGridPanel extends JPanel {
             throw new IllegalArgumentException("Invalid argument!");
         }
         blocks.remove(r);
+        markDirty(r, 0, rows - 1, columns - 1); // The rows below have moved
         rows--;
+        if(image != null) {
+            // Move the rows below up in the image, then redraw the outlines
+            // where the removed row used to be
+            image_graphics.setClip(null);
+            image_graphics.copyArea(0, (r + 1) * block_size, image.getWidth(),
+                (rows - r) * block_size + 1, 0, -block_size);
+            resizeImage();
+            if(rows > 0) {
+                renderBlocks(Math.max(0, r - 1), 0, Math.min(r, rows - 1), columns - 1);
+            }
+        }
+    }
+    
+    /**
+     * Used to clear a row of blocks from the grid, as when lines are cleared in
+     * the well. Row r is removed, the rows from top to r - 1 are moved down by
+     * one, and an empty row is put in at top. The number of rows stays the
+     * same, so the blocks of the rows that move are copied in the offscreen
+     * image instead of being drawn again.
+     * @param r the index of the row to clear
+     * @param top the index of the uppermost row that moves down
+     * @param fill_color the Color to use to fill the blocks in the empty row
+     * @param draw_color the Color to use to draw the outline for each block
+     */
+    public void clearRow(int r, int top, Color fill_color, Color draw_color) {
+        // Check for valid parameters
+        if(r < 0 || r >= rows || top < 0 || top > r) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        Block[] row = blocks.remove(r); // Reuse the blocks of the cleared row
+        for(int c = 0; c < columns; c++) {
+            row[c].fill_color = fill_color;
+            row[c].draw_color = draw_color;
+        }
+        blocks.add(top, row);
+        if(r > top) {
+            image_graphics.setClip(null);
+            image_graphics.copyArea(0, top * block_size, image.getWidth(),
+                (r - top) * block_size, 0, block_size);
+            renderBlocks(r, 0, r, columns - 1); // The outline below the moved rows
+        }
+        renderBlocks(top, 0, top, columns - 1);
+        markDirty(top, 0, r, columns - 1);
     }
     
     /**
@@ -160,25 +247,48 @@ public class BlockGridPanel extends JPanel {
         if(r < 0 || r >= rows || c < 0 || c >= columns) {
             throw new IllegalArgumentException("Invalid argument!");
         }
-        blocks.get(r)[c].fill_color = fill_color;
-        blocks.get(r)[c].draw_color = draw_color;
-        repaint(); // Redraw the entire block grid to reflect the changes
+        Block b = blocks.get(r)[c];
+        b.fill_color = fill_color;
+        b.draw_color = draw_color;
+        renderBlocks(r, c, r, c);
+        markDirty(r, c, r, c);
     }
     
     /**
-     * Change the colors of multiple blocks on the grid using a list of
-     * ModifyBlock objects. This method is more efficient than calling the
-     * previous paintBlock() method repeatedly, because it will change all of
-     * the desired blocks and then call repaint() only once instead of once
-     * for each block that needs to be changed.
-     * @param list the list of blocks that need to be changed
+     * Change the colors for all of the blocks in a row on the grid.
+     * @param r the row of the blocks to change
+     * @param fill_color the new fill Color for the blocks
+     * @param draw_color the new outline Color for the blocks
      */
-    public void paintBlockList(List<ModifyBlock> list) {
-        for(ModifyBlock b : list) {
-            blocks.get(b.row)[b.column].fill_color = b.fill_color;
-            blocks.get(b.row)[b.column].draw_color = b.draw_color;
+    public void paintRow(int r, Color fill_color, Color draw_color) {
+        // Check for valid parameter
+        if(r < 0 || r >= rows) {
+            throw new IllegalArgumentException("Invalid argument!");
         }
-        repaint(); // Redraw the entire block grid to reflect the changes
+        Block[] row = blocks.get(r);
+        for(int c = 0; c < columns; c++) {
+            row[c].fill_color = fill_color;
+            row[c].draw_color = draw_color;
+        }
+        renderBlocks(r, 0, r, columns - 1);
+        markDirty(r, 0, r, columns - 1);
+    }
+    
+    /**
+     * Change the colors of multiple blocks on the grid using a buffer of
+     * blocks to modify. The changes are made as a single batch, so the panel
+     * is only asked to repaint once for all of them.
+     * @param buffer the ModifyBlockBuffer of blocks that need to be changed
+     */
+    public void paintBlockList(ModifyBlockBuffer buffer) {
+        BlockPalette palette = buffer.getPalette();
+        beginUpdate();
+        for(int i = 0; i < buffer.size(); i++) {
+            int color = buffer.getColor(i);
+            paintBlock(buffer.getRow(i), buffer.getColumn(i),
+                palette.getFillColor(color), palette.getDrawColor(color));
+        }
+        endUpdate();
     }
     
     /**
@@ -193,19 +303,147 @@ public class BlockGridPanel extends JPanel {
                 blocks.get(r)[c].draw_color = draw_color;
             }
         }
-        repaint(); // Redraw the entire block grid to reflect the changes
+        renderBlocks(0, 0, rows - 1, columns - 1);
+        markDirty(0, 0, rows - 1, columns - 1);
     }
     
     /**
-     * This overrides the paintComponent method in JPanel so that the blocks on
-     * the grid will be displayed each time repaint() is called.
-     * @param g the Graphics component to use
+     * This overrides the setBackground method in JPanel so that the blocks in
+     * the offscreen image are drawn again over the new background.
+     * @param bg the new background Color
      */
     @Override
-    public void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        for(int r = 0; r < rows; r++) {
-            for(int c = 0; c < columns; c++) {
+    public void setBackground(Color bg) {
+        super.setBackground(bg);
+        if(image != null) renderBlocks(0, 0, rows - 1, columns - 1);
+    }
+    
+    /**
+     * Sets the TetrisMetrics that the time taken to paint the panel will be
+     * recorded in.
+     * @param metrics the TetrisMetrics, or null to stop recording
+     */
+    public void setMetrics(TetrisMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Starts a batch of changes to the grid. The panel will not be asked to
+     * repaint until the matching call to endUpdate(). Batches may be nested.
+     */
+    public void beginUpdate() {
+        update_depth++;
+    }
+    
+    /**
+     * Ends a batch of changes to the grid. When the outermost batch ends, the
+     * panel is asked to repaint the smallest rectangle holding every block
+     * that changed during the batch.
+     */
+    public void endUpdate() {
+        if(update_depth == 0) {
+            throw new IllegalStateException("No update in progress!");
+        }
+        update_depth--;
+        if(update_depth == 0) repaintDirtyRegion();
+    }
+    
+    /**
+     * Records that a rectangle of blocks has changed, and asks the panel to
+     * repaint them unless a batch of changes is in progress.
+     * @param top the top row of the changed blocks
+     * @param left the left column of the changed blocks
+     * @param bottom the bottom row of the changed blocks
+     * @param right the right column of the changed blocks
+     */
+    private void markDirty(int top, int left, int bottom, int right) {
+        dirty_top = Math.min(dirty_top, top);
+        dirty_left = Math.min(dirty_left, left);
+        dirty_bottom = Math.max(dirty_bottom, bottom);
+        dirty_right = Math.max(dirty_right, right);
+        if(update_depth == 0) repaintDirtyRegion();
+    }
+    
+    /**
+     * Forgets about all of the changed blocks.
+     */
+    private void clearDirtyRegion() {
+        dirty_top = dirty_left = Integer.MAX_VALUE;
+        dirty_bottom = dirty_right = -1;
+    }
+    
+    /**
+     * Asks the panel to repaint the rectangle holding all of the changed
+     * blocks. The outline of each block extends one pixel past the right and
+     * bottom of the block, so the rectangle is one pixel larger to include it.
+     */
+    private void repaintDirtyRegion() {
+        if(dirty_top > dirty_bottom) return;
+        repaint(dirty_left * block_size, dirty_top * block_size,
+            (dirty_right - dirty_left + 1) * block_size + 1,
+            (dirty_bottom - dirty_top + 1) * block_size + 1);
+        clearDirtyRegion();
+    }
+    
+    /**
+     * Replaces the offscreen image with one that fits the current number of
+     * rows, keeping as much of the old image as fits in the new one.
+     */
+    private void resizeImage() {
+        int width = columns * block_size + 1;
+        int height = rows * block_size + 1;
+        BufferedImage old_image = image;
+        if(GraphicsEnvironment.isHeadless()) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        } else {
+            image = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleImage(width, height);
+        }
+        if(image_graphics != null) image_graphics.dispose();
+        image_graphics = image.createGraphics();
+        if(old_image == null) {
+            renderBlocks(0, 0, rows - 1, columns - 1);
+        } else {
+            image_graphics.drawImage(old_image, 0, 0, null);
+        }
+    }
+    
+    /**
+     * Draws a rectangle of blocks into the offscreen image, including their
+     * outlines and the outlines of the neighboring blocks that overlap them.
+     * @param top the top row of the blocks to draw
+     * @param left the left column of the blocks to draw
+     * @param bottom the bottom row of the blocks to draw
+     * @param right the right column of the blocks to draw
+     */
+    private void renderBlocks(int top, int left, int bottom, int right) {
+        if(image == null) return; // Still in the constructor
+        int x = left * block_size, y = top * block_size;
+        int width = (right - left + 1) * block_size + 1;
+        int height = (bottom - top + 1) * block_size + 1;
+        image_graphics.setClip(x, y, width, height);
+        image_graphics.setColor(getBackground());
+        image_graphics.fillRect(x, y, width, height);
+        paintBlocks(image_graphics, x, y, width, height);
+    }
+    
+    /**
+     * Paints the blocks inside a clip area, along with the blocks just above
+     * and to the left of it, whose outlines extend into the clip area.
+     * @param g the Graphics component to use
+     * @param x the left edge of the clip area
+     * @param y the top edge of the clip area
+     * @param width the width of the clip area
+     * @param height the height of the clip area
+     */
+    private void paintBlocks(Graphics g, int x, int y, int width, int height) {
+        int top = Math.max(0, Math.floorDiv(y - 1, block_size));
+        int left = Math.max(0, Math.floorDiv(x - 1, block_size));
+        int bottom = Math.min(rows - 1, (y + height - 1) / block_size);
+        int right = Math.min(columns - 1, (x + width - 1) / block_size);
+        for(int r = top; r <= bottom; r++) {
+            for(int c = left; c <= right; c++) {
                 Block b = blocks.get(r)[c];
                 if(b.fill_color != null) { // Do not fill a block if the Color is null
                     g.setColor(b.fill_color);
@@ -219,6 +457,30 @@ public class BlockGridPanel extends JPanel {
         }
     }
     
+    /**
+     * This overrides the paintComponent method in JPanel so that the blocks on
+     * the grid will be displayed each time repaint() is called, by copying the
+     * offscreen image where they have already been drawn.
+     * @param g the Graphics component to use
+     */
+    @Override
+    public void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        TetrisFlightEvents.GridPaint event = new TetrisFlightEvents.GridPaint();
+        event.begin();
+        super.paintComponent(g);
+        g.drawImage(image, 0, 0, null);
+        if(metrics != null) metrics.recordPaint(start);
+        if(event.shouldCommit()) {
+            Rectangle clip = g.getClipBounds();
+            event.rows = rows;
+            event.columns = columns;
+            event.clip_width = clip == null ? getWidth() : clip.width;
+            event.clip_height = clip == null ? getHeight() : clip.height;
+            event.commit();
+        }
+    }
+    
     /**
      * This overrides the getPreferredSize() method in JPanel so that the size
      * of the panel created will be large enough to display the entire grid of
@@ -0,0 +1,56 @@
+import java.awt.*;
+
+/**
+ * An immutable table of the colors used to paint blocks on a BlockGridPanel.
+ * Each entry pairs a fill Color with an outline Color, so a block can be
+ * described by a single int index into the table instead of two Colors.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public final class BlockPalette {
+    
+    private final Color[] fill_colors, draw_colors;
+    
+    /**
+     * Constructor for a new BlockPalette. Either Color of an entry may be null,
+     * in which case that part of the block is not painted.
+     * @param fill_colors the Color used to fill the blocks of each entry
+     * @param draw_colors the Color used to draw the outline of each entry
+     */
+    public BlockPalette(Color[] fill_colors, Color[] draw_colors) {
+        // Check for valid parameters
+        if(fill_colors.length != draw_colors.length) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.fill_colors = fill_colors.clone();
+        this.draw_colors = draw_colors.clone();
+    }
+    
+    /**
+     * Get the number of entries in the palette.
+     * @return the number of entries
+     */
+    public int size() {
+        return fill_colors.length;
+    }
+    
+    /**
+     * Get the fill Color of an entry in the palette.
+     * @param index the index of the entry
+     * @return the fill Color
+     */
+    public Color getFillColor(int index) {
+        return fill_colors[index];
+    }
+    
+    /**
+     * Get the outline Color of an entry in the palette.
+     * @param index the index of the entry
+     * @return the outline Color
+     */
+    public Color getDrawColor(int index) {
+        return draw_colors[index];
+    }
+
+}
@@ -0,0 +1,27 @@
+/**
+ * A BoardEvaluator judges how good a position is for a bot, so that a
+ * LookaheadSearch can compare the wells it reaches. The value of a line of
+ * play is the reward for every line clear along the way plus the evaluation
+ * of the well it ends in, and higher is better in both cases. Keeping the two
+ * apart means the evaluation depends on the well alone.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public interface BoardEvaluator {
+    
+    /**
+     * Judge the shape of the stack in a well.
+     * @param well the TetriminoWell
+     * @return the value of the well, higher being better
+     */
+    double evaluate(TetriminoWell well);
+    
+    /**
+     * Get the reward for clearing lines with one Tetrimino.
+     * @param lines the number of lines cleared, from 0 to 4
+     * @return the reward, higher being better
+     */
+    double getClearReward(int lines);
+
+}
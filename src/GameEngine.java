@@ -0,0 +1,301 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The GameEngine runs a game of Tetris without any user interface. It owns a
+ * TetrisModel, applies inputs to it with step(), advances the simulation with
+ * tick(), and exposes the resulting game state. Nothing here depends on the
+ * TetrisController, the TetrisView, Swing or AWT, so many GameEngines can be
+ * run in a tight loop or on a headless server.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class GameEngine implements TetrisModelListener {
+    
+    /**
+     * The different inputs a player may give to the game.
+     * Each one corresponds to an action supported by the TetrisModel.
+     */
+    public enum Input {
+        MOVE_LEFT, MOVE_RIGHT, MOVE_DOWN, ROTATE_CLOCKWISE,
+        ROTATE_COUNTER_CLOCKWISE, HOLD_EXCHANGE, DROP
+    }
+    
+    /**
+     * The number of bytes written by writeSnapshot(): the TetrisModel's
+     * snapshot followed by the tick count and the game over flag.
+     */
+    public static final int SNAPSHOT_SIZE = TetrisModel.SNAPSHOT_SIZE + 4 + 1;
+    
+    private TetrisModel model;
+    private TetrisModelListener listener;
+    private GameRecorder recorder;
+    private boolean game_over;
+    private int ticks;
+    
+    /**
+     * Constructor for a new GameEngine, which starts a new game right away.
+     */
+    public GameEngine() {
+        model = new TetrisModel(this);
+        reset();
+    }
+    
+    /**
+     * Sets a TetrisModelListener that will be forwarded the events published
+     * by the TetrisModel. By default the events are discarded.
+     * @param listener the TetrisModelListener, or null for none
+     */
+    public void setListener(TetrisModelListener listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * Sets a GameRecorder that will record every input and tick from now on.
+     * The GameRecorder should be created with the seed of the current game.
+     * @param recorder the GameRecorder, or null to stop recording
+     */
+    public void setRecorder(GameRecorder recorder) {
+        this.recorder = recorder;
+    }
+    
+    /**
+     * Starts a new game with an unpredictable sequence of Tetriminos.
+     */
+    public void reset() {
+        game_over = false;
+        ticks = 0;
+        model.resetModel();
+    }
+    
+    /**
+     * Starts a new game. Games started with the same seed are given the same
+     * sequence of Tetriminos, so the same inputs will play out the same way.
+     * @param seed the seed for the TetriminoBag
+     */
+    public void reset(long seed) {
+        game_over = false;
+        ticks = 0;
+        model.resetModel(seed);
+    }
+    
+    /**
+     * Applies one input to the game.
+     * @param input the Input to apply
+     * @return true if the input was successful, false otherwise
+     */
+    public boolean step(Input input) {
+        if(game_over) return false;
+        if(recorder != null) recorder.recordInput(input);
+        return model.tryInput(input);
+    }
+    
+    /**
+     * Advances the simulation by one step, which is what the TetrisController's
+     * GameLoop does each time the current Tetrimino falls by one row.
+     */
+    public void tick() {
+        if(game_over) return;
+        if(recorder != null) recorder.recordTick();
+        ticks++;
+        model.update();
+    }
+    
+    /**
+     * Writes the complete state of the game as SNAPSHOT_SIZE bytes.
+     * @param buffer the buffer to write to
+     */
+    public void writeSnapshot(ByteBuffer buffer) {
+        model.writeSnapshot(buffer);
+        buffer.putInt(ticks);
+        buffer.put((byte) (game_over ? 1 : 0));
+    }
+    
+    /**
+     * Restores the complete state of the game from a snapshot written by
+     * writeSnapshot(), so that a search can branch the game, or a saved or
+     * crashed game can carry on from where it was. Nothing is recorded by the
+     * GameRecorder, and nothing is sent to the TetrisModelListener. A
+     * snapshot that is not valid leaves the game as it was.
+     * @param buffer the buffer to read from
+     * @throws IllegalArgumentException if the snapshot is not valid
+     */
+    public void readSnapshot(ByteBuffer buffer) {
+        if(buffer.remaining() < SNAPSHOT_SIZE) {
+            throw new IllegalArgumentException("Invalid snapshot!");
+        }
+        model.readSnapshot(buffer);
+        ticks = buffer.getInt();
+        game_over = buffer.get() != 0;
+    }
+    
+    /**
+     * Check to see if the game has ended.
+     * @return true if the well has overflowed, false otherwise
+     */
+    public boolean isGameOver() {
+        return game_over;
+    }
+    
+    /**
+     * Get the number of ticks since the game started.
+     * @return the number of ticks
+     */
+    public int getTicks() {
+        return ticks;
+    }
+    
+    /**
+     * Get the TetrisModel run by this GameEngine, for access to the well, the
+     * current and held Tetriminos, and the game statistics.
+     * @return the TetrisModel
+     */
+    public TetrisModel getModel() {
+        return model;
+    }
+    
+    /**
+     * Get the current level.
+     * @return the level
+     */
+    public int getLevel() {
+        return TetrisScoring.getLevel(model.getSingleLinesCleared(),
+            model.getDoubleLinesCleared(), model.getTripleLinesCleared(),
+            model.getTetrisCleared());
+    }
+    
+    /**
+     * Get the number of lines cleared.
+     * @return the number of lines
+     */
+    public int getLines() {
+        return TetrisScoring.getLines(model.getSingleLinesCleared(),
+            model.getDoubleLinesCleared(), model.getTripleLinesCleared(),
+            model.getTetrisCleared());
+    }
+    
+    /**
+     * Get the current score.
+     * @return the score
+     */
+    public int getScore() {
+        return TetrisScoring.getScore(model.getTetriminosDropped(),
+            model.getSingleLinesCleared(), model.getDoubleLinesCleared(),
+            model.getTripleLinesCleared(), model.getTetrisCleared());
+    }
+    
+    @Override
+    public void queueInsert(int event) {
+        if(listener != null) listener.queueInsert(event);
+    }
+    
+    @Override
+    public void timerHiccup() {
+        if(listener != null) listener.timerHiccup();
+    }
+    
+    @Override
+    public void processStatistics(int tetriminos_dropped,
+        int single_lines_cleared, int double_lines_cleared,
+        int triple_lines_cleared, int tetris_cleared) {
+        if(listener != null) {
+            listener.processStatistics(tetriminos_dropped, single_lines_cleared,
+                double_lines_cleared, triple_lines_cleared, tetris_cleared);
+        }
+    }
+    
+    @Override
+    public void gameOver() {
+        game_over = true;
+        if(listener != null) listener.gameOver();
+    }
+    
+    /**
+     * Test routine.
+     */
+    public static void testGameEngine() {
+        GameEngine engine = new GameEngine();
+        Input[] inputs = Input.values();
+        Random random = new Random();
+        int games = 0;
+        long start = System.nanoTime();
+        while(System.nanoTime() - start < 1000000000L) {
+            engine.reset();
+            while(!engine.isGameOver()) {
+                engine.step(inputs[random.nextInt(inputs.length)]);
+                engine.tick();
+            }
+            games++;
+        }
+        System.out.println("Games played in one second: " + games);
+        System.out.println("Last game score: " + engine.getScore());
+    }
+    
+    /**
+     * Test routine. Takes snapshots at random points of random games, plays
+     * on, then restores each snapshot into a second GameEngine and checks that
+     * the same inputs play out the same way from there.
+     */
+    public static void testSnapshot() {
+        GameEngine engine = new GameEngine();
+        GameEngine branch = new GameEngine();
+        Input[] inputs = Input.values();
+        Random random = new Random(1);
+        ByteBuffer snapshot = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        ByteBuffer copy = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        int[] moves = new int[50];
+        int games = 0, snapshots = 0, mismatches = 0;
+        while(games < 200) {
+            engine.reset(random.nextLong());
+            while(!engine.isGameOver()) {
+                snapshot.clear();
+                engine.writeSnapshot(snapshot);
+                for(int i = 0; i < moves.length; i++) {
+                    moves[i] = random.nextInt(inputs.length + 1);
+                }
+                snapshot.flip();
+                branch.readSnapshot(snapshot);
+                copy.clear();
+                branch.writeSnapshot(copy);
+                if(!Arrays.equals(snapshot.array(), copy.array())) mismatches++;
+                for(int move : moves) {
+                    if(move < inputs.length) {
+                        engine.step(inputs[move]);
+                        branch.step(inputs[move]);
+                    } else {
+                        engine.tick();
+                        branch.tick();
+                    }
+                }
+                snapshot.clear();
+                engine.writeSnapshot(snapshot);
+                copy.clear();
+                branch.writeSnapshot(copy);
+                if(!Arrays.equals(snapshot.array(), copy.array())) mismatches++;
+                snapshots++;
+            }
+            games++;
+        }
+        System.out.println("Snapshots restored: " + snapshots + ", mismatches: " + mismatches);
+        System.out.println("Snapshot size: " + SNAPSHOT_SIZE + " bytes");
+        
+        // Time the restores, which a search does once per branch
+        snapshot.clear();
+        engine.writeSnapshot(snapshot);
+        long sink = 0;
+        for(int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for(int i = 0; i < 1000000; i++) {
+                snapshot.clear();
+                branch.readSnapshot(snapshot);
+                sink += branch.getTicks();
+            }
+            long elapsed = System.nanoTime() - start;
+            System.out.println("Restore: " + elapsed / 1000000.0 + " ns per snapshot");
+        }
+        if(sink == 42) System.out.println();
+    }
+
+}
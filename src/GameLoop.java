@@ -0,0 +1,257 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs the logic of a game at a fixed timestep on its own thread, so that the
+ * speed of the game does not depend on how busy the event dispatch thread is.
+ * The steps are scheduled against System.nanoTime(), each one a fixed number
+ * of nanoseconds after the one before, so that small delays in waking up do
+ * not add up over time. If the loop falls far behind, it runs a limited number
+ * of steps to catch up and then skips the rest. Whenever a step changes the
+ * game, a frame is handed to the event dispatch thread to be presented, and
+ * frames are merged if the event dispatch thread has not caught up yet.
+ * 
+ * How late the loop wakes up, measured from the time its next step was
+ * scheduled, is kept so that the timing of the loop can be checked. A step
+ * that throws an exception is counted as failed and the loop carries on, so
+ * one bad step cannot stop the game for good.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class GameLoop implements Runnable {
+    
+    /**
+     * The game driven by a GameLoop.
+     */
+    public interface Listener {
+        
+        /**
+         * Called on the GameLoop's thread to advance the game by one step.
+         * @param step_nanos the nanoseconds of game time in one step
+         * @return true if the game changed and a frame should be presented
+         */
+        boolean logicStep(long step_nanos);
+        
+        /**
+         * Called on the event dispatch thread to present the latest state of
+         * the game.
+         */
+        void presentFrame();
+    
+    }
+    
+    public static final long DEFAULT_STEP_NANOS = 4000000L; // 250 steps per second
+    public static final int MAX_CATCH_UP_STEPS = 5;
+    
+    private Listener listener;
+    private long step_nanos;
+    private Thread thread;
+    private boolean active;
+    private AtomicBoolean frame_pending;
+    private Runnable present;
+    
+    /**
+     * Statistics about the timing of the steps. They are only written by the
+     * GameLoop's thread, and may be read from any thread.
+     */
+    private volatile long step_count, skipped_steps, failed_steps;
+    private volatile long wake_count, total_lateness, max_lateness;
+    
+    /**
+     * Constructor for a new GameLoop. The loop does not run until start() is
+     * called.
+     * @param listener the Listener that runs the game
+     * @param step_nanos the nanoseconds between the steps
+     */
+    public GameLoop(Listener listener, long step_nanos) {
+        // Check for valid parameter
+        if(step_nanos < 1) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.listener = listener;
+        this.step_nanos = step_nanos;
+        frame_pending = new AtomicBoolean();
+        present = new Runnable() {
+            
+            @Override
+            public void run() {
+                frame_pending.set(false);
+                GameLoop.this.listener.presentFrame();
+            }
+        
+        };
+    }
+    
+    /**
+     * Starts running steps, beginning one step from now. The thread is
+     * created the first time the loop is started, and waits while the loop is
+     * stopped.
+     */
+    public synchronized void start() {
+        if(thread == null) {
+            thread = new Thread(this, "GameLoop");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.start();
+        }
+        active = true;
+        notifyAll();
+    }
+    
+    /**
+     * Stops running steps. A step that has already begun will still finish,
+     * so the Listener should check its own state in logicStep().
+     */
+    public synchronized void stop() {
+        active = false;
+    }
+    
+    /**
+     * Check to see if the loop is running steps.
+     * @return true if the loop has been started and not stopped
+     */
+    public synchronized boolean isActive() {
+        return active;
+    }
+    
+    /**
+     * Waits until the loop is started, if it is not running already.
+     * @return true if the loop had to wait
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private synchronized boolean awaitStart() throws InterruptedException {
+        if(active) return false;
+        while(!active) wait();
+        return true;
+    }
+    
+    /**
+     * The body of the GameLoop's thread.
+     */
+    @Override
+    public void run() {
+        long next_step = System.nanoTime() + step_nanos;
+        try {
+            while(true) {
+                if(awaitStart()) next_step = System.nanoTime() + step_nanos;
+                long now = System.nanoTime();
+                if(now - next_step < 0) {
+                    LockSupport.parkNanos(next_step - now);
+                    continue;
+                }
+                recordLateness(now - next_step);
+                boolean frame = false;
+                int steps = 0;
+                // Catch up on the steps that are due, measured from when they
+                // were scheduled rather than when they ran, to prevent drift
+                while(now - next_step >= 0 && steps < MAX_CATCH_UP_STEPS) {
+                    if(runStep()) frame = true;
+                    next_step += step_nanos;
+                    steps++;
+                }
+                step_count += steps;
+                if(now - next_step >= 0) {
+                    // Too far behind, so skip the rest and start over from now
+                    skipped_steps += (now - next_step) / step_nanos + 1;
+                    next_step = now + step_nanos;
+                }
+                if(frame && frame_pending.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(present);
+                }
+            }
+        } catch(InterruptedException e) {
+            // The thread was asked to end
+        }
+    }
+    
+    /**
+     * Runs one step of the game. If the step throws an exception, the stack
+     * trace of the first failure is printed and the rest are only counted, so
+     * a step that fails every time does not flood the console.
+     * @return true if the game changed and a frame should be presented
+     */
+    private boolean runStep() {
+        try {
+            return listener.logicStep(step_nanos);
+        } catch(RuntimeException e) {
+            if(failed_steps == 0) e.printStackTrace();
+            failed_steps++;
+            // Present a frame anyway, since the step may have changed the game
+            return true;
+        }
+    }
+    
+    /**
+     * Records how late a step was.
+     * @param nanos the nanoseconds after its scheduled time that it ran
+     */
+    private void recordLateness(long nanos) {
+        wake_count++;
+        total_lateness += nanos;
+        if(nanos > max_lateness) max_lateness = nanos;
+    }
+    
+    /**
+     * Get the nanoseconds between the steps.
+     * @return the step size
+     */
+    public long getStepNanos() {
+        return step_nanos;
+    }
+    
+    /**
+     * Get the number of steps that have been run.
+     * @return the number of steps
+     */
+    public long getStepCount() {
+        return step_count;
+    }
+    
+    /**
+     * Get the number of steps that were skipped because the loop fell too far
+     * behind.
+     * @return the number of skipped steps
+     */
+    public long getSkippedSteps() {
+        return skipped_steps;
+    }
+    
+    /**
+     * Get the number of steps that threw an exception.
+     * @return the number of failed steps
+     */
+    public long getFailedSteps() {
+        return failed_steps;
+    }
+    
+    /**
+     * Get the average lateness of the loop, measured each time it woke up to
+     * run the steps that were due.
+     * @return the average nanoseconds late
+     */
+    public long getMeanJitterNanos() {
+        long count = wake_count;
+        return count == 0 ? 0 : total_lateness / count;
+    }
+    
+    /**
+     * Get the worst lateness of the loop.
+     * @return the most nanoseconds late
+     */
+    public long getMaxJitterNanos() {
+        return max_lateness;
+    }
+    
+    /**
+     * Get a summary of the timing of the loop.
+     * @return the summary
+     */
+    public String getJitterReport() {
+        return String.format("steps %d, skipped %d, failed %d, jitter mean %d ns, max %d ns",
+            getStepCount(), getSkippedSteps(), getFailedSteps(), getMeanJitterNanos(),
+            getMaxJitterNanos());
+    }
+
+}
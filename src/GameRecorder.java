@@ -0,0 +1,127 @@
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Records a game so that it can be replayed later by a GameReplay. Since the
+ * TetriminoBag is seeded, a game is completely described by its seed and the
+ * order of its inputs and ticks, which are stored in a compact binary format.
+ * 
+ * The format starts with the four byte magic number "TREC", a version byte,
+ * and the seed as a variable length integer. Each input follows as a single
+ * variable length integer holding the number of ticks since the previous
+ * input in the upper bits and the Input ordinal in the lower three bits. The
+ * recording ends with an entry using the END code, holding the ticks after
+ * the last input. Variable length integers are stored seven bits per byte,
+ * least significant first, with the high bit set on every byte but the last.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class GameRecorder {
+    
+    public static final int MAGIC = 0x54524543; // "TREC"
+    public static final int VERSION = 1;
+    public static final int END = 7;
+    
+    private long seed;
+    private byte[] data = new byte[256];
+    private int size;
+    private long pending_ticks;
+    private int total_ticks;
+    
+    /**
+     * Constructor for a new GameRecorder.
+     * @param seed the seed the game's TetriminoBag was created with
+     */
+    public GameRecorder(long seed) {
+        this.seed = seed;
+    }
+    
+    /**
+     * Get the seed of the recorded game.
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * Get the number of ticks recorded so far.
+     * @return the number of ticks
+     */
+    public int getTotalTicks() {
+        return total_ticks;
+    }
+    
+    /**
+     * Records one tick of the game.
+     */
+    public void recordTick() {
+        pending_ticks++;
+        total_ticks++;
+    }
+    
+    /**
+     * Records one input to the game.
+     * @param input the Input that was given
+     */
+    public void recordInput(GameEngine.Input input) {
+        writeVarLong((pending_ticks << 3) | input.ordinal());
+        pending_ticks = 0;
+    }
+    
+    /**
+     * Appends a variable length integer to the recorded data.
+     * @param value the value to append, treated as unsigned
+     */
+    private void writeVarLong(long value) {
+        if(size + 10 > data.length) {
+            data = Arrays.copyOf(data, 2 * data.length);
+        }
+        while((value & ~0x7FL) != 0) {
+            data[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[size++] = (byte) value;
+    }
+    
+    /**
+     * Writes the complete recording to a stream.
+     * @param out the OutputStream to write to
+     * @throws IOException if the recording could not be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeByte(VERSION);
+        long value = seed;
+        while((value & ~0x7FL) != 0) {
+            dout.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        dout.writeByte((int) value);
+        dout.write(data, 0, size);
+        value = (pending_ticks << 3) | END;
+        while((value & ~0x7FL) != 0) {
+            dout.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        dout.writeByte((int) value);
+        dout.flush();
+    }
+    
+    /**
+     * Saves the complete recording to a file.
+     * @param file the name of the file to save to
+     * @throws IOException if the file could not be written
+     */
+    public void save(String file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+    
+}
@@ -0,0 +1,167 @@
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * A game recorded by a GameRecorder, loaded back into memory so it can be
+ * replayed. Replays can be played headlessly on a GameEngine as fast as the
+ * processor allows, or in the user interface by the TetrisController at
+ * normal speed or faster.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class GameReplay {
+    
+    private static final GameEngine.Input[] INPUTS = GameEngine.Input.values();
+    
+    private long seed;
+    private int[] ticks;
+    private byte[] inputs;
+    private int count;
+    private int total_ticks;
+    
+    /**
+     * Constructor reads a recording from a stream.
+     * @param in the InputStream to read from
+     * @throws IOException if the recording could not be read or is invalid
+     */
+    public GameReplay(InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(new BufferedInputStream(in));
+        if(din.readInt() != GameRecorder.MAGIC) {
+            throw new IOException("Invalid replay!");
+        }
+        if(din.readUnsignedByte() != GameRecorder.VERSION) {
+            throw new IOException("Unsupported replay version!");
+        }
+        seed = readVarLong(din);
+        ticks = new int[64];
+        inputs = new byte[64];
+        int tick = 0;
+        while(true) {
+            long value = readVarLong(din);
+            tick += (int) (value >>> 3);
+            int code = (int) (value & 7);
+            if(code == GameRecorder.END) break;
+            if(code >= INPUTS.length) {
+                throw new IOException("Invalid replay!");
+            }
+            if(count == ticks.length) {
+                ticks = Arrays.copyOf(ticks, 2 * count);
+                inputs = Arrays.copyOf(inputs, 2 * count);
+            }
+            ticks[count] = tick;
+            inputs[count] = (byte) code;
+            count++;
+        }
+        total_ticks = tick;
+    }
+    
+    /**
+     * Loads a recording from a file.
+     * @param file the name of the file to load
+     * @return the GameReplay
+     * @throws IOException if the file could not be read or is invalid
+     */
+    public static GameReplay load(String file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return new GameReplay(in);
+        } finally {
+            in.close();
+        }
+    }
+    
+    /**
+     * Reads a variable length integer written by the GameRecorder.
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Invalid replay!");
+    }
+    
+    /**
+     * Get the seed the game's TetriminoBag was created with.
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * Get the number of inputs in the recording.
+     * @return the number of inputs
+     */
+    public int getInputCount() {
+        return count;
+    }
+    
+    /**
+     * Get the tick that an input was given on, counted from the start of the
+     * game. The input was given after that many ticks had passed.
+     * @param i the index of the input
+     * @return the tick of the input
+     */
+    public int getInputTick(int i) {
+        return ticks[i];
+    }
+    
+    /**
+     * Get an input from the recording.
+     * @param i the index of the input
+     * @return the Input
+     */
+    public GameEngine.Input getInput(int i) {
+        return INPUTS[inputs[i]];
+    }
+    
+    /**
+     * Get the number of ticks in the recording.
+     * @return the number of ticks
+     */
+    public int getTotalTicks() {
+        return total_ticks;
+    }
+    
+    /**
+     * Replays the recording on a GameEngine as fast as possible.
+     * @param engine the GameEngine to replay the game on
+     */
+    public void play(GameEngine engine) {
+        engine.reset(seed);
+        int tick = 0;
+        for(int i = 0; i < count; i++) {
+            while(tick < ticks[i]) {
+                engine.tick();
+                tick++;
+            }
+            engine.step(INPUTS[inputs[i]]);
+        }
+        while(tick < total_ticks && !engine.isGameOver()) {
+            engine.tick();
+            tick++;
+        }
+    }
+    
+    /**
+     * Replays recordings headlessly and reports their results.
+     * @param args the names of the files to replay
+     */
+    public static void main(String[] args) throws IOException {
+        GameEngine engine = new GameEngine();
+        for(String file : args) {
+            GameReplay replay = load(file);
+            long start = System.nanoTime();
+            replay.play(engine);
+            long nanos = System.nanoTime() - start;
+            System.out.println(String.format("%s: score %d, lines %d, level %d, %d inputs, %d ticks, replayed in %.3f ms",
+                file, engine.getScore(), engine.getLines(), engine.getLevel(),
+                replay.getInputCount(), replay.getTotalTicks(), nanos / 1e6));
+        }
+    }
+    
+}
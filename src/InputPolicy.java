@@ -0,0 +1,23 @@
+/**
+ * An InputPolicy decides which inputs to give a GameEngine, standing in for
+ * the player when games are simulated without a user interface.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public interface InputPolicy {
+    
+    /**
+     * Called before the start of each game.
+     * @param seed the seed for any random choices made during the game
+     */
+    void reset(long seed);
+    
+    /**
+     * Decide the next input to give the game.
+     * @param engine the GameEngine being played
+     * @return the next Input, or null to wait for the next tick
+     */
+    GameEngine.Input nextInput(GameEngine engine);
+    
+}
@@ -0,0 +1,225 @@
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies in nanoseconds that any number of threads can
+ * record into at once without locking. Each power of two is split into 16
+ * buckets, so a percentile read back from the histogram is within about 6% of
+ * the true value, and recording a latency is a single atomic increment plus
+ * an occasional update of the maximum.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    
+    /**
+     * A summary of a LatencyHistogram at one moment, in nanoseconds.
+     */
+    public static class Summary {
+        
+        private final long count, mean, p50, p90, p99, p999, max;
+        
+        /**
+         * Constructor captures the details of the summary.
+         * @param count the number of latencies recorded
+         * @param mean the average latency
+         * @param p50 the median latency
+         * @param p90 the 90th percentile latency
+         * @param p99 the 99th percentile latency
+         * @param p999 the 99.9th percentile latency
+         * @param max the highest latency
+         */
+        @ConstructorProperties({ "count", "mean", "p50", "p90", "p99", "p999", "max" })
+        public Summary(long count, long mean, long p50, long p90, long p99,
+            long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+        
+        /**
+         * Get the number of latencies recorded.
+         * @return the number of latencies recorded
+         */
+        public long getCount() {
+            return count;
+        }
+        
+        /**
+         * Get the average latency.
+         * @return the average latency
+         */
+        public long getMean() {
+            return mean;
+        }
+        
+        /**
+         * Get the median latency.
+         * @return the median latency
+         */
+        public long getP50() {
+            return p50;
+        }
+        
+        /**
+         * Get the 90th percentile latency.
+         * @return the 90th percentile latency
+         */
+        public long getP90() {
+            return p90;
+        }
+        
+        /**
+         * Get the 99th percentile latency.
+         * @return the 99th percentile latency
+         */
+        public long getP99() {
+            return p99;
+        }
+        
+        /**
+         * Get the 99.9th percentile latency.
+         * @return the 99.9th percentile latency
+         */
+        public long getP999() {
+            return p999;
+        }
+        
+        /**
+         * Get the highest latency.
+         * @return the highest latency
+         */
+        public long getMax() {
+            return max;
+        }
+        
+        /**
+         * Get the summary as a line of text.
+         * @return the summary
+         */
+        @Override
+        public String toString() {
+            return String.format("count %d, mean %d ns, p50 %d ns, p90 %d ns, " +
+                "p99 %d ns, p99.9 %d ns, max %d ns", count, mean, p50, p90,
+                p99, p999, max);
+        }
+    
+    }
+    
+    private AtomicLongArray counts;
+    private AtomicLong total, max;
+    
+    /**
+     * Constructor for a new, empty LatencyHistogram.
+     */
+    public LatencyHistogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        total = new AtomicLong();
+        max = new AtomicLong();
+    }
+    
+    /**
+     * Get the bucket that a latency is counted in.
+     * @param nanos the latency
+     * @return the index of the bucket
+     */
+    private static int getBucket(long nanos) {
+        if(nanos < SUB_BUCKETS) return (int) Math.max(0, nanos);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub_bucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub_bucket;
+    }
+    
+    /**
+     * Get the latency in the middle of a bucket.
+     * @param bucket the index of the bucket
+     * @return the latency
+     */
+    private static long getBucketValue(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >> 1);
+    }
+    
+    /**
+     * Records one latency.
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(getBucket(nanos));
+        total.addAndGet(nanos);
+        long highest = max.get();
+        while(nanos > highest && !max.compareAndSet(highest, nanos)) {
+            highest = max.get();
+        }
+    }
+    
+    /**
+     * Get the number of latencies recorded.
+     * @return the number of latencies
+     */
+    public long getCount() {
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++) count += counts.get(i);
+        return count;
+    }
+    
+    /**
+     * Get a percentile of the latencies recorded.
+     * @param percentile the percentile, from 0 to 100
+     * @return the latency in nanoseconds at that percentile, or 0 if none
+     */
+    public long getPercentile(double percentile) {
+        return getPercentile(percentile, getCount());
+    }
+    
+    /**
+     * Get a percentile of the latencies recorded, given how many there are.
+     * @param percentile the percentile, from 0 to 100
+     * @param count the number of latencies recorded
+     * @return the latency in nanoseconds at that percentile, or 0 if none
+     */
+    private long getPercentile(double percentile, long count) {
+        if(count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if(seen >= target) return Math.min(getBucketValue(i), max.get());
+        }
+        return max.get();
+    }
+    
+    /**
+     * Get a summary of the latencies recorded.
+     * @return the Summary
+     */
+    public Summary getSummary() {
+        long count = getCount();
+        return new Summary(count, count == 0 ? 0 : total.get() / count,
+            getPercentile(50, count), getPercentile(90, count),
+            getPercentile(99, count), getPercentile(99.9, count), max.get());
+    }
+    
+    /**
+     * Forgets all of the latencies recorded. Latencies recorded by other
+     * threads while the histogram is being reset may or may not be kept.
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        total.set(0);
+        max.set(0);
+    }
+
+}
@@ -0,0 +1,1121 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decides where a bot should put the falling Tetrimino by looking several
+ * Tetriminos ahead. The shapes to come are known from the TetriminoBag, and
+ * at each Tetrimino the search can also swap it with the held one, the same
+ * as TetrisModel.tryHoldExchange(). It runs a beam search: every position in
+ * the beam is expanded with each placement the MoveGenerator finds, the
+ * resulting wells are scored by a BoardEvaluator, and only the best positions
+ * are kept for the next Tetrimino. The decision is the first move on the way
+ * to the best position of the deepest level that was searched in full.
+ * 
+ * The search stops early when it runs out of nodes or time, so a decision
+ * is always ready well within the time a Tetrimino takes to fall one row at
+ * TetrisScoring.CLASSIC_LEVELS. A LookaheadSearch reuses its wells from one
+ * decision to the next, so it should be kept and used by one thread at a
+ * time.
+ * 
+ * Given a ForkJoinPool, one decision is spread across the pool instead.
+ * Each position of the first level, which are the placements of the falling
+ * Tetrimino with and without a hold, becomes a task that searches the whole
+ * subtree below it with a beam and a node budget of its own, on a copy of
+ * its well. The subtree of the best placement is searched first, and the
+ * best value it reaches at each depth is shared with the other tasks, so a
+ * task that falls too far behind it gives up early. Those values are known
+ * before the other tasks start and the subtrees are compared in the order
+ * of the first level, so the decision is the same however the tasks were
+ * scheduled, and only a search that runs out of time can end differently.
+ * This looks at more positions than a search on one thread does, so the two
+ * do not always decide the same.
+ * 
+ * A position reached twice at the same level by different orders of moves
+ * is only kept once, with the bigger reward for the lines cleared on the
+ * way. The positions in the level being built are found by the Zobrist hash
+ * of their wells in a small set of their own, which is emptied at once for
+ * each level by moving on to a new generation.
+ * 
+ * Given a TranspositionTable, keyed by the same hash, evaluations are
+ * looked up instead of being worked out again, and a decision searched in
+ * full is reused whenever the same position comes up again. The table can
+ * be shared by any number of searches and threads.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class LookaheadSearch {
+    
+    /**
+     * The number of shapes the search looks ahead by default, which is the
+     * length of the next queue in most modern Tetris games.
+     */
+    public static final int DEFAULT_PREVIEW = 5;
+    public static final int DEFAULT_BEAM_WIDTH = 32;
+    public static final int DEFAULT_NODE_BUDGET = 1 << 16;
+    
+    /**
+     * The default time limit for one decision, which leaves half of a
+     * gravity tick at level 10 to spare.
+     */
+    public static final long DEFAULT_TIME_LIMIT =
+        TetrisScoring.getGravityNanos(TetrisScoring.CLASSIC_LEVELS) / 2;
+    
+    /**
+     * How far below the best value of the first subtree of a parallel search
+     * a task can fall before giving up, by default. Under the default weights
+     * of the WeightedBoardEvaluator this is about eight holes.
+     */
+    public static final double DEFAULT_CUTOFF_MARGIN = 3.0;
+    
+    /**
+     * Where the TetrisModel places a new Tetrimino, or one swapped out of the
+     * hold slot.
+     */
+    private static final int SPAWN_ROW = 0;
+    private static final int SPAWN_COLUMN = (Tetris.TETRIS_WIDTH - 4) / 2;
+    
+    /**
+     * Every shape in every rotation, indexed by shape << 2 | rotation, which
+     * is how pieces are stored throughout the search.
+     */
+    private static final Tetrimino[] PIECES = new Tetrimino[7 << 2];
+    
+    /**
+     * The keys mixed into the hash of a well to tell apart positions in a
+     * level and decisions in a TranspositionTable: one for each piece that
+     * can be held, or -1 for none, one for each index into the queue, and
+     * one for the decision at the root. They come from a fixed seed so that
+     * every search agrees on them.
+     */
+    private static final int MAX_QUEUE = 256;
+    private static final long[] HELD_KEYS = new long[(7 << 2) + 1];
+    private static final long[] NEXT_KEYS = new long[MAX_QUEUE + 1];
+    private static final long ROOT_KEY;
+    
+    static {
+        Tetrimino.TetriminoShape[] shapes = Tetrimino.TetriminoShape.values();
+        Tetrimino.TetriminoRotation[] rotations = Tetrimino.TetriminoRotation.values();
+        for(int s = 0; s < 7; s++) {
+            for(int r = 0; r < 4; r++) {
+                PIECES[s << 2 | r] = new Tetrimino(shapes[s], rotations[r]);
+            }
+        }
+        TetriminoRandom random = new TetriminoRandom(0x10ca4eadL);
+        for(int i = 0; i < HELD_KEYS.length; i++) {
+            HELD_KEYS[i] = random.nextLong();
+        }
+        for(int i = 0; i < NEXT_KEYS.length; i++) {
+            NEXT_KEYS[i] = random.nextLong();
+        }
+        ROOT_KEY = random.nextLong();
+    }
+    
+    /**
+     * Orders nodes from the highest value to the lowest, and nodes of the
+     * same value in the order they were found.
+     */
+    private static final Comparator<Node> BEST_FIRST = new Comparator<Node>() {
+        @Override
+        public int compare(Node a, Node b) {
+            int by_value = Double.compare(b.value, a.value);
+            return by_value != 0 ? by_value : Long.compare(a.order, b.order);
+        }
+    };
+    
+    /**
+     * One position in the beam: the well after the Tetriminos placed so far,
+     * the index in the queue of the next shape to place, the held piece (or
+     * -1 if nothing is held), the rewards for the lines cleared on the way,
+     * the value of the position, the first move that leads to it, and the
+     * order it was found in.
+     */
+    private static class Node {
+        TetriminoWell well = new TetriminoWell();
+        int next, held, move;
+        double reward, value;
+        long order;
+        
+        /**
+         * Constructor for a new Node, whose well keeps its hash up to date
+         * for finding positions that are reached twice.
+         */
+        Node() {
+            well.setHashing(true);
+        }
+    
+    }
+    
+    /**
+     * A position offered to the level being built, before its well is made:
+     * the position it is reached from, the piece placed there and where it
+     * rests, or a piece of -1 if the position is carried over unchanged, and
+     * the rest of what its Node will hold, the key that tells its position
+     * apart and where it is in the heap of the level being built. Only the
+     * positions that are kept get a well, once the level is complete.
+     * 
+     * Candidates of the same value are told apart by the order they were
+     * found in: the index of their parent in the level, then the order they
+     * were found in below it, so the same Candidates are always kept.
+     */
+    private static class Candidate {
+        Node parent;
+        int piece, row, column, next, held, move;
+        double reward, value;
+        long order, key;
+        int index;
+        
+        /**
+         * Makes this Candidate the same as another one, apart from where it
+         * is in the heap.
+         * @param other the Candidate to copy
+         */
+        void copyFrom(Candidate other) {
+            parent = other.parent;
+            piece = other.piece;
+            row = other.row;
+            column = other.column;
+            next = other.next;
+            held = other.held;
+            move = other.move;
+            reward = other.reward;
+            value = other.value;
+            order = other.order;
+            key = other.key;
+        }
+        
+        /**
+         * Checks whether this Candidate should be kept over another one.
+         * @param other the other Candidate
+         * @return true if this one has a higher value, or the same value and
+         * was found first
+         */
+        boolean isBetter(Candidate other) {
+            return value > other.value || (value == other.value && order < other.order);
+        }
+    
+    }
+    
+    /**
+     * Searches below a range of the positions of the first level, splitting
+     * the range in half until each task has a single position, so that idle
+     * workers can steal whatever is left.
+     */
+    private class SubtreeTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private int first, last;
+        
+        /**
+         * Constructor for a new SubtreeTask.
+         * @param first the index of the first position in the range
+         * @param last one past the index of the last position in the range
+         */
+        SubtreeTask(int first, int last) {
+            this.first = first;
+            this.last = last;
+        }
+        
+        /**
+         * Searches below the positions in the range.
+         */
+        @Override
+        protected void compute() {
+            if(last - first > 1) {
+                int middle = (first + last) >>> 1;
+                invokeAll(new SubtreeTask(first, middle), new SubtreeTask(middle, last));
+                return;
+            }
+            workers.get().searchSubtree(LookaheadSearch.this, first);
+        }
+        
+    }
+    
+    private BoardEvaluator evaluator;
+    private int beam_width, node_budget;
+    private long time_limit;
+    private MoveGenerator generator = new MoveGenerator();
+    
+    /**
+     * The pool for parallel searches, or null to search on the calling
+     * thread, the LookaheadSearch used by each of its workers, and how far
+     * behind the first subtree a task can fall before giving up.
+     */
+    private ForkJoinPool pool;
+    private ThreadLocal<LookaheadSearch> workers;
+    private double cutoff_margin = DEFAULT_CUTOFF_MARGIN;
+    
+    /**
+     * The TranspositionTable, or null to search without one.
+     */
+    private TranspositionTable table;
+    
+    /**
+     * The shapes to place, the current one first, then the preview.
+     */
+    private int[] queue, preview;
+    
+    /**
+     * The root position, the level being expanded and the nodes the next
+     * level is made in. The level being built is kept as a heap of
+     * Candidates with its worst one first until it is complete.
+     */
+    private Node root = new Node();
+    private Node[] level, spare;
+    private Candidate[] following;
+    private int level_count, following_count;
+    
+    /**
+     * The set of the Candidates in the level being built, by their keys,
+     * which is open addressed. A slot is only in use if it is stamped with
+     * the current generation of the set.
+     */
+    private long[] seen_keys;
+    private int[] seen_stamps;
+    private Candidate[] seen_candidates;
+    private int seen_mask, seen_stamp;
+    
+    /**
+     * The order the next Candidate is found in, which starts at the index of
+     * the position being expanded, shifted up by 32 bits.
+     */
+    private long found;
+    private Candidate proposal = new Candidate();
+    private TetriminoWell scratch = new TetriminoWell();
+    
+    /**
+     * The result of the subtree below each position of the first level of a
+     * parallel search: how deep it was searched in full, the best value
+     * there, the nodes it scored, whether it gave up and whether it ran out
+     * of nodes or time. Then the best value the first subtree reached at
+     * each depth, and the deadline the tasks share.
+     */
+    private int[] subtree_depths, subtree_nodes;
+    private double[] subtree_values;
+    private boolean[] subtree_behind, subtree_complete;
+    private double[] leader_values;
+    private long subtree_deadline;
+    
+    /**
+     * The result of the last search, and the best value at each depth it
+     * reached.
+     */
+    private int best_move, depth, nodes;
+    private double best_value;
+    private double[] depth_values;
+    private long elapsed;
+    private boolean complete, behind;
+    
+    /**
+     * Constructor for a new LookaheadSearch with the default settings.
+     * @param evaluator the BoardEvaluator that scores positions
+     */
+    public LookaheadSearch(BoardEvaluator evaluator) {
+        this(evaluator, DEFAULT_PREVIEW, DEFAULT_BEAM_WIDTH, DEFAULT_NODE_BUDGET,
+            DEFAULT_TIME_LIMIT);
+    }
+    
+    /**
+     * Constructor for a new LookaheadSearch.
+     * @param evaluator the BoardEvaluator that scores positions
+     * @param preview the number of shapes after the current one to look at
+     * @param beam_width the number of positions kept at each level
+     * @param node_budget the number of positions to score before stopping
+     * @param time_limit the time in nanoseconds to search before stopping
+     */
+    public LookaheadSearch(BoardEvaluator evaluator, int preview, int beam_width,
+        int node_budget, long time_limit) {
+        this(evaluator, preview, beam_width, node_budget, time_limit, null);
+    }
+    
+    /**
+     * Constructor for a new LookaheadSearch with the default settings that
+     * spreads each decision across a ForkJoinPool.
+     * @param evaluator the BoardEvaluator that scores positions, which must
+     * allow being used by several threads at once
+     * @param pool the ForkJoinPool to search with
+     */
+    public LookaheadSearch(BoardEvaluator evaluator, ForkJoinPool pool) {
+        this(evaluator, DEFAULT_PREVIEW, DEFAULT_BEAM_WIDTH, DEFAULT_NODE_BUDGET,
+            DEFAULT_TIME_LIMIT, pool);
+    }
+    
+    /**
+     * Constructor for a new LookaheadSearch. With a ForkJoinPool, the search
+     * makes the same decisions with any number of threads, unless it runs
+     * out of time.
+     * @param evaluator the BoardEvaluator that scores positions, which must
+     * allow being used by several threads at once if there is a pool
+     * @param preview the number of shapes after the current one to look at
+     * @param beam_width the number of positions kept at each level, below
+     * each position of the first level if there is a pool
+     * @param node_budget the number of positions to score before stopping,
+     * below each position of the first level if there is a pool
+     * @param time_limit the time in nanoseconds to search before stopping
+     * @param pool the ForkJoinPool to search with, or null to search on the
+     * calling thread
+     */
+    public LookaheadSearch(final BoardEvaluator evaluator, final int preview,
+        final int beam_width, final int node_budget, final long time_limit,
+        ForkJoinPool pool) {
+        if(preview < 0 || preview >= MAX_QUEUE || beam_width < 1 || node_budget < 1 ||
+            time_limit < 1) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.evaluator = evaluator;
+        this.beam_width = beam_width;
+        this.node_budget = node_budget;
+        this.time_limit = time_limit;
+        queue = new int[preview + 1];
+        this.preview = new int[preview];
+        depth_values = new double[preview + 2];
+        scratch.setHashing(true);
+        level = new Node[beam_width];
+        spare = new Node[beam_width];
+        following = new Candidate[beam_width];
+        for(int i = 0; i < beam_width; i++) {
+            level[i] = new Node();
+            spare[i] = new Node();
+            following[i] = new Candidate();
+        }
+        // At most beam_width slots are in use, so probes stay short
+        int slots = Integer.highestOneBit(4 * beam_width - 1) << 1;
+        seen_keys = new long[slots];
+        seen_stamps = new int[slots];
+        seen_candidates = new Candidate[slots];
+        seen_mask = slots - 1;
+        seen_stamp = 1;
+        this.pool = pool;
+        if(pool != null) {
+            workers = new ThreadLocal<LookaheadSearch>() {
+                @Override
+                protected LookaheadSearch initialValue() {
+                    return new LookaheadSearch(evaluator, preview, beam_width,
+                        node_budget, time_limit);
+                }
+            };
+            subtree_depths = new int[beam_width];
+            subtree_nodes = new int[beam_width];
+            subtree_values = new double[beam_width];
+            subtree_behind = new boolean[beam_width];
+            subtree_complete = new boolean[beam_width];
+            leader_values = new double[preview + 2];
+        }
+    }
+    
+    /**
+     * Sets the TranspositionTable the search remembers positions in. The
+     * WeightedBoardEvaluator is cheaper to work out again than to look up,
+     * so the table only pays for itself with a slower BoardEvaluator.
+     * @param table the TranspositionTable, or null to search without one
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+    
+    /**
+     * Sets how far below the best value of the first subtree of a parallel
+     * search a task can fall before giving up.
+     * @param cutoff_margin the margin, in the units of the BoardEvaluator
+     */
+    public void setCutoffMargin(double cutoff_margin) {
+        if(!(cutoff_margin >= 0)) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.cutoff_margin = cutoff_margin;
+    }
+    
+    /**
+     * Searches for the best move for the falling Tetrimino of a model, from
+     * where it is now. Nothing is searched while lines are being cleared.
+     * @param model the TetrisModel
+     * @return true if a move was found, false if every move ends the game
+     */
+    public boolean search(TetrisModel model) {
+        long start = System.nanoTime();
+        best_move = -1;
+        best_value = Double.NEGATIVE_INFINITY;
+        depth = 0;
+        nodes = 0;
+        complete = true;
+        if(model.isClearPending()) {
+            elapsed = System.nanoTime() - start;
+            return false;
+        }
+        Tetrimino current = model.getCurrent();
+        Tetrimino held = model.getHeld();
+        int piece = getPiece(current);
+        queue[0] = current.getShape().ordinal();
+        model.getBag().previewShapes(preview);
+        System.arraycopy(preview, 0, queue, 1, preview.length);
+        root.well.copyBlocksFrom(model.getWell());
+        root.next = 0;
+        root.held = held != null ? getPiece(held) : -1;
+        root.reward = 0;
+        long key = 0;
+        if(table != null) {
+            table.newGeneration();
+            key = getDecisionKey(model, piece, root.held);
+            long data = table.probe(key);
+            if(data != TranspositionTable.MISS) {
+                best_move = TranspositionTable.getMove(data);
+                best_value = TranspositionTable.getValue(data);
+                depth = TranspositionTable.getDepth(data);
+                elapsed = System.nanoTime() - start;
+                return true;
+            }
+        }
+        // The first level is always searched in full, so there is a move
+        clearFollowing();
+        found = 0;
+        expand(root, piece, model.getRow(), model.getColumn(), !model.isExchanged());
+        swapLevels();
+        if(pool != null && level_count > 1) {
+            searchParallel(start + time_limit);
+        } else {
+            searchLevels(start + time_limit, null);
+        }
+        // Only a decision that did not run out of nodes or time is as good
+        // as any later search of the same position would be
+        if(table != null && complete && best_move >= 0) {
+            table.store(key, best_value, depth, best_move);
+        }
+        elapsed = System.nanoTime() - start;
+        return best_move >= 0;
+    }
+    
+    /**
+     * Get the key of a decision in a TranspositionTable, which covers
+     * everything the search depends on: the well, the falling Tetrimino and
+     * where it is, the held piece, whether it may be swapped, and the queue.
+     * @param model the TetrisModel
+     * @param piece the falling Tetrimino, as shape << 2 | rotation
+     * @param held the held piece, or -1 if nothing is held
+     * @return the 64 bit key
+     */
+    private long getDecisionKey(TetrisModel model, int piece, int held) {
+        long key = ROOT_KEY;
+        key = (key ^ (piece << 16 | model.getRow() << 8 | (model.getColumn() + 2))) *
+            0x9e3779b97f4a7c15L;
+        key = (key ^ ((held + 1) << 1 | (model.isExchanged() ? 1 : 0))) * 0x9e3779b97f4a7c15L;
+        for(int i = 1; i < queue.length; i++) {
+            key = (key ^ queue[i]) * 0x9e3779b97f4a7c15L;
+        }
+        return (key ^ (key >>> 32)) ^ model.getWell().getHash();
+    }
+    
+    /**
+     * Searches one level at a time, starting from the level to expand, until
+     * there is nothing left to place or the search runs out of nodes or time.
+     * A level that runs out part of the way through is thrown away, so the
+     * decision always comes from the deepest level that was searched in full.
+     * @param deadline the System.nanoTime() to stop at
+     * @param cutoff the best value of the first subtree at each depth, which
+     * the search gives up at if it falls too far behind, or null
+     */
+    private void searchLevels(long deadline, double[] cutoff) {
+        while(level_count > 0) {
+            depth++;
+            best_move = level[0].move;
+            best_value = level[0].value;
+            depth_values[depth] = best_value;
+            if(cutoff != null && best_value < cutoff[depth] - cutoff_margin) {
+                behind = true;
+                break;
+            }
+            boolean expandable = false;
+            for(int i = 0; i < level_count; i++) {
+                if(level[i].next < queue.length) expandable = true;
+            }
+            if(!expandable) break;
+            boolean stopped = false;
+            for(int i = 0; i < level_count && !stopped; i++) {
+                found = (long) i << 32;
+                expandNode(level[i]);
+                stopped = nodes >= node_budget || System.nanoTime() - deadline >= 0;
+            }
+            if(stopped) {
+                complete = false;
+                break;
+            }
+            swapLevels();
+        }
+    }
+    
+    /**
+     * Searches the subtree below every position of the first level across
+     * the pool, the first one on its own and then the rest, and picks the
+     * position whose subtree reached the best value at the deepest level
+     * searched in full. Of several such positions the first in the level
+     * is picked.
+     * @param deadline the System.nanoTime() to stop at
+     */
+    private void searchParallel(long deadline) {
+        subtree_deadline = deadline;
+        Arrays.fill(leader_values, Double.NEGATIVE_INFINITY);
+        pool.invoke(new SubtreeTask(0, 1));
+        pool.invoke(new SubtreeTask(1, level_count));
+        int best = 0;
+        for(int i = 0; i < level_count; i++) {
+            nodes += subtree_nodes[i];
+            if(!subtree_complete[i]) complete = false;
+            if(subtree_behind[i]) continue;
+            if(subtree_depths[i] > subtree_depths[best] ||
+                (subtree_depths[i] == subtree_depths[best] &&
+                subtree_values[i] > subtree_values[best])) {
+                best = i;
+            }
+        }
+        best_move = level[best].move;
+        best_value = subtree_values[best];
+        depth = subtree_depths[best];
+    }
+    
+    /**
+     * Searches the subtree below one position of the first level of a
+     * parallel search, on a worker's own LookaheadSearch, and leaves the
+     * result with the search. The best values below the first position
+     * are left as the ones the others give up behind.
+     * @param search the LookaheadSearch the first level belongs to
+     * @param slot the index of the position in the first level
+     */
+    private void searchSubtree(LookaheadSearch search, int slot) {
+        System.arraycopy(search.queue, 0, queue, 0, queue.length);
+        table = search.table;
+        cutoff_margin = search.cutoff_margin;
+        Node node = search.level[slot];
+        Candidate c = proposal;
+        c.parent = node;
+        c.piece = -1;
+        c.next = node.next;
+        c.held = node.held;
+        c.move = node.move;
+        c.reward = node.reward;
+        c.value = node.value;
+        c.order = 0;
+        c.key = 0;
+        clearFollowing();
+        offer(c);
+        swapLevels();
+        depth = 0;
+        nodes = 0;
+        complete = true;
+        behind = false;
+        searchLevels(search.subtree_deadline, slot == 0 ? null : search.leader_values);
+        if(slot == 0) {
+            System.arraycopy(depth_values, 1, search.leader_values, 1, depth);
+        }
+        search.subtree_depths[slot] = depth;
+        search.subtree_values[slot] = best_value;
+        search.subtree_nodes[slot] = nodes;
+        search.subtree_behind[slot] = behind;
+        search.subtree_complete[slot] = complete;
+    }
+    
+    /**
+     * Expands one position of the level with the next shape in the queue,
+     * or carries it over unchanged if the queue has run out.
+     * @param node the position to expand
+     */
+    private void expandNode(Node node) {
+        if(node.next == queue.length) {
+            Candidate c = proposal;
+            c.parent = node;
+            c.piece = -1;
+            c.next = node.next;
+            c.held = node.held;
+            c.move = node.move;
+            c.reward = node.reward;
+            c.value = node.value;
+            c.order = found++;
+            c.key = node.well.getHash() ^ NEXT_KEYS[node.next] ^ HELD_KEYS[node.held + 1];
+            offer(c);
+        } else {
+            expand(node, queue[node.next] << 2, SPAWN_ROW, SPAWN_COLUMN, true);
+        }
+    }
+    
+    /**
+     * Expands a position by placing a piece, and by swapping the piece with
+     * the held one first if that is allowed.
+     * @param parent the position to expand
+     * @param piece the piece to place, as shape << 2 | rotation
+     * @param row the row the piece starts in
+     * @param column the column the piece starts in
+     * @param may_hold true if the piece may be swapped with the held one
+     */
+    private void expand(Node parent, int piece, int row, int column, boolean may_hold) {
+        int next = parent.next;
+        place(parent, piece, row, column, next + 1, parent.held, false);
+        if(!may_hold) return;
+        if(parent.held < 0) {
+            // With nothing held the next shape comes out of the bag instead
+            if(next + 1 < queue.length) {
+                place(parent, queue[next + 1] << 2, SPAWN_ROW, SPAWN_COLUMN, next + 2,
+                    piece, true);
+            }
+        } else {
+            place(parent, parent.held, SPAWN_ROW, SPAWN_COLUMN, next + 1, piece, true);
+        }
+    }
+    
+    /**
+     * Scores every placement of a piece in a position, and offers the ones
+     * that do not end the game to the level being built.
+     * @param parent the position to place the piece in
+     * @param piece the piece to place, as shape << 2 | rotation
+     * @param row the row the piece starts in
+     * @param column the column the piece starts in
+     * @param next the index in the queue of the shape to place after this one
+     * @param held the held piece afterwards, or -1 if nothing is held
+     * @param hold true if the piece was swapped out of the hold slot
+     */
+    private void place(Node parent, int piece, int row, int column, int next,
+        int held, boolean hold) {
+        if(parent.well.checkCollision(PIECES[piece], row, column)) return;
+        int count = generator.generate(parent.well, PIECES[piece], row, column);
+        int shape = piece & ~3;
+        for(int i = 0; i < count; i++) {
+            int rotation = generator.getRotation(i);
+            int r = generator.getRow(i);
+            int c = generator.getColumn(i);
+            scratch.copyBlocksFrom(parent.well);
+            int rows_cleared = scratch.settleTetrimino(PIECES[shape | rotation], r, c);
+            nodes++;
+            if(scratch.overflow()) continue;
+            double reward = parent.reward +
+                evaluator.getClearReward(Integer.bitCount(rows_cleared));
+            // The same well has the same evaluation, so a position that is
+            // already in this level is only worth keeping again if it
+            // cleared its lines for a bigger reward
+            long hash = scratch.getHash();
+            long key = hash ^ NEXT_KEYS[next] ^ HELD_KEYS[held + 1];
+            Candidate same = findSeen(key);
+            if(same != null && same.reward >= reward) continue;
+            double evaluation = table != null ? evaluate(hash) : evaluator.evaluate(scratch);
+            Candidate candidate = proposal;
+            candidate.parent = parent;
+            candidate.piece = shape | rotation;
+            candidate.row = r;
+            candidate.column = c;
+            candidate.next = next;
+            candidate.held = held;
+            candidate.move = parent == root ? encodeMove(hold, rotation, r, c) : parent.move;
+            candidate.reward = reward;
+            candidate.value = reward + evaluation;
+            candidate.order = found++;
+            candidate.key = key;
+            offer(candidate);
+        }
+    }
+    
+    /**
+     * Evaluates the scratch well, looking the evaluation up in the
+     * TranspositionTable first and storing it there if it is not found.
+     * Evaluations are stored at depth 0, and under the hash of the well alone.
+     * @param hash the hash of the scratch well
+     * @return the evaluation
+     */
+    private double evaluate(long hash) {
+        long data = table.probe(hash);
+        if(data != TranspositionTable.MISS && TranspositionTable.getDepth(data) == 0) {
+            return TranspositionTable.getValue(data);
+        }
+        // Round the same way as the table, so a hit gives the same value
+        double evaluation = (float) evaluator.evaluate(scratch);
+        table.store(hash, evaluation, 0, 0);
+        return evaluation;
+    }
+    
+    /**
+     * Offers a position to the level being built, which keeps it if the
+     * level is not full yet or if it is better than the worst one there. If
+     * the same position is there already, only the better of the two is kept.
+     * @param candidate the position, which is copied if kept
+     */
+    private void offer(Candidate candidate) {
+        Candidate same = findSeen(candidate.key);
+        if(same != null) {
+            if(!candidate.isBetter(same)) return;
+            same.copyFrom(candidate);
+            siftDown(same.index);
+        } else if(following_count < beam_width) {
+            int i = following_count++;
+            following[i].copyFrom(candidate);
+            following[i].index = i;
+            addSeen(following[i]);
+            siftUp(i);
+        } else if(candidate.isBetter(following[0])) {
+            removeSeen(following[0].key);
+            following[0].copyFrom(candidate);
+            addSeen(following[0]);
+            siftDown(0);
+        }
+    }
+    
+    /**
+     * Moves a Candidate up the heap of the level being built, worst first,
+     * until its parent is worse.
+     * @param i the index of the Candidate in the heap
+     */
+    private void siftUp(int i) {
+        while(i > 0 && following[(i - 1) >> 1].isBetter(following[i])) {
+            int parent = (i - 1) >> 1;
+            swapFollowing(i, parent);
+            i = parent;
+        }
+    }
+    
+    /**
+     * Moves a Candidate down the heap of the level being built, worst first,
+     * until its children are better.
+     * @param i the index of the Candidate in the heap
+     */
+    private void siftDown(int i) {
+        while(true) {
+            int child = 2 * i + 1;
+            if(child >= following_count) break;
+            if(child + 1 < following_count &&
+                following[child].isBetter(following[child + 1])) {
+                child++;
+            }
+            if(following[child].isBetter(following[i])) break;
+            swapFollowing(i, child);
+            i = child;
+        }
+    }
+    
+    /**
+     * Swaps two Candidates in the heap of the level being built.
+     * @param i the index of one Candidate
+     * @param j the index of the other
+     */
+    private void swapFollowing(int i, int j) {
+        Candidate temp = following[i];
+        following[i] = following[j];
+        following[j] = temp;
+        following[i].index = i;
+        following[j].index = j;
+    }
+    
+    /**
+     * Empties the level being built, and the set of its Candidates.
+     */
+    private void clearFollowing() {
+        following_count = 0;
+        if(++seen_stamp == 0) {
+            Arrays.fill(seen_stamps, 0);
+            seen_stamp = 1;
+        }
+    }
+    
+    /**
+     * Finds the Candidate with a key in the level being built.
+     * @param key the key
+     * @return the Candidate, or null if there is none
+     */
+    private Candidate findSeen(long key) {
+        int i = (int) (key ^ (key >>> 32)) & seen_mask;
+        while(seen_stamps[i] == seen_stamp) {
+            if(seen_keys[i] == key) return seen_candidates[i];
+            i = (i + 1) & seen_mask;
+        }
+        return null;
+    }
+    
+    /**
+     * Adds a Candidate to the set of the level being built, by its key.
+     * @param candidate the Candidate, which must not be in the set already
+     */
+    private void addSeen(Candidate candidate) {
+        int i = (int) (candidate.key ^ (candidate.key >>> 32)) & seen_mask;
+        while(seen_stamps[i] == seen_stamp) {
+            i = (i + 1) & seen_mask;
+        }
+        seen_keys[i] = candidate.key;
+        seen_stamps[i] = seen_stamp;
+        seen_candidates[i] = candidate;
+    }
+    
+    /**
+     * Removes a key from the set of the level being built, moving back any
+     * keys after it that could not be found without it.
+     * @param key the key, which must be in the set
+     */
+    private void removeSeen(long key) {
+        int i = (int) (key ^ (key >>> 32)) & seen_mask;
+        while(seen_keys[i] != key) {
+            i = (i + 1) & seen_mask;
+        }
+        int j = i;
+        while(true) {
+            j = (j + 1) & seen_mask;
+            if(seen_stamps[j] != seen_stamp) break;
+            int home = (int) (seen_keys[j] ^ (seen_keys[j] >>> 32)) & seen_mask;
+            // Leave the key at j alone if its home lies between the gap and j
+            if(((j - home) & seen_mask) < ((j - i) & seen_mask)) continue;
+            seen_keys[i] = seen_keys[j];
+            seen_candidates[i] = seen_candidates[j];
+            i = j;
+        }
+        seen_stamps[i] = 0;
+    }
+    
+    /**
+     * Makes the level that was being built the one to expand next, with its
+     * best nodes first, and starts building an empty level. The wells of the
+     * new level are only made now, from the wells of their parents.
+     */
+    private void swapLevels() {
+        for(int i = 0; i < following_count; i++) {
+            Candidate candidate = following[i];
+            Node node = spare[i];
+            node.well.copyBlocksFrom(candidate.parent.well);
+            if(candidate.piece >= 0) {
+                node.well.settleTetrimino(PIECES[candidate.piece], candidate.row,
+                    candidate.column);
+            }
+            node.next = candidate.next;
+            node.held = candidate.held;
+            node.move = candidate.move;
+            node.reward = candidate.reward;
+            node.value = candidate.value;
+            node.order = candidate.order;
+        }
+        Node[] temp = level;
+        level = spare;
+        spare = temp;
+        level_count = following_count;
+        clearFollowing();
+        Arrays.sort(level, 0, level_count, BEST_FIRST);
+    }
+    
+    /**
+     * Get a Tetrimino as it is stored throughout the search.
+     * @param t the Tetrimino
+     * @return shape << 2 | rotation
+     */
+    private static int getPiece(Tetrimino t) {
+        return t.getShape().ordinal() << 2 | t.getRotation().ordinal();
+    }
+    
+    /**
+     * Packs a move into an int.
+     * @param hold true if the Tetrimino is swapped with the held one first
+     * @param rotation the rotation the Tetrimino rests in
+     * @param row the row the Tetrimino rests in
+     * @param column the column the Tetrimino rests in
+     * @return the packed move
+     */
+    private static int encodeMove(boolean hold, int rotation, int row, int column) {
+        return (hold ? 1 << 11 : 0) | rotation << 9 | row << 4 | (column + 2);
+    }
+    
+    /**
+     * Find out whether the last decision swaps the falling Tetrimino with the
+     * held one before moving it.
+     * @return true if HOLD_EXCHANGE comes first
+     */
+    public boolean isHold() {
+        return (best_move & (1 << 11)) != 0;
+    }
+    
+    /**
+     * Get the rotation the Tetrimino rests in for the last decision.
+     * @return the ordinal of the TetriminoRotation
+     */
+    public int getRotation() {
+        return (best_move >>> 9) & 3;
+    }
+    
+    /**
+     * Get the uppermost row the Tetrimino rests in for the last decision.
+     * @return the row
+     */
+    public int getRow() {
+        return (best_move >>> 4) & 31;
+    }
+    
+    /**
+     * Get the leftmost column the Tetrimino rests in for the last decision.
+     * @return the column
+     */
+    public int getColumn() {
+        return (best_move & 15) - 2;
+    }
+    
+    /**
+     * Get the value of the position the last decision leads to.
+     * @return the value, or negative infinity if no move was found
+     */
+    public double getValue() {
+        return best_value;
+    }
+    
+    /**
+     * Get the number of Tetriminos ahead the last search looked in full.
+     * @return the depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+    
+    /**
+     * Get the number of positions scored by the last search.
+     * @return the number of nodes
+     */
+    public int getNodes() {
+        return nodes;
+    }
+    
+    /**
+     * Get the time the last search took.
+     * @return the time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsed;
+    }
+    
+    /**
+     * Test routine. Checks the bag preview against the shapes that are
+     * really picked, then plays a few games with a sequential search, a
+     * parallel one, and one with a TranspositionTable, and times parallel
+     * searches against sequential ones.
+     */
+    public static void testLookaheadSearch() {
+        TetriminoBag bag = new TetriminoBag(42);
+        TetriminoBag copy = new TetriminoBag(42);
+        int[] shapes = new int[100];
+        boolean preview_ok = true;
+        for(int n = 0; n < 20; n++) {
+            copy.previewShapes(shapes);
+            for(int i = 0; i < shapes.length; i++) {
+                if(bag.pickShape().ordinal() != shapes[i]) preview_ok = false;
+            }
+            for(int i = 0; i < shapes.length; i++) {
+                copy.pickShape();
+            }
+        }
+        System.out.println("Bag preview matches: " + preview_ok);
+        playGames("Sequential", new SearchInputPolicy());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        playGames("Parallel", new SearchInputPolicy(
+            new LookaheadSearch(new WeightedBoardEvaluator(), pool)));
+        pool.shutdown();
+        LookaheadSearch cached = new LookaheadSearch(new WeightedBoardEvaluator());
+        TranspositionTable table = new TranspositionTable(1 << 16);
+        cached.setTranspositionTable(table);
+        playGames("Cached", new SearchInputPolicy(cached));
+        System.out.println("Transposition table: " + table);
+        int cores = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool single = new ForkJoinPool(1);
+        for(int threads : new int[] {cores, 4}) {
+            pool = new ForkJoinPool(threads);
+            for(int depth = 2; depth <= 6; depth += 2) {
+                compareParallel(pool, single, threads, depth);
+            }
+            pool.shutdown();
+        }
+        single.shutdown();
+    }
+    
+    /**
+     * Times a parallel search against a sequential one that looks as far
+     * ahead, with no limit on nodes or time, over the positions of a game,
+     * and reports the speedup, the nodes each scored, and whether the
+     * parallel search made the same decisions as on a pool of one thread.
+     * @param pool the ForkJoinPool to search with
+     * @param single a ForkJoinPool of one thread
+     * @param threads the number of threads in the pool
+     * @param depth the number of Tetriminos to look ahead
+     */
+    private static void compareParallel(ForkJoinPool pool, ForkJoinPool single,
+        int threads, int depth) {
+        LookaheadSearch sequential = new LookaheadSearch(new WeightedBoardEvaluator(),
+            depth - 1, DEFAULT_BEAM_WIDTH, Integer.MAX_VALUE, Long.MAX_VALUE / 4);
+        LookaheadSearch parallel = new LookaheadSearch(new WeightedBoardEvaluator(),
+            depth - 1, DEFAULT_BEAM_WIDTH, Integer.MAX_VALUE, Long.MAX_VALUE / 4, pool);
+        LookaheadSearch one = new LookaheadSearch(new WeightedBoardEvaluator(),
+            depth - 1, DEFAULT_BEAM_WIDTH, Integer.MAX_VALUE, Long.MAX_VALUE / 4, single);
+        SearchInputPolicy policy = new SearchInputPolicy(sequential);
+        GameEngine engine = new GameEngine();
+        TetrisModel model = engine.getModel();
+        long sequential_time = 0, parallel_time = 0;
+        long sequential_nodes = 0, parallel_nodes = 0;
+        int positions = 0, same = 0, dropped = -1;
+        engine.reset(7);
+        policy.reset(7);
+        while(!engine.isGameOver() && model.getTetriminosDropped() < 100) {
+            if(model.getTetriminosDropped() != dropped && !model.isClearPending()) {
+                dropped = model.getTetriminosDropped();
+                long start = System.nanoTime();
+                sequential.search(model);
+                long middle = System.nanoTime();
+                parallel.search(model);
+                long end = System.nanoTime();
+                one.search(model);
+                // The first positions only warm up the compiler
+                if(dropped >= 20) {
+                    sequential_time += middle - start;
+                    parallel_time += end - middle;
+                    sequential_nodes += sequential.getNodes();
+                    parallel_nodes += parallel.getNodes();
+                    positions++;
+                    if(one.isHold() == parallel.isHold() &&
+                        one.getRotation() == parallel.getRotation() &&
+                        one.getRow() == parallel.getRow() &&
+                        one.getColumn() == parallel.getColumn()) {
+                        same++;
+                    }
+                }
+            }
+            GameEngine.Input input = policy.nextInput(engine);
+            if(input == null) {
+                engine.tick();
+            } else {
+                engine.step(input);
+            }
+        }
+        System.out.println(String.format("Depth %d, %d threads: sequential %.2f ms " +
+            "%d nodes, parallel %.2f ms %d nodes, speedup %.2fx, %d of %d decisions " +
+            "the same as on 1 thread", depth, threads,
+            sequential_time / 1e6 / positions, sequential_nodes / positions,
+            parallel_time / 1e6 / positions, parallel_nodes / positions,
+            (double) sequential_time / parallel_time, same, positions));
+    }
+    
+    /**
+     * Lets a SearchInputPolicy play a few games, and reports how it did and
+     * how long its inputs took, which includes its decisions.
+     * @param name the name to report the games under
+     * @param policy the SearchInputPolicy to play with
+     */
+    private static void playGames(String name, SearchInputPolicy policy) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        GameEngine engine = new GameEngine();
+        for(int game = 0; game < 3; game++) {
+            engine.reset(game);
+            policy.reset(game);
+            TetrisModel model = engine.getModel();
+            while(!engine.isGameOver() && model.getTetriminosDropped() < 500) {
+                long start = System.nanoTime();
+                GameEngine.Input input = policy.nextInput(engine);
+                histogram.record(System.nanoTime() - start);
+                if(input == null) {
+                    engine.tick();
+                } else {
+                    engine.step(input);
+                }
+            }
+            System.out.println(name + " game " + game + ": " +
+                model.getTetriminosDropped() + " Tetriminos, " + engine.getLines() +
+                " lines, score " + engine.getScore() +
+                (engine.isGameOver() ? ", game over" : ""));
+        }
+        System.out.println(name + " input latency: " + histogram.getSummary());
+    }
+    
+}
@@ -0,0 +1,108 @@
+import java.util.Arrays;
+
+/**
+ * Each time that the TetrisView performs an update(), it fills an instance of
+ * this class with the blocks that the BlockGridPanel representing the Tetris
+ * well needs to modify. Each block is stored as a row, a column and an index
+ * into a BlockPalette, in parallel arrays that are reused from one update to
+ * the next, so that filling the buffer does not create any garbage.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class ModifyBlockBuffer {
+    
+    private BlockPalette palette;
+    private int[] rows, columns, colors;
+    private int size;
+    
+    /**
+     * Constructor for a new ModifyBlockBuffer.
+     * @param palette the BlockPalette that the color indexes refer to
+     * @param capacity the number of blocks to make room for at first
+     */
+    public ModifyBlockBuffer(BlockPalette palette, int capacity) {
+        // Check for valid parameter
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.palette = palette;
+        rows = new int[capacity];
+        columns = new int[capacity];
+        colors = new int[capacity];
+    }
+    
+    /**
+     * Adds a block to modify to the end of the buffer. The buffer grows if it
+     * is full.
+     * @param row the row where the block is located on the grid
+     * @param column the column where the block is located on the grid
+     * @param color the index of the block's colors in the BlockPalette
+     */
+    public void add(int row, int column, int color) {
+        // Check for valid parameter
+        if(color < 0 || color >= palette.size()) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        if(size == rows.length) {
+            rows = Arrays.copyOf(rows, 2 * size);
+            columns = Arrays.copyOf(columns, 2 * size);
+            colors = Arrays.copyOf(colors, 2 * size);
+        }
+        rows[size] = row;
+        columns[size] = column;
+        colors[size] = color;
+        size++;
+    }
+    
+    /**
+     * Removes all of the blocks from the buffer, keeping its arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+    
+    /**
+     * Get the number of blocks in the buffer.
+     * @return the number of blocks
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the BlockPalette that the color indexes refer to.
+     * @return the BlockPalette
+     */
+    public BlockPalette getPalette() {
+        return palette;
+    }
+    
+    /**
+     * Get the row of a block in the buffer.
+     * @param i the index of the block in the buffer
+     * @return the row
+     */
+    public int getRow(int i) {
+        return rows[i];
+    }
+    
+    /**
+     * Get the column of a block in the buffer.
+     * @param i the index of the block in the buffer
+     * @return the column
+     */
+    public int getColumn(int i) {
+        return columns[i];
+    }
+    
+    /**
+     * Get the color index of a block in the buffer.
+     * @param i the index of the block in the buffer
+     * @return the index of the block's colors in the BlockPalette
+     */
+    public int getColor(int i) {
+        return colors[i];
+    }
+
+}
@@ -0,0 +1,538 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Finds every resting place a Tetrimino can legally reach in a TetriminoWell,
+ * including tucks under overhangs and spins, along with the shortest sequence
+ * of inputs that puts it there. It runs a breadth first search over the
+ * states a Tetrimino can be in, which are its rotation, row and column. The
+ * rows of each rotation and column are the bits of a mask, built from the
+ * well's column bit boards, so a whole column of states is checked for
+ * collisions, marked as visited, and moved at once. Placements that cover
+ * the same cells are only reported once.
+ * 
+ * The search follows the rules of the TetrisModel exactly: moves and
+ * rotations happen in place when there is room, with no wall kicks, and DROP
+ * moves the Tetrimino straight down as far as it can go and locks it there.
+ * A MoveGenerator reuses its arrays from one search to the next, so it should
+ * be kept and used by one thread at a time.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class MoveGenerator {
+    
+    /**
+     * The rows and columns the 4 x 4 region of a Tetrimino can be placed at,
+     * which are the ones TetriminoWell.checkCollision() allows: the region
+     * must fit inside the well including its extra rows and columns.
+     */
+    private static final int ROWS = TetriminoWell.WELL_HEIGHT - 3;
+    private static final int COLUMNS = TetriminoWell.WELL_WIDTH - 3;
+    private static final int FIRST_COLUMN = -2;
+    private static final int FLOOR = TetriminoWell.WELL_HEIGHT - 2;
+    private static final int FREE_ROWS = (1 << ROWS) - 1;
+    
+    /**
+     * The rows of two opposite rotations share a long, rotations 0 and 2 in
+     * one and 1 and 3 in the other, with the second rotation in the upper 32
+     * bits. Rotating either way then comes from the other long, as it is or
+     * with its halves swapped. Each column has one long, with an empty one on
+     * either side so that moving left or right never runs off the end. A
+     * single state is packed as mask << 6 | bit, where bit is the row plus 32
+     * for the second rotation of the mask.
+     */
+    private static final int STRIDE = COLUMNS + 2;
+    private static final int MASKS = 2 * STRIDE;
+    private static final int STATES = MASKS << 6;
+    
+    /**
+     * The cells of each shape and rotation, with the bounding box moved to
+     * the top left corner, and the first rotation of the same shape with the
+     * same cells. Two placements cover the same cells when their rotations
+     * have the same pattern and their bounding boxes are in the same place.
+     */
+    private static final int[][] PATTERNS = new int[7][4];
+    private static final int[][] CANONICAL_ROTATIONS = new int[7][4];
+    
+    static {
+        for(int s = 0; s < 7; s++) {
+            for(int r = 0; r < 4; r++) {
+                int top = Tetrimino.getTopRow(s, r);
+                int left = Tetrimino.getLeftColumn(s, r);
+                for(int i = top; i <= Tetrimino.getBottomRow(s, r); i++) {
+                    PATTERNS[s][r] |= (Tetrimino.getRowMask(s, r, i) >>> left) << (4 * (i - top));
+                }
+                CANONICAL_ROTATIONS[s][r] = r;
+                for(int q = 0; q < r; q++) {
+                    if(PATTERNS[s][q] == PATTERNS[s][r]) {
+                        CANONICAL_ROTATIONS[s][r] = q;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+    
+    private long[] free = new long[MASKS];
+    private long[] open = new long[MASKS];
+    private long[] landed = new long[MASKS];
+    private long[] found = new long[MASKS];
+    private long[] reachable = new long[MASKS];
+    private int[] column_masks = new int[Tetris.TETRIS_WIDTH];
+    private int shape;
+    
+    /**
+     * The rows reached after each number of moves, as the masks of every
+     * rotation and column for each layer of the search, kept so that the
+     * inputs of a placement can be traced back.
+     */
+    private long[] layers = new long[MASKS * 32];
+    
+    /**
+     * The placements found by the last search, as the state the Tetrimino
+     * comes to rest in, the state it is dropped from, and the number of
+     * inputs needed. The cells covered are marked with the number of the
+     * search, so the marks never need to be cleared.
+     */
+    private int[] placements = new int[STATES];
+    private int[] sources = new int[STATES];
+    private int[] costs = new int[STATES];
+    private int[] covered = new int[4 << 9];
+    private int placement_count, landing_count, search;
+    
+    /**
+     * Finds every resting place a Tetrimino can reach from where it is now.
+     * @param well the TetriminoWell the Tetrimino is in
+     * @param piece the Tetrimino, whose shape and rotation are used
+     * @param row the uppermost row of the Tetrimino
+     * @param column the leftmost column of the Tetrimino
+     * @return the number of placements found, which is 0 if the Tetrimino
+     * does not fit where it is
+     */
+    public int generate(TetriminoWell well, Tetrimino piece, int row, int column) {
+        shape = piece.getShape().ordinal();
+        placement_count = landing_count = 0;
+        if(++search == 0) {
+            Arrays.fill(covered, 0);
+            search = 1;
+        }
+        if(column < FIRST_COLUMN || column >= FIRST_COLUMN + COLUMNS ||
+            row < 0 || row >= ROWS) {
+            return 0;
+        }
+        buildFreeMasks(well);
+        int rotation = piece.getRotation().ordinal();
+        int start = getMask(rotation, column - FIRST_COLUMN);
+        long bit = 1L << getBit(rotation, row);
+        if((free[start] & bit) == 0) return 0;
+        int resting = fillReachable(start, bit);
+        long[] layers = this.layers, open = this.open, free = this.free,
+            landed = this.landed, found = this.found;
+        Arrays.fill(landed, 0);
+        Arrays.fill(layers, 0, MASKS, 0);
+        layers[start] = bit;
+        open[start] &= ~bit;
+        // Stop as soon as every reachable resting place has been found, as
+        // the rest of the search would only go down columns it can DROP from
+        for(int depth = 0, base = 0; landing_count < resting; depth++, base += MASKS) {
+            if(base + 2 * MASKS > layers.length) {
+                layers = this.layers = Arrays.copyOf(layers, layers.length * 2);
+            }
+            int next = base + MASKS;
+            long reached = 0, landing = 0;
+            for(int pair = 0; pair < 2; pair++) {
+                int first = pair * STRIDE + 1;
+                int turn = base + (pair ^ 1) * STRIDE + 1 - first;
+                long left = 0, rows = layers[base + first];
+                for(int rc = first; rc < first + COLUMNS; rc++) {
+                    long right = layers[base + rc + 1];
+                    // Adding the rows reached to the free rows carries each
+                    // of them down to the end of its run, where a DROP rests
+                    long rests = free[rc] & ~(free[rc] + rows) & ~(free[rc] >>> 1) &
+                        ~landed[rc];
+                    found[rc] = rests;
+                    landing |= rests;
+                    long turned = layers[turn + rc];
+                    long moved = (rows << 1 | left | right | turned |
+                        Long.rotateLeft(turned, 32)) & open[rc];
+                    open[rc] &= ~moved;
+                    layers[next + rc] = moved;
+                    reached |= moved;
+                    left = rows;
+                    rows = right;
+                }
+            }
+            if(landing != 0) {
+                for(int rc = 0; rc < MASKS; rc++) {
+                    if(found[rc] != 0) addPlacements(rc, layers[base + rc], found[rc], depth + 1);
+                }
+            }
+            if(reached == 0) break;
+        }
+        return placement_count;
+    }
+    
+    /**
+     * Get the mask of a rotation and column.
+     * @param rotation the ordinal of the TetriminoRotation
+     * @param index the column, counted from FIRST_COLUMN
+     * @return the index of the mask
+     */
+    private static int getMask(int rotation, int index) {
+        return (rotation & 1) * STRIDE + index + 1;
+    }
+    
+    /**
+     * Get the bit of a rotation and row within a mask.
+     * @param rotation the ordinal of the TetriminoRotation
+     * @param row the row
+     * @return the bit
+     */
+    private static int getBit(int rotation, int row) {
+        return (rotation >>> 1) << 5 | row;
+    }
+    
+    /**
+     * Get the rotation of a state.
+     * @param rc the mask of the state
+     * @param bit the bit of the state within its mask
+     * @return the ordinal of the TetriminoRotation
+     */
+    private static int getStateRotation(int rc, int bit) {
+        return rc / STRIDE | (bit >>> 5) << 1;
+    }
+    
+    /**
+     * Finds every state the Tetrimino can reach, without counting moves, by
+     * spreading the reachable rows of each rotation and column to their
+     * neighbours until nothing changes. Adding the reachable rows to the free
+     * rows carries each of them down to the end of its run of free rows, the
+     * way MOVE_DOWN would.
+     * @param start the mask the Tetrimino starts in
+     * @param bit the bit of the state the Tetrimino starts in
+     * @return the number of resting places that can be reached
+     */
+    private int fillReachable(int start, long bit) {
+        long[] reachable = this.reachable, free = this.free;
+        Arrays.fill(reachable, 0);
+        reachable[start] = bit;
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            for(int pair = 0; pair < 2; pair++) {
+                int first = pair * STRIDE + 1;
+                int last = first + COLUMNS - 1;
+                int turn = (pair ^ 1) * STRIDE + 1 - first;
+                // Sweep right and then left, so a whole row spreads at once
+                long rows = 0;
+                for(int rc = first; rc <= last; rc++) {
+                    long turned = reachable[turn + rc];
+                    rows = (rows | reachable[rc] | turned | Long.rotateLeft(turned, 32)) &
+                        free[rc];
+                    rows |= free[rc] & ~(free[rc] + rows);
+                    if(rows != reachable[rc]) {
+                        reachable[rc] = rows;
+                        changed = true;
+                    }
+                }
+                rows = 0;
+                for(int rc = last; rc >= first; rc--) {
+                    rows = (rows | reachable[rc]) & free[rc];
+                    rows |= free[rc] & ~(free[rc] + rows);
+                    if(rows != reachable[rc]) {
+                        reachable[rc] = rows;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        int resting = 0;
+        for(int rc = 0; rc < MASKS; rc++) {
+            resting += Long.bitCount(reachable[rc] & ~(free[rc] >>> 1));
+        }
+        return resting;
+    }
+    
+    /**
+     * Builds the masks of free rows for every rotation and column of the
+     * current shape. A row is free when none of the Tetrimino's four blocks
+     * lands on an occupied cell, a side of the well, or the floor.
+     * @param well the TetriminoWell
+     */
+    private void buildFreeMasks(TetriminoWell well) {
+        WellMetrics metrics = well.getMetrics();
+        for(int c = 0; c < column_masks.length; c++) {
+            // The floor and everything below it is occupied
+            column_masks[c] = metrics.getColumnMask(c) | -(1 << FLOOR);
+        }
+        Arrays.fill(free, 0);
+        for(int rotation = 0; rotation < 4; rotation++) {
+            int[][] coords = Tetrimino.getCoordinates(shape, rotation);
+            int shift = getBit(rotation, 0);
+            for(int index = 0; index < COLUMNS; index++) {
+                int blocked = 0;
+                for(int i = 0; i < 4; i++) {
+                    int c = index + FIRST_COLUMN + coords[i][1];
+                    int mask = c < 0 || c >= column_masks.length ? -1 : column_masks[c];
+                    blocked |= mask >>> coords[i][0];
+                }
+                free[getMask(rotation, index)] |= (long) (~blocked & FREE_ROWS) << shift;
+            }
+        }
+        System.arraycopy(free, 0, open, 0, MASKS);
+    }
+    
+    /**
+     * Records new resting places that the rows reached in one mask DROP to.
+     * Since the layers of the search are taken in order, a resting place
+     * that covers the same cells as one found before can never need fewer
+     * inputs, and is left out.
+     * @param rc the mask
+     * @param rows the rows reached
+     * @param rests the resting places
+     * @param cost the number of inputs, including the DROP
+     */
+    private void addPlacements(int rc, long rows, long rests, int cost) {
+        int index = rc % STRIDE - 1;
+        landed[rc] |= rests;
+        landing_count += Long.bitCount(rests);
+        while(rests != 0) {
+            int bit = Long.numberOfTrailingZeros(rests);
+            rests &= rests - 1;
+            int rotation = getStateRotation(rc, bit);
+            int top = (bit & 31) + Tetrimino.getTopRow(shape, rotation);
+            int left = index + FIRST_COLUMN + Tetrimino.getLeftColumn(shape, rotation);
+            int cells = CANONICAL_ROTATIONS[shape][rotation] << 9 | top << 4 | left;
+            if(covered[cells] == search) continue;
+            covered[cells] = search;
+            // The lowest row reached above the resting place is in its run
+            int source = 63 - Long.numberOfLeadingZeros(rows & ((2L << bit) - 1));
+            placements[placement_count] = rc << 6 | bit;
+            sources[placement_count] = rc << 6 | source;
+            costs[placement_count] = cost;
+            placement_count++;
+        }
+    }
+    
+    /**
+     * Get the number of placements found by the last search.
+     * @return the number of placements
+     */
+    public int getPlacementCount() {
+        return placement_count;
+    }
+    
+    /**
+     * Get the rotation a placement rests in.
+     * @param i the index of the placement
+     * @return the ordinal of the TetriminoRotation
+     */
+    public int getRotation(int i) {
+        return getStateRotation(placements[i] >>> 6, placements[i] & 63);
+    }
+    
+    /**
+     * Get the uppermost row of a placement.
+     * @param i the index of the placement
+     * @return the row
+     */
+    public int getRow(int i) {
+        return placements[i] & 31;
+    }
+    
+    /**
+     * Get the leftmost column of a placement.
+     * @param i the index of the placement
+     * @return the column
+     */
+    public int getColumn(int i) {
+        return (placements[i] >>> 6) % STRIDE - 1 + FIRST_COLUMN;
+    }
+    
+    /**
+     * Get the number of inputs needed to put the Tetrimino in a placement and
+     * lock it there.
+     * @param i the index of the placement
+     * @return the number of inputs
+     */
+    public int getInputCount(int i) {
+        return costs[i];
+    }
+    
+    /**
+     * Get the shortest sequence of inputs that puts the Tetrimino in a
+     * placement and locks it there. The last input is always a DROP.
+     * @param i the index of the placement
+     * @return the inputs, in order
+     */
+    public GameEngine.Input[] getInputs(int i) {
+        GameEngine.Input[] inputs = new GameEngine.Input[costs[i]];
+        inputs[inputs.length - 1] = GameEngine.Input.DROP;
+        int rc = sources[i] >>> 6;
+        int bit = sources[i] & 63;
+        // Find a state in each layer before that leads to this one
+        for(int n = inputs.length - 2; n >= 0; n--) {
+            int base = n * MASKS;
+            int rotation = getStateRotation(rc, bit);
+            int index = rc % STRIDE - 1;
+            int row = bit & 31;
+            int clockwise = (rotation + 3) & 3;
+            int counter_clockwise = (rotation + 1) & 3;
+            if(row > 0 && (layers[base + rc] & (1L << (bit - 1))) != 0) {
+                inputs[n] = GameEngine.Input.MOVE_DOWN;
+                bit--;
+            } else if((layers[base + rc - 1] & (1L << bit)) != 0) {
+                inputs[n] = GameEngine.Input.MOVE_RIGHT;
+                rc--;
+            } else if((layers[base + rc + 1] & (1L << bit)) != 0) {
+                inputs[n] = GameEngine.Input.MOVE_LEFT;
+                rc++;
+            } else if((layers[base + getMask(clockwise, index)] &
+                (1L << getBit(clockwise, row))) != 0) {
+                inputs[n] = GameEngine.Input.ROTATE_CLOCKWISE;
+                rc = getMask(clockwise, index);
+                bit = getBit(clockwise, row);
+            } else {
+                inputs[n] = GameEngine.Input.ROTATE_COUNTER_CLOCKWISE;
+                rc = getMask(counter_clockwise, index);
+                bit = getBit(counter_clockwise, row);
+            }
+        }
+        return inputs;
+    }
+    
+    /**
+     * Get the current position of the falling Tetrimino in a model, then
+     * finds its placements. Nothing is found while lines are being cleared.
+     * @param model the TetrisModel
+     * @return the number of placements found
+     */
+    public int generate(TetrisModel model) {
+        if(model.isClearPending()) {
+            placement_count = 0;
+            return 0;
+        }
+        return generate(model.getWell(), model.getCurrent(), model.getRow(),
+            model.getColumn());
+    }
+    
+    /**
+     * Test routine. Plays random games, and at every Tetrimino checks the
+     * placements against a plain breadth first search that calls
+     * TetriminoWell.checkCollision() for each state, then plays the inputs of
+     * every placement on a copy of the game to check that they are legal and
+     * end up where they should.
+     */
+    public static void testMoveGenerator() {
+        MoveGenerator generator = new MoveGenerator();
+        GameEngine engine = new GameEngine();
+        GameEngine branch = new GameEngine();
+        ByteBuffer snapshot = ByteBuffer.allocate(GameEngine.SNAPSHOT_SIZE);
+        Random random = new Random(3);
+        int pieces = 0, placements = 0, mismatches = 0;
+        for(int game = 0; game < 50; game++) {
+            engine.reset(random.nextLong());
+            while(!engine.isGameOver()) {
+                TetrisModel model = engine.getModel();
+                if(model.isClearPending()) {
+                    engine.tick();
+                    continue;
+                }
+                int count = generator.generate(model);
+                HashMap<Integer, Integer> expected = search(model);
+                if(count != expected.size()) mismatches++;
+                snapshot.clear();
+                engine.writeSnapshot(snapshot);
+                for(int i = 0; i < count; i++) {
+                    Integer cost = expected.get(getCellKey(model.getCurrent().getShape().ordinal(),
+                        generator.getRotation(i), generator.getRow(i), generator.getColumn(i)));
+                    if(cost == null || cost != generator.getInputCount(i)) mismatches++;
+                    snapshot.flip();
+                    branch.readSnapshot(snapshot);
+                    GameEngine.Input[] inputs = generator.getInputs(i);
+                    for(int n = 0; n < inputs.length - 1; n++) {
+                        if(!branch.step(inputs[n])) mismatches++;
+                    }
+                    TetrisModel b = branch.getModel();
+                    if(b.getCurrent().getRotation().ordinal() != generator.getRotation(i) ||
+                        b.getColumn() != generator.getColumn(i) ||
+                        b.getGhostRow() != generator.getRow(i) ||
+                        inputs[inputs.length - 1] != GameEngine.Input.DROP) {
+                        mismatches++;
+                    }
+                }
+                pieces++;
+                placements += count;
+                // Lock a random placement and carry on
+                int choice = random.nextInt(Math.max(count, 1));
+                GameEngine.Input[] inputs = count > 0 ? generator.getInputs(choice) :
+                    new GameEngine.Input[] { GameEngine.Input.DROP };
+                for(GameEngine.Input input : inputs) engine.step(input);
+                engine.tick();
+            }
+        }
+        System.out.println("Pieces: " + pieces + ", placements: " + placements +
+            ", mismatches: " + mismatches);
+    }
+    
+    /**
+     * Get a number for the cells a Tetrimino covers, for the test routine.
+     * @param shape the ordinal of the TetriminoShape
+     * @param rotation the ordinal of the TetriminoRotation
+     * @param row the uppermost row of the Tetrimino
+     * @param column the leftmost column of the Tetrimino
+     * @return the same number for any two placements that cover the same cells
+     */
+    private static int getCellKey(int shape, int rotation, int row, int column) {
+        return PATTERNS[shape][rotation] << 9 | (row + Tetrimino.getTopRow(shape, rotation)) << 4 |
+            (column + Tetrimino.getLeftColumn(shape, rotation));
+    }
+    
+    /**
+     * A plain breadth first search for the test routine, using Tetrimino
+     * objects and TetriminoWell.checkCollision() the way the TetrisModel does.
+     * @param model the TetrisModel with the Tetrimino to search for
+     * @return the fewest inputs needed to lock each placement, keyed by the
+     * cells it covers
+     */
+    private static HashMap<Integer, Integer> search(TetrisModel model) {
+        TetriminoWell well = model.getWell();
+        Tetrimino.TetriminoShape shape = model.getCurrent().getShape();
+        Tetrimino.TetriminoRotation[] rotations = Tetrimino.TetriminoRotation.values();
+        HashMap<Integer, Integer> distances = new HashMap<Integer, Integer>();
+        HashMap<Integer, Integer> costs = new HashMap<Integer, Integer>();
+        ArrayDeque<int[]> queue = new ArrayDeque<int[]>();
+        int[] start = { model.getCurrent().getRotation().ordinal(), model.getRow(),
+            model.getColumn() };
+        queue.add(start);
+        distances.put(Arrays.hashCode(start), 0);
+        while(!queue.isEmpty()) {
+            int[] s = queue.poll();
+            int d = distances.get(Arrays.hashCode(s));
+            Tetrimino t = new Tetrimino(shape, rotations[s[0]]);
+            int fall = 0;
+            while(!well.checkCollision(t, s[1] + fall + 1, s[2])) fall++;
+            int key = getCellKey(shape.ordinal(), s[0], s[1] + fall, s[2]);
+            if(!costs.containsKey(key) || costs.get(key) > d + 1) costs.put(key, d + 1);
+            int[][] next = {
+                { s[0], s[1] + 1, s[2] }, { s[0], s[1], s[2] - 1 },
+                { s[0], s[1], s[2] + 1 }, { (s[0] + 1) & 3, s[1], s[2] },
+                { (s[0] + 3) & 3, s[1], s[2] }
+            };
+            for(int[] n : next) {
+                if(distances.containsKey(Arrays.hashCode(n))) continue;
+                if(well.checkCollision(new Tetrimino(shape, rotations[n[0]]), n[1], n[2])) {
+                    continue;
+                }
+                distances.put(Arrays.hashCode(n), d + 1);
+                queue.add(n);
+            }
+        }
+        return costs;
+    }
+
+}
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * A piece of music that loops forever, played by the TetrisAudio engine.
+ * 16 bit PCM WAV files at the engine's sample rate are memory mapped, so the
+ * samples are paged in from the file as they are played instead of being read
+ * into memory up front, and starting the game does not wait for the whole
+ * file to load. Any other file is decoded into memory by
+ * TetrisAudio.loadSound() instead. Either way the music loops at the sample
+ * level, with no gap between the last sample and the first, and it keeps its
+ * position until it is rewound.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class MusicStream {
+    
+    /**
+     * The ids of the parts of a WAV file, as little endian ints.
+     */
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int FMT = 0x20746D66;
+    private static final int DATA = 0x61746164;
+    
+    private RandomAccessFile file;
+    private ShortBuffer samples;
+    private int channels;
+    private int frames;
+    private int position;
+    
+    /**
+     * Constructor for a new MusicStream, positioned at the start of the music.
+     * @param file_name the name of the music file
+     * @throws IOException if the file could not be read
+     * @throws UnsupportedAudioFileException if the file is not a known format
+     */
+    public MusicStream(String file_name)
+        throws IOException, UnsupportedAudioFileException {
+        file = new RandomAccessFile(file_name, "r");
+        try {
+            if(!mapWave()) {
+                file.close();
+                file = null;
+                samples = ShortBuffer.wrap(TetrisAudio.loadSound(file_name));
+                channels = 1;
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        frames = samples.capacity() / channels;
+        if(frames == 0) {
+            close();
+            throw new UnsupportedAudioFileException("No samples in " + file_name);
+        }
+    }
+    
+    /**
+     * Maps the samples of a WAV file if they are 16 bit PCM at the sample rate
+     * of the TetrisAudio engine, with one or two channels.
+     * @return true if the samples were mapped, false if the file must be decoded
+     * @throws IOException if the file could not be read
+     */
+    private boolean mapWave() throws IOException {
+        FileChannel channel = file.getChannel();
+        long length = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        if(!read(channel, buffer, 0, 12) || buffer.getInt(0) != RIFF ||
+            buffer.getInt(8) != WAVE) {
+            return false;
+        }
+        boolean pcm = false;
+        long offset = 12;
+        while(read(channel, buffer, offset, 8)) {
+            int id = buffer.getInt(0);
+            long size = buffer.getInt(4) & 0xFFFFFFFFL;
+            if(id == FMT && size >= 16) {
+                if(!read(channel, buffer, offset + 8, 16)) return false;
+                int format = buffer.getShort(0);
+                channels = buffer.getShort(2);
+                int rate = buffer.getInt(4);
+                int bits = buffer.getShort(14);
+                pcm = format == 1 && bits == 16 && (channels == 1 || channels == 2) &&
+                    rate == (int) TetrisAudio.FORMAT.getSampleRate();
+            } else if(id == DATA) {
+                size = Math.min(size, length - offset - 8);
+                if(!pcm || size > Integer.MAX_VALUE) return false;
+                samples = channel.map(FileChannel.MapMode.READ_ONLY, offset + 8,
+                    size & ~1L).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+                return true;
+            }
+            offset += 8 + size + (size & 1); // Chunks are padded to even sizes
+        }
+        return false;
+    }
+    
+    /**
+     * Reads bytes from a file into the start of a buffer.
+     * @param channel the FileChannel to read from
+     * @param buffer the buffer to read into
+     * @param offset the position in the file to read from
+     * @param count the number of bytes to read
+     * @return true if all of the bytes were read, false if the file ended first
+     * @throws IOException if the file could not be read
+     */
+    private static boolean read(FileChannel channel, ByteBuffer buffer,
+        long offset, int count) throws IOException {
+        buffer.clear();
+        buffer.limit(count);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, offset + buffer.position()) < 0) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Adds the next samples of the music to a mix, looping back to the start
+     * of the music when the end is reached. Stereo music is mixed down to mono.
+     * @param mix the samples to add the music to
+     * @param count the number of samples to add
+     */
+    public void mix(int[] mix, int count) {
+        for(int i = 0; i < count; i++) {
+            if(channels == 1) {
+                mix[i] += samples.get(position);
+            } else {
+                mix[i] += (samples.get(2 * position) + samples.get(2 * position + 1)) >> 1;
+            }
+            if(++position == frames) position = 0;
+        }
+    }
+    
+    /**
+     * Moves back to the start of the music.
+     */
+    public void rewind() {
+        position = 0;
+    }
+    
+    /**
+     * Get the position in the music.
+     * @return the number of frames from the start of the music
+     */
+    public int getPosition() {
+        return position;
+    }
+    
+    /**
+     * Get the length of the music.
+     * @return the number of frames in the music
+     */
+    public int getLength() {
+        return frames;
+    }
+    
+    /**
+     * Closes the music file. The mapped samples remain readable until they
+     * are garbage collected.
+     */
+    public void close() {
+        if(file == null) return;
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+        file = null;
+    }
+
+}
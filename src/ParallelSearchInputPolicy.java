@@ -0,0 +1,21 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A SearchInputPolicy that spreads each decision across the common
+ * ForkJoinPool, for playing a single game on a machine with many cores. Run
+ * it with java TetrisSimulator 1 ParallelSearchInputPolicy.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class ParallelSearchInputPolicy extends SearchInputPolicy {
+    
+    /**
+     * Constructor for a new ParallelSearchInputPolicy with the default
+     * settings.
+     */
+    public ParallelSearchInputPolicy() {
+        super(new LookaheadSearch(new WeightedBoardEvaluator(), ForkJoinPool.commonPool()));
+    }
+
+}
@@ -0,0 +1,36 @@
+import java.util.Random;
+
+/**
+ * An InputPolicy that moves and rotates each Tetrimino at random for a few
+ * inputs, then drops it. This is the default policy for the TetrisSimulator.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class RandomInputPolicy implements InputPolicy {
+    
+    private static final int MAX_INPUTS_PER_PIECE = 8;
+    private static final GameEngine.Input[] MOVES = {
+        GameEngine.Input.MOVE_LEFT, GameEngine.Input.MOVE_RIGHT,
+        GameEngine.Input.MOVE_DOWN, GameEngine.Input.ROTATE_CLOCKWISE,
+        GameEngine.Input.ROTATE_COUNTER_CLOCKWISE, GameEngine.Input.HOLD_EXCHANGE
+    };
+    
+    private Random random = new Random();
+    private int inputs_left;
+    
+    @Override
+    public void reset(long seed) {
+        random.setSeed(seed);
+        inputs_left = random.nextInt(MAX_INPUTS_PER_PIECE);
+    }
+    
+    @Override
+    public GameEngine.Input nextInput(GameEngine engine) {
+        if(engine.getModel().isClearPending()) return null;
+        if(inputs_left-- > 0) return MOVES[random.nextInt(MOVES.length)];
+        inputs_left = random.nextInt(MAX_INPUTS_PER_PIECE);
+        return GameEngine.Input.DROP;
+    }
+    
+}
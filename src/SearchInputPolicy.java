@@ -0,0 +1,72 @@
+/**
+ * An InputPolicy that plays like a bot, deciding where each Tetrimino goes
+ * with a LookaheadSearch and then giving the shortest sequence of inputs
+ * that puts it there, as found by a MoveGenerator. Run it with
+ * java TetrisSimulator [games] SearchInputPolicy to see how well it plays.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class SearchInputPolicy implements InputPolicy {
+    
+    private LookaheadSearch search;
+    private MoveGenerator generator = new MoveGenerator();
+    
+    /**
+     * The inputs left to give for the current Tetrimino, and the index of the
+     * next one. After a HOLD_EXCHANGE the plan is empty until the inputs for
+     * the Tetrimino swapped in are found.
+     */
+    private GameEngine.Input[] plan = new GameEngine.Input[0];
+    private int planned;
+    private boolean holding;
+    
+    /**
+     * Constructor for a new SearchInputPolicy that searches on the thread
+     * playing the game, with the default settings.
+     */
+    public SearchInputPolicy() {
+        this(new LookaheadSearch(new WeightedBoardEvaluator()));
+    }
+    
+    /**
+     * Constructor for a new SearchInputPolicy.
+     * @param search the LookaheadSearch that decides where Tetriminos go
+     */
+    public SearchInputPolicy(LookaheadSearch search) {
+        this.search = search;
+    }
+    
+    @Override
+    public void reset(long seed) {
+        planned = plan.length;
+        holding = false;
+    }
+    
+    @Override
+    public GameEngine.Input nextInput(GameEngine engine) {
+        TetrisModel model = engine.getModel();
+        if(model.isClearPending()) return null;
+        if(planned < plan.length) return plan[planned++];
+        if(!holding) {
+            if(!search.search(model)) return GameEngine.Input.DROP;
+            if(search.isHold()) {
+                holding = true;
+                return GameEngine.Input.HOLD_EXCHANGE;
+            }
+        }
+        holding = false;
+        int count = generator.generate(model);
+        for(int i = 0; i < count; i++) {
+            if(generator.getRotation(i) == search.getRotation() &&
+                generator.getRow(i) == search.getRow() &&
+                generator.getColumn(i) == search.getColumn()) {
+                plan = generator.getInputs(i);
+                planned = 0;
+                return plan[planned++];
+            }
+        }
+        return GameEngine.Input.DROP;
+    }
+
+}
@@ -0,0 +1,647 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Encodes the events of one game into a stream of frames for spectators, and
+ * hands every frame to each of the game's subscribers. A frame is encoded
+ * once into a shared, read only direct ByteBuffer, and each subscriber gets a
+ * duplicate of it that shares the same memory, so the cost of a frame to
+ * each spectator is one small object and one write, however many spectators
+ * there are. Nothing is encoded while a game has no spectators.
+ * 
+ * Every frame starts with an unsigned short length, counting the rest of the
+ * frame, a type byte and an unsigned short sequence number, which wraps:
+ * 
+ *   KEYFRAME  the whole visible state of the game
+ *   DELTA     the changes to the game since the frame before
+ * 
+ * A keyframe is encoded every keyframe interval frames, and when a delta
+ * would be larger than a keyframe. A new spectator is sent the latest
+ * keyframe and the deltas since, so it can start watching at once. A
+ * spectator that misses a frame waits for the next keyframe.
+ * 
+ * The payload of a keyframe is:
+ * 
+ *   byte   flags: PIECE_VISIBLE, HELD_PRESENT
+ *   byte   current Tetrimino (shape << 2 | rotation), row, column, ghost row
+ *   byte   next shape, held Tetrimino (shape << 2 | rotation)
+ *   byte   clear row, bit pattern of highlighted lines
+ *   int    Tetriminos dropped, single, double and triple lines and Tetris
+ *          cleared
+ *   byte   the ROWS x COLUMNS cells of the well, two cells to a byte, each
+ *          0 if empty, or 1 plus the ordinal of the TetriminoShape
+ * 
+ * The payload of a delta is a list of operations, each starting with a byte
+ * holding a TetrisEventQueue opcode in its top three bits:
+ * 
+ *   DISPLAY, ERASE, GHOST  the low bits hold shape << 2 | rotation, then a
+ *                          byte row and a byte column
+ *   NEXT, HOLD             the low bits hold shape << 2 | rotation
+ *   HIGHLIGHT, CLEAR       the low bits hold the bit pattern of lines, then
+ *                          a byte row
+ *   MOVE                   the low bits hold shape << 2 | rotation, then a
+ *                          byte row, column and ghost row
+ * 
+ * MOVE stands for the four events the TetrisModel sends whenever the current
+ * Tetrimino moves: erasing the ghost and the Tetrimino where they were, and
+ * drawing them where they are now. Both ends of the stream keep track of
+ * where the current Tetrimino and its ghost were drawn, so only the new
+ * position needs to be sent. The statistics are not sent in a delta either,
+ * since a NEXT is sent each time a Tetrimino is dropped and a HIGHLIGHT each
+ * time lines are cleared, so a spectator can count them itself.
+ * 
+ * A SpectatorBroadcast is not thread safe. It is meant to be used by the
+ * thread that runs its game.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class SpectatorBroadcast {
+    
+    /**
+     * Receives the frames of a SpectatorBroadcast.
+     */
+    public interface Subscriber {
+        
+        /**
+         * Called with each frame, in order. The frame is a duplicate owned by
+         * this Subscriber, positioned at the start of the frame.
+         * @param frame the frame
+         * @return true to keep receiving frames, false to unsubscribe
+         */
+        boolean send(ByteBuffer frame);
+        
+        /**
+         * Called when the game ends for good, after the last frame.
+         */
+        void close();
+    
+    }
+    
+    /**
+     * The types of the frames.
+     */
+    public static final int KEYFRAME = 5;
+    public static final int DELTA = 6;
+    
+    /**
+     * The size of the well sent to spectators, including the hidden rows at
+     * the top where new Tetriminos appear.
+     */
+    public static final int ROWS = TetriminoWell.WELL_HEIGHT - 2;
+    public static final int COLUMNS = Tetris.TETRIS_WIDTH;
+    
+    /**
+     * The flags of a keyframe.
+     */
+    public static final int PIECE_VISIBLE = 1;
+    public static final int HELD_PRESENT = 2;
+    
+    /**
+     * The opcode of a MOVE in a delta, which is not used by any event.
+     */
+    public static final int MOVE = 0;
+    
+    public static final int HEADER_SIZE = 5;
+    public static final int KEYFRAME_SIZE = HEADER_SIZE + 29 + ROWS * COLUMNS / 2;
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 64;
+    
+    private static final int SLAB_SIZE = 64 * 1024;
+    private static final int MAX_FRAME = 4096;
+    private static final int POSITION_MASK = 0x1FFFFFF0; // All but the opcode
+    private static final int SHAPE_MASK = 0x1FFFF000; // Column, shape, rotation
+    
+    private int keyframe_interval;
+    private ArrayList<Subscriber> subscribers;
+    private ArrayList<ByteBuffer> history;
+    private int[] events;
+    private int event_count;
+    private ByteBuffer slab, shared_slab;
+    private int sequence;
+    private int piece, ghost;
+    private long frames_published, bytes_published, frames_sent;
+    
+    /**
+     * Constructor for a new SpectatorBroadcast with no subscribers.
+     * @param keyframe_interval the number of frames from one keyframe to the
+     * next
+     */
+    public SpectatorBroadcast(int keyframe_interval) {
+        // Check for valid parameter
+        if(keyframe_interval < 1) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.keyframe_interval = keyframe_interval;
+        subscribers = new ArrayList<Subscriber>();
+        history = new ArrayList<ByteBuffer>();
+        events = new int[64];
+    }
+    
+    /**
+     * Records an event from the TetrisModel, to go out in the next frame.
+     * Events are ignored while there are no subscribers.
+     * @param event the packed event
+     */
+    public void add(int event) {
+        if(subscribers.isEmpty()) return;
+        if(event_count == events.length) {
+            events = Arrays.copyOf(events, 2 * event_count);
+        }
+        events[event_count++] = event;
+    }
+    
+    /**
+     * Adds a Subscriber, and sends it the latest keyframe and the deltas
+     * since, so that it is up to date with the game.
+     * @param subscriber the Subscriber
+     * @param engine the GameEngine of the game, at the end of its last frame
+     */
+    public void subscribe(Subscriber subscriber, GameEngine engine) {
+        if(subscribers.isEmpty()) {
+            // The history went stale while no one was watching
+            subscribers.add(subscriber);
+            event_count = 0;
+            publishKeyframe(engine);
+            return;
+        }
+        for(ByteBuffer frame : history) {
+            frames_sent++;
+            if(!subscriber.send(frame.duplicate())) return;
+        }
+        subscribers.add(subscriber);
+    }
+    
+    /**
+     * Encodes the events since the last frame into a new frame and sends it
+     * to every subscriber. Nothing is sent if there are no events.
+     * @param engine the GameEngine of the game
+     */
+    public void publish(GameEngine engine) {
+        if(subscribers.isEmpty() || event_count == 0) return;
+        if(history.size() >= keyframe_interval ||
+            HEADER_SIZE + 3 * event_count > KEYFRAME_SIZE) {
+            publishKeyframe(engine);
+        } else {
+            publishDelta();
+        }
+        event_count = 0;
+    }
+    
+    /**
+     * Starts the picture over when a new game begins, since the TetrisModel
+     * sends no events for emptying the well. Any events not yet published
+     * are dropped, and a keyframe of the new game is sent.
+     * @param engine the GameEngine of the game
+     */
+    public void restart(GameEngine engine) {
+        event_count = 0;
+        if(!subscribers.isEmpty()) publishKeyframe(engine);
+    }
+    
+    /**
+     * Encodes a keyframe of the whole game, sends it to every subscriber and
+     * starts a new history with it.
+     * @param engine the GameEngine of the game
+     */
+    private void publishKeyframe(GameEngine engine) {
+        TetrisModel model = engine.getModel();
+        TetriminoWell well = model.getWell();
+        Tetrimino current = model.getCurrent();
+        Tetrimino held = model.getHeld();
+        boolean visible = !engine.isGameOver() && !model.isClearPending();
+        int start = begin(KEYFRAME);
+        slab.put((byte) ((visible ? PIECE_VISIBLE : 0) | (held != null ? HELD_PRESENT : 0)));
+        slab.put((byte) getShapeRotation(current));
+        slab.put((byte) model.getRow()).put((byte) model.getColumn());
+        slab.put((byte) model.getGhostRow());
+        slab.put((byte) model.getBag().nextShape().ordinal());
+        slab.put((byte) (held != null ? getShapeRotation(held) : 0));
+        slab.put((byte) model.getClearRow()).put((byte) model.getClearLines());
+        slab.putInt(model.getTetriminosDropped()).putInt(model.getSingleLinesCleared());
+        slab.putInt(model.getDoubleLinesCleared()).putInt(model.getTripleLinesCleared());
+        slab.putInt(model.getTetrisCleared());
+        for(int r = 0; r < ROWS; r++) {
+            for(int c = 0; c < COLUMNS; c += 2) {
+                slab.put((byte) (getCell(well, r, c) << 4 | getCell(well, r, c + 1)));
+            }
+        }
+        if(visible) {
+            piece = TetrisEventQueue.encode(0, current, model.getRow(), model.getColumn());
+            ghost = TetrisEventQueue.encode(0, current, model.getGhostRow(), model.getColumn());
+        } else {
+            piece = ghost = -1;
+        }
+        history.clear();
+        send(end(start));
+    }
+    
+    /**
+     * Encodes a delta of the events since the last frame and sends it to
+     * every subscriber.
+     */
+    private void publishDelta() {
+        int start = begin(DELTA);
+        int i = 0;
+        while(i < event_count) {
+            if(i + 3 < event_count && isMove(i)) {
+                int display = events[i + 3];
+                slab.put((byte) (MOVE << 5 | TetrisEventQueue.getShape(display) << 2 |
+                    TetrisEventQueue.getRotation(display)));
+                slab.put((byte) TetrisEventQueue.getRow(display));
+                slab.put((byte) TetrisEventQueue.getColumn(display));
+                slab.put((byte) TetrisEventQueue.getRow(events[i + 2]));
+                ghost = events[i + 2] & POSITION_MASK;
+                piece = display & POSITION_MASK;
+                i += 4;
+                continue;
+            }
+            int event = events[i++];
+            int opcode = TetrisEventQueue.getOpcode(event);
+            int shape_rotation = TetrisEventQueue.getShape(event) << 2 |
+                TetrisEventQueue.getRotation(event);
+            switch(opcode) {
+                case TetrisEventQueue.DISPLAY:
+                case TetrisEventQueue.ERASE:
+                case TetrisEventQueue.GHOST:
+                    slab.put((byte) (opcode << 5 | shape_rotation));
+                    slab.put((byte) TetrisEventQueue.getRow(event));
+                    slab.put((byte) TetrisEventQueue.getColumn(event));
+                    if(opcode == TetrisEventQueue.DISPLAY) piece = event & POSITION_MASK;
+                    if(opcode == TetrisEventQueue.GHOST) ghost = event & POSITION_MASK;
+                    break;
+                case TetrisEventQueue.NEXT:
+                case TetrisEventQueue.HOLD:
+                    slab.put((byte) (opcode << 5 | shape_rotation));
+                    break;
+                case TetrisEventQueue.HIGHLIGHT:
+                case TetrisEventQueue.CLEAR:
+                    slab.put((byte) (opcode << 5 | TetrisEventQueue.getLines(event)));
+                    slab.put((byte) TetrisEventQueue.getRow(event));
+                    break;
+            }
+        }
+        send(end(start));
+    }
+    
+    /**
+     * Check to see if the four events from an index are a move of the
+     * current Tetrimino: erasing the ghost and the Tetrimino where they were
+     * last drawn, then drawing them again in one column with one shape.
+     * @param i the index of the first event
+     * @return true if the events can be sent as a MOVE
+     */
+    private boolean isMove(int i) {
+        return TetrisEventQueue.getOpcode(events[i]) == TetrisEventQueue.ERASE &&
+            TetrisEventQueue.getOpcode(events[i + 1]) == TetrisEventQueue.ERASE &&
+            TetrisEventQueue.getOpcode(events[i + 2]) == TetrisEventQueue.GHOST &&
+            TetrisEventQueue.getOpcode(events[i + 3]) == TetrisEventQueue.DISPLAY &&
+            (events[i] & POSITION_MASK) == ghost &&
+            (events[i + 1] & POSITION_MASK) == piece &&
+            (events[i + 2] & SHAPE_MASK) == (events[i + 3] & SHAPE_MASK);
+    }
+    
+    /**
+     * Starts a new frame in the slab, moving to a new slab if this one is too
+     * full. Frames already sent keep the old slab alive until they are
+     * written.
+     * @param type the type of the frame
+     * @return the position of the start of the frame
+     */
+    private int begin(int type) {
+        if(slab == null || slab.remaining() < MAX_FRAME) {
+            slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+            shared_slab = slab.asReadOnlyBuffer();
+        }
+        int start = slab.position();
+        slab.putShort((short) 0).put((byte) type).putShort((short) sequence++);
+        return start;
+    }
+    
+    /**
+     * Finishes the frame started at a position.
+     * @param start the position of the start of the frame
+     * @return a read only view of the frame
+     */
+    private ByteBuffer end(int start) {
+        int length = slab.position() - start;
+        slab.putShort(start, (short) (length - 2));
+        return shared_slab.slice(start, length);
+    }
+    
+    /**
+     * Sends a frame to every subscriber, dropping the ones that have gone,
+     * and adds it to the history for new subscribers.
+     * @param frame the frame
+     */
+    private void send(ByteBuffer frame) {
+        history.add(frame);
+        frames_published++;
+        bytes_published += frame.remaining();
+        for(int s = subscribers.size() - 1; s >= 0; s--) {
+            Subscriber subscriber = subscribers.get(s);
+            frames_sent++;
+            // A Subscriber may already have unsubscribed itself while sending
+            if(!subscriber.send(frame.duplicate()) && s < subscribers.size() &&
+                subscribers.get(s) == subscriber) {
+                int last = subscribers.size() - 1;
+                subscribers.set(s, subscribers.get(last));
+                subscribers.remove(last);
+            }
+        }
+    }
+    
+    /**
+     * Removes a Subscriber. Nothing happens if it is not subscribed.
+     * @param subscriber the Subscriber
+     */
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+    
+    /**
+     * Closes every subscriber, when the game ends for good.
+     */
+    public void close() {
+        // Copy first, since a Subscriber may unsubscribe itself as it closes
+        Subscriber[] closing = subscribers.toArray(new Subscriber[0]);
+        subscribers.clear();
+        for(Subscriber subscriber : closing) subscriber.close();
+        history.clear();
+    }
+    
+    /**
+     * Get the shape and rotation of a Tetrimino, packed as in a frame.
+     * @param t the Tetrimino
+     * @return shape << 2 | rotation
+     */
+    private static int getShapeRotation(Tetrimino t) {
+        return t.getShape().ordinal() << 2 | t.getRotation().ordinal();
+    }
+    
+    /**
+     * Get a cell of the well, packed as in a keyframe.
+     * @param well the TetriminoWell
+     * @param row the row of the cell
+     * @param column the column of the cell, not counting the extra columns
+     * @return 0 if the cell is empty, or 1 plus the ordinal of its shape
+     */
+    static int getCell(TetriminoWell well, int row, int column) {
+        return "IJLOSTZ".indexOf(well.getSymbol(row, column + 2)) + 1;
+    }
+    
+    /**
+     * Get the number of subscribers.
+     * @return the number of subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+    
+    /**
+     * Get the number of frames encoded.
+     * @return the number of frames
+     */
+    public long getFramesPublished() {
+        return frames_published;
+    }
+    
+    /**
+     * Get the number of bytes encoded, which is what one spectator who
+     * watches the whole game receives.
+     * @return the number of bytes
+     */
+    public long getBytesPublished() {
+        return bytes_published;
+    }
+    
+    /**
+     * Get the number of frames handed to subscribers, counting each
+     * subscriber separately.
+     * @return the number of frames
+     */
+    public long getFramesSent() {
+        return frames_sent;
+    }
+    
+    /**
+     * Get the cells a spectator should see, straight from the TetrisModel.
+     * @param engine the GameEngine of the game
+     * @return the cells, row by row, valued as by SpectatorReplica.getCell()
+     */
+    private static int[] getExpectedCells(GameEngine engine) {
+        TetrisModel model = engine.getModel();
+        int[] cells = new int[ROWS * COLUMNS];
+        for(int r = 0; r < ROWS; r++) {
+            for(int c = 0; c < COLUMNS; c++) {
+                cells[r * COLUMNS + c] = getCell(model.getWell(), r, c);
+            }
+        }
+        if(!engine.isGameOver() && !model.isClearPending()) {
+            Tetrimino current = model.getCurrent();
+            int[][] coords = current.getCoordinates();
+            for(int i = 0; i < 4; i++) {
+                cells[(model.getGhostRow() + coords[i][0]) * COLUMNS +
+                    model.getColumn() + coords[i][1]] = SpectatorReplica.GHOST;
+            }
+            for(int i = 0; i < 4; i++) {
+                cells[(model.getRow() + coords[i][0]) * COLUMNS +
+                    model.getColumn() + coords[i][1]] = current.getShape().ordinal() + 1;
+            }
+        }
+        return cells;
+    }
+    
+    /**
+     * Check to see if a SpectatorReplica shows what the TetrisModel holds.
+     * @param replica the SpectatorReplica
+     * @param engine the GameEngine of the game
+     * @return true if every cell and statistic matches
+     */
+    private static boolean matches(SpectatorReplica replica, GameEngine engine) {
+        int[] cells = getExpectedCells(engine);
+        for(int i = 0; i < cells.length; i++) {
+            if(replica.getCell(i / COLUMNS, i % COLUMNS) != cells[i]) return false;
+        }
+        return replica.getScore() == engine.getScore() &&
+            replica.getLines() == engine.getLines() &&
+            replica.getNext() == engine.getModel().getBag().nextShape().ordinal();
+    }
+    
+    /**
+     * Test routine. Plays random games with spectators that join at the
+     * start, join part way through, and miss frames, and checks after every
+     * frame that each one that is synced sees exactly what the TetrisModel
+     * holds. Then measures the cost of a frame for audiences of growing size.
+     */
+    public static void testSpectatorBroadcast() {
+        final SpectatorBroadcast broadcast = new SpectatorBroadcast(DEFAULT_KEYFRAME_INTERVAL);
+        GameEngine engine = new GameEngine();
+        final long[] raw_bytes = new long[1];
+        engine.setListener(new TetrisModelListener() {
+            
+            @Override
+            public void queueInsert(int event) {
+                broadcast.add(event);
+                raw_bytes[0] += 4;
+            }
+            
+            @Override
+            public void timerHiccup() {
+            }
+            
+            @Override
+            public void processStatistics(int tetriminos_dropped,
+                int single_lines_cleared, int double_lines_cleared,
+                int triple_lines_cleared, int tetris_cleared) {
+            }
+            
+            @Override
+            public void gameOver() {
+            }
+        
+        });
+        final SpectatorReplica[] replicas = new SpectatorReplica[3];
+        final boolean[] missed = new boolean[1];
+        for(int i = 0; i < replicas.length; i++) {
+            final SpectatorReplica replica = new SpectatorReplica();
+            final int lossy = i;
+            replicas[i] = replica;
+            Subscriber subscriber = new Subscriber() {
+                
+                private int count;
+                
+                @Override
+                public boolean send(ByteBuffer frame) {
+                    // The third spectator misses one frame in every hundred
+                    if(lossy == 2 && ++count % 100 == 0) {
+                        missed[0] = true;
+                        return true;
+                    }
+                    replica.apply(frame);
+                    return true;
+                }
+                
+                @Override
+                public void close() {
+                }
+            
+            };
+            if(i != 1) broadcast.subscribe(subscriber, engine);
+            else replicas[1] = null;
+        }
+        RandomInputPolicy policy = new RandomInputPolicy();
+        int frames = 0, mismatches = 0;
+        for(long seed = 1; seed <= 20; seed++) {
+            engine.reset(seed);
+            policy.reset(seed);
+            broadcast.restart(engine);
+            while(!engine.isGameOver()) {
+                GameEngine.Input input = policy.nextInput(engine);
+                if(input == null) engine.tick();
+                else engine.step(input);
+                broadcast.publish(engine);
+                frames++;
+                if(frames == 500) {
+                    // The second spectator joins part way through the game
+                    final SpectatorReplica late = new SpectatorReplica();
+                    replicas[1] = late;
+                    broadcast.subscribe(new Subscriber() {
+                        
+                        @Override
+                        public boolean send(ByteBuffer frame) {
+                            late.apply(frame);
+                            return true;
+                        }
+                        
+                        @Override
+                        public void close() {
+                        }
+                    
+                    }, engine);
+                }
+                // A spectator cannot know it missed a frame until the next one
+                if(missed[0]) replicas[2].unsync();
+                missed[0] = false;
+                for(SpectatorReplica replica : replicas) {
+                    if(replica != null && replica.isSynced() && !matches(replica, engine)) {
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        System.out.println("Frames: " + broadcast.getFramesPublished() +
+            ", mismatches: " + mismatches);
+        System.out.println("Lossy spectator skipped " + replicas[2].getSkipped() +
+            " frames while resyncing");
+        System.out.printf("Bytes per frame: %.1f, as packed events: %.1f%n",
+            (double) broadcast.getBytesPublished() / broadcast.getFramesPublished(),
+            (double) raw_bytes[0] / broadcast.getFramesPublished());
+        // Measure the cost of each frame to each spectator as the audience grows
+        for(int audience = 1; audience <= 10000; audience *= 10) {
+            SpectatorBroadcast crowd = new SpectatorBroadcast(DEFAULT_KEYFRAME_INTERVAL);
+            engine.setListener(null);
+            engine.reset(1);
+            final long[] bytes = new long[1];
+            for(int i = 0; i < audience; i++) {
+                crowd.subscribe(new Subscriber() {
+                    
+                    @Override
+                    public boolean send(ByteBuffer frame) {
+                        bytes[0] += frame.remaining();
+                        return true;
+                    }
+                    
+                    @Override
+                    public void close() {
+                    }
+                
+                }, engine);
+            }
+            final SpectatorBroadcast target = crowd;
+            engine.setListener(new TetrisModelListener() {
+                
+                @Override
+                public void queueInsert(int event) {
+                    target.add(event);
+                }
+                
+                @Override
+                public void timerHiccup() {
+                }
+                
+                @Override
+                public void processStatistics(int tetriminos_dropped,
+                    int single_lines_cleared, int double_lines_cleared,
+                    int triple_lines_cleared, int tetris_cleared) {
+                }
+                
+                @Override
+                public void gameOver() {
+                }
+            
+            });
+            policy.reset(1);
+            bytes[0] = 0;
+            long sent = crowd.getFramesSent();
+            long start = System.nanoTime();
+            int count = 0;
+            while(count < 2000000 / audience + 100) {
+                if(engine.isGameOver()) {
+                    engine.reset(count);
+                    crowd.restart(engine);
+                }
+                GameEngine.Input input = policy.nextInput(engine);
+                if(input == null) engine.tick();
+                else engine.step(input);
+                crowd.publish(engine);
+                count++;
+            }
+            long nanos = System.nanoTime() - start;
+            sent = crowd.getFramesSent() - sent;
+            System.out.printf("Audience %5d: %6.1f ns and %5.1f bytes per frame per spectator%n",
+                audience, (double) nanos / sent, (double) bytes[0] / sent);
+        }
+    }
+
+}
@@ -0,0 +1,309 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Rebuilds the picture of a game from the frames of a SpectatorBroadcast,
+ * the way a spectator's client would. It starts out of sync, and only becomes
+ * synced by a keyframe. If a frame is missed, the sequence numbers show the
+ * gap and it waits for the next keyframe.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class SpectatorReplica {
+    
+    /**
+     * The value of a cell showing the ghost image of the current Tetrimino.
+     * Other cells are 0 if empty, or 1 plus the ordinal of a TetriminoShape.
+     */
+    public static final int GHOST = 8;
+    
+    private static final int ROWS = SpectatorBroadcast.ROWS;
+    private static final int COLUMNS = SpectatorBroadcast.COLUMNS;
+    
+    private byte[] cells = new byte[ROWS * COLUMNS];
+    private boolean synced;
+    private int sequence;
+    private int piece_shape, piece_row, piece_column;
+    private int ghost_shape, ghost_row, ghost_column;
+    private boolean piece_visible;
+    private int next, held = -1, highlight_row, highlight_lines;
+    private int tetriminos_dropped, single_lines_cleared, double_lines_cleared,
+        triple_lines_cleared, tetris_cleared;
+    private long frames, skipped;
+    
+    /**
+     * Applies one frame to the picture.
+     * @param frame the frame, positioned at its length; its position is
+     * moved to the end of the frame
+     * @return true if the frame was applied, false if it was skipped while
+     * waiting for a keyframe
+     * @throws IllegalArgumentException if the frame is not well formed
+     */
+    public boolean apply(ByteBuffer frame) {
+        int length = frame.getShort() & 0xFFFF;
+        int end = frame.position() + length;
+        if(length < SpectatorBroadcast.HEADER_SIZE - 2 || end > frame.limit()) {
+            throw new IllegalArgumentException("Invalid frame!");
+        }
+        int type = frame.get();
+        int number = frame.getShort() & 0xFFFF;
+        boolean applied;
+        if(type == SpectatorBroadcast.KEYFRAME) {
+            applyKeyframe(frame);
+            applied = synced = true;
+        } else if(type == SpectatorBroadcast.DELTA) {
+            if(synced && number != ((sequence + 1) & 0xFFFF)) synced = false;
+            if(synced) applyDelta(frame, end);
+            applied = synced;
+        } else {
+            throw new IllegalArgumentException("Invalid frame!");
+        }
+        if(frame.position() != end && applied) {
+            throw new IllegalArgumentException("Invalid frame!");
+        }
+        frame.position(end);
+        sequence = number;
+        if(applied) frames++;
+        else skipped++;
+        return applied;
+    }
+    
+    /**
+     * Replaces the picture with the contents of a keyframe.
+     * @param frame the frame, positioned at its payload
+     */
+    private void applyKeyframe(ByteBuffer frame) {
+        int flags = frame.get();
+        piece_visible = (flags & SpectatorBroadcast.PIECE_VISIBLE) != 0;
+        piece_shape = ghost_shape = frame.get();
+        piece_row = frame.get();
+        piece_column = ghost_column = frame.get();
+        ghost_row = frame.get();
+        next = frame.get();
+        held = frame.get();
+        if((flags & SpectatorBroadcast.HELD_PRESENT) == 0) held = -1;
+        highlight_row = frame.get();
+        highlight_lines = frame.get();
+        tetriminos_dropped = frame.getInt();
+        single_lines_cleared = frame.getInt();
+        double_lines_cleared = frame.getInt();
+        triple_lines_cleared = frame.getInt();
+        tetris_cleared = frame.getInt();
+        for(int i = 0; i < ROWS * COLUMNS; i += 2) {
+            int pair = frame.get() & 0xFF;
+            cells[i] = (byte) (pair >>> 4);
+            cells[i + 1] = (byte) (pair & 0xF);
+        }
+        if(piece_visible) {
+            drawPiece(ghost_shape, ghost_row, ghost_column, GHOST);
+            drawPiece(piece_shape, piece_row, piece_column, (piece_shape >>> 2) + 1);
+        }
+    }
+    
+    /**
+     * Applies the operations of a delta to the picture.
+     * @param frame the frame, positioned at its payload
+     * @param end the position of the end of the frame
+     */
+    private void applyDelta(ByteBuffer frame, int end) {
+        while(frame.position() < end) {
+            int op = frame.get() & 0xFF;
+            int opcode = op >>> 5;
+            int data = op & 0x1F;
+            switch(opcode) {
+                case SpectatorBroadcast.MOVE:
+                    drawPiece(ghost_shape, ghost_row, ghost_column, 0);
+                    drawPiece(piece_shape, piece_row, piece_column, 0);
+                    piece_shape = ghost_shape = data;
+                    piece_row = frame.get();
+                    piece_column = ghost_column = frame.get();
+                    ghost_row = frame.get();
+                    drawPiece(ghost_shape, ghost_row, ghost_column, GHOST);
+                    drawPiece(piece_shape, piece_row, piece_column, (data >>> 2) + 1);
+                    break;
+                case TetrisEventQueue.DISPLAY:
+                    piece_shape = data;
+                    piece_row = frame.get();
+                    piece_column = frame.get();
+                    drawPiece(piece_shape, piece_row, piece_column, (data >>> 2) + 1);
+                    break;
+                case TetrisEventQueue.ERASE:
+                    drawPiece(data, frame.get(), frame.get(), 0);
+                    break;
+                case TetrisEventQueue.GHOST:
+                    ghost_shape = data;
+                    ghost_row = frame.get();
+                    ghost_column = frame.get();
+                    drawPiece(ghost_shape, ghost_row, ghost_column, GHOST);
+                    break;
+                case TetrisEventQueue.NEXT:
+                    // A NEXT is sent each time a Tetrimino is dropped
+                    next = data >>> 2;
+                    tetriminos_dropped++;
+                    break;
+                case TetrisEventQueue.HOLD:
+                    held = data;
+                    break;
+                case TetrisEventQueue.HIGHLIGHT:
+                    highlight_lines = data;
+                    highlight_row = frame.get();
+                    countLines(data);
+                    break;
+                case TetrisEventQueue.CLEAR:
+                    clearLines(frame.get(), data);
+                    highlight_lines = 0;
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * Counts the lines cleared by a Tetrimino, the way the TetrisModel does.
+     * @param pattern the bit pattern of lines cleared
+     */
+    private void countLines(int pattern) {
+        switch(Integer.bitCount(pattern)) {
+            case 1:
+                single_lines_cleared++;
+                break;
+            case 2:
+                double_lines_cleared++;
+                break;
+            case 3:
+                triple_lines_cleared++;
+                break;
+            case 4:
+                tetris_cleared++;
+                break;
+        }
+    }
+    
+    /**
+     * Sets the four cells of a Tetrimino.
+     * @param shape_rotation the shape << 2 | rotation of the Tetrimino
+     * @param row the uppermost row of the Tetrimino
+     * @param column the leftmost column of the Tetrimino
+     * @param value the value to set the cells to
+     */
+    private void drawPiece(int shape_rotation, int row, int column, int value) {
+        int[][] coords = Tetrimino.getCoordinates(shape_rotation >>> 2, shape_rotation & 3);
+        for(int i = 0; i < 4; i++) {
+            int r = row + coords[i][0];
+            int c = column + coords[i][1];
+            if(r < 0 || r >= ROWS || c < 0 || c >= COLUMNS) {
+                throw new IllegalArgumentException("Invalid frame!");
+            }
+            cells[r * COLUMNS + c] = (byte) value;
+        }
+    }
+    
+    /**
+     * Removes lines from the picture, moving the lines above them down.
+     * @param row the uppermost row that may be cleared
+     * @param pattern the bit pattern of lines to clear, counting down from row
+     */
+    private void clearLines(int row, int pattern) {
+        // Clear from the top down, so the rows below keep their indices
+        for(int r = 0; r < 4; r++) {
+            if((pattern & (1 << r)) == 0) continue;
+            int cleared = row + r;
+            System.arraycopy(cells, 0, cells, COLUMNS, cleared * COLUMNS);
+            Arrays.fill(cells, 0, COLUMNS, (byte) 0);
+        }
+    }
+    
+    /**
+     * Get a cell of the picture.
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @return 0 if empty, GHOST for the ghost image, or 1 plus the ordinal of
+     * the TetriminoShape of the block
+     */
+    public int getCell(int row, int column) {
+        return cells[row * COLUMNS + column];
+    }
+    
+    /**
+     * Check to see if the picture is up to date with the stream.
+     * @return true after a keyframe, until a frame is missed
+     */
+    public boolean isSynced() {
+        return synced;
+    }
+    
+    /**
+     * Stops applying deltas until the next keyframe, such as when the
+     * spectator knows it has missed a frame.
+     */
+    public void unsync() {
+        synced = false;
+    }
+    
+    /**
+     * Get the shape of the next Tetrimino.
+     * @return the ordinal of the TetriminoShape
+     */
+    public int getNext() {
+        return next;
+    }
+    
+    /**
+     * Get the Tetrimino in the hold slot.
+     * @return shape << 2 | rotation, or a negative number if nothing is held
+     */
+    public int getHeld() {
+        return held;
+    }
+    
+    /**
+     * Get the bit pattern of highlighted lines.
+     * @return the bit pattern, counting down from the highlight row
+     */
+    public int getHighlightLines() {
+        return highlight_lines;
+    }
+    
+    /**
+     * Get the number of Tetriminos dropped.
+     * @return the number of Tetriminos
+     */
+    public int getTetriminosDropped() {
+        return tetriminos_dropped;
+    }
+    
+    /**
+     * Get the number of lines cleared.
+     * @return the number of lines
+     */
+    public int getLines() {
+        return TetrisScoring.getLines(single_lines_cleared, double_lines_cleared,
+            triple_lines_cleared, tetris_cleared);
+    }
+    
+    /**
+     * Get the score.
+     * @return the score
+     */
+    public int getScore() {
+        return TetrisScoring.getScore(tetriminos_dropped, single_lines_cleared,
+            double_lines_cleared, triple_lines_cleared, tetris_cleared);
+    }
+    
+    /**
+     * Get the number of frames applied.
+     * @return the number of frames
+     */
+    public long getFrames() {
+        return frames;
+    }
+    
+    /**
+     * Get the number of frames skipped while waiting for a keyframe.
+     * @return the number of frames
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+}
@@ -1,6 +1,6 @@
 
 
-import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * A Tetrimino is a geometric shape composed of four square blocks.
@@ -29,8 +29,10 @@ public class Tetrimino {
     
     /**
      * Coordinates of the four blocks for Tetriminos of every shape and rotation.
-     * Given a 4 x 4 region (as shown below) the coordinates in this HashMap
-     * indicate which four positions a particular Tetrimino occupies.
+     * Given a 4 x 4 region (as shown below) the coordinates in this table
+     * indicate which four positions a particular Tetrimino occupies. The table
+     * is indexed by the ordinal of the TetriminoShape and then the ordinal of
+     * the TetriminoRotation.
      * 
      *    0 1 2 3
      *  0 . . . .
@@ -48,94 +50,179 @@ public class Tetrimino {
      *  3 . . . .
      * 
      * So its coordinates would be: { 1, 1 }, { 2, 0 }, { 2, 1 }, and { 2, 2 }.
+     * The blocks are listed from top to bottom, and left to right.
      */
-    public static final HashMap<String, Integer[][]> TetriminoCoordinates =
-        new HashMap<String, Integer[][]>() {{
-        put(TetriminoShape.Shape_I + " " + TetriminoRotation.Angle_0, new Integer[][] {
-            { 1, 0 }, { 1, 1 }, { 1, 2 }, { 1, 3 }
-        });
-        put(TetriminoShape.Shape_I + " " + TetriminoRotation.Angle_90, new Integer[][] {
-            { 0, 2 }, { 1, 2 }, { 2, 2 }, { 3, 2 }
-        });
-        put(TetriminoShape.Shape_I + " " + TetriminoRotation.Angle_180, new Integer[][] {
-            { 2, 0 }, { 2, 1 }, { 2, 2 }, { 2, 3 }
-        });
-        put(TetriminoShape.Shape_I + " " + TetriminoRotation.Angle_270, new Integer[][] {
-            { 0, 1 }, { 1, 1 }, { 2, 1 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_J + " " + TetriminoRotation.Angle_0, new Integer[][] {
-            { 1, 0 }, { 2, 0 }, { 2, 1 }, { 2, 2 }
-        });
-        put(TetriminoShape.Shape_J + " " + TetriminoRotation.Angle_90, new Integer[][] {
-            { 1, 1 }, { 1, 2 }, { 2, 1 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_J + " " + TetriminoRotation.Angle_180, new Integer[][] {
-            { 2, 0 }, { 2, 1 }, { 2, 2 }, { 3, 2 }
-        });
-        put(TetriminoShape.Shape_J + " " + TetriminoRotation.Angle_270, new Integer[][] {
-            { 1, 1 }, { 2, 1 }, { 3, 0 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_L + " " + TetriminoRotation.Angle_0, new Integer[][] {
-            { 1, 2 }, { 2, 0 }, { 2, 1 }, { 2, 2 }
-        });
-        put(TetriminoShape.Shape_L + " " + TetriminoRotation.Angle_90, new Integer[][] {
-            { 1, 1 }, { 2, 1 }, { 3, 1 }, { 3, 2 }
-        });
-        put(TetriminoShape.Shape_L + " " + TetriminoRotation.Angle_180, new Integer[][] {
-            { 2, 0 }, { 2, 1 }, { 2, 2 }, { 3, 0 }
-        });
-        put(TetriminoShape.Shape_L + " " + TetriminoRotation.Angle_270, new Integer[][] {
-            { 1, 0 }, { 1, 1 }, { 2, 1 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_O + " " + TetriminoRotation.Angle_0, new Integer[][] {
-            { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 }
-        });
-        put(TetriminoShape.Shape_O + " " + TetriminoRotation.Angle_90, new Integer[][] {
-            { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 }
-        });
-        put(TetriminoShape.Shape_O + " " + TetriminoRotation.Angle_180, new Integer[][] {
-            { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 }
-        });
-        put(TetriminoShape.Shape_O + " " + TetriminoRotation.Angle_270, new Integer[][] {
-            { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 }
-        });
-        put(TetriminoShape.Shape_S + " " + TetriminoRotation.Angle_0, new Integer[][] {
-            { 1, 1 }, { 1, 2 }, { 2, 0 }, { 2, 1 }
-        });
-        put(TetriminoShape.Shape_S + " " + TetriminoRotation.Angle_90, new Integer[][] {
-            { 1, 1 }, { 2, 1 }, { 2, 2 }, { 3, 2 }
-        });
-        put(TetriminoShape.Shape_S + " " + TetriminoRotation.Angle_180, new Integer[][] {
-            { 2, 1 }, { 2, 2 }, { 3, 0 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_S + " " + TetriminoRotation.Angle_270, new Integer[][] {
-            { 1, 0 }, { 2, 0 }, { 2, 1 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_T + " " + TetriminoRotation.Angle_0, new Integer[][] {
-            { 1, 1 }, { 2, 0 }, { 2, 1 }, { 2, 2 }
-        });
-        put(TetriminoShape.Shape_T + " " + TetriminoRotation.Angle_90, new Integer[][] {
-            { 1, 1 }, { 2, 1 }, { 2, 2 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_T + " " + TetriminoRotation.Angle_180, new Integer[][] {
-            { 2, 0 }, { 2, 1 }, { 2, 2 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_T + " " + TetriminoRotation.Angle_270, new Integer[][] {
-            { 1, 1 }, { 2, 0 }, { 2, 1 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_Z + " " + TetriminoRotation.Angle_0, new Integer[][] {
-            { 1, 0 }, { 1, 1 }, { 2, 1 }, { 2, 2 }
-        });
-        put(TetriminoShape.Shape_Z + " " + TetriminoRotation.Angle_90, new Integer[][] {
-            { 1, 2 }, { 2, 1 }, { 2, 2 }, { 3, 1 }
-        });
-        put(TetriminoShape.Shape_Z + " " + TetriminoRotation.Angle_180, new Integer[][] {
-            { 2, 0 }, { 2, 1 }, { 3, 1 }, { 3, 2 }
-        });
-        put(TetriminoShape.Shape_Z + " " + TetriminoRotation.Angle_270, new Integer[][] {
-            { 1, 1 }, { 2, 0 }, { 2, 1 }, { 3, 0 }
-        });
-    }};
+    private static final int[][][][] TetriminoCoordinates = {
+        { // Shape_I
+            { { 1, 0 }, { 1, 1 }, { 1, 2 }, { 1, 3 } }, // Angle_0
+            { { 0, 2 }, { 1, 2 }, { 2, 2 }, { 3, 2 } }, // Angle_90
+            { { 2, 0 }, { 2, 1 }, { 2, 2 }, { 2, 3 } }, // Angle_180
+            { { 0, 1 }, { 1, 1 }, { 2, 1 }, { 3, 1 } } // Angle_270
+        },
+        { // Shape_J
+            { { 1, 0 }, { 2, 0 }, { 2, 1 }, { 2, 2 } }, // Angle_0
+            { { 1, 1 }, { 1, 2 }, { 2, 1 }, { 3, 1 } }, // Angle_90
+            { { 2, 0 }, { 2, 1 }, { 2, 2 }, { 3, 2 } }, // Angle_180
+            { { 1, 1 }, { 2, 1 }, { 3, 0 }, { 3, 1 } } // Angle_270
+        },
+        { // Shape_L
+            { { 1, 2 }, { 2, 0 }, { 2, 1 }, { 2, 2 } }, // Angle_0
+            { { 1, 1 }, { 2, 1 }, { 3, 1 }, { 3, 2 } }, // Angle_90
+            { { 2, 0 }, { 2, 1 }, { 2, 2 }, { 3, 0 } }, // Angle_180
+            { { 1, 0 }, { 1, 1 }, { 2, 1 }, { 3, 1 } } // Angle_270
+        },
+        { // Shape_O
+            { { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 } }, // Angle_0
+            { { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 } }, // Angle_90
+            { { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 } }, // Angle_180
+            { { 1, 1 }, { 1, 2 }, { 2, 1 }, { 2, 2 } } // Angle_270
+        },
+        { // Shape_S
+            { { 1, 1 }, { 1, 2 }, { 2, 0 }, { 2, 1 } }, // Angle_0
+            { { 1, 1 }, { 2, 1 }, { 2, 2 }, { 3, 2 } }, // Angle_90
+            { { 2, 1 }, { 2, 2 }, { 3, 0 }, { 3, 1 } }, // Angle_180
+            { { 1, 0 }, { 2, 0 }, { 2, 1 }, { 3, 1 } } // Angle_270
+        },
+        { // Shape_T
+            { { 1, 1 }, { 2, 0 }, { 2, 1 }, { 2, 2 } }, // Angle_0
+            { { 1, 1 }, { 2, 1 }, { 2, 2 }, { 3, 1 } }, // Angle_90
+            { { 2, 0 }, { 2, 1 }, { 2, 2 }, { 3, 1 } }, // Angle_180
+            { { 1, 1 }, { 2, 0 }, { 2, 1 }, { 3, 1 } } // Angle_270
+        },
+        { // Shape_Z
+            { { 1, 0 }, { 1, 1 }, { 2, 1 }, { 2, 2 } }, // Angle_0
+            { { 1, 2 }, { 2, 1 }, { 2, 2 }, { 3, 1 } }, // Angle_90
+            { { 2, 0 }, { 2, 1 }, { 3, 1 }, { 3, 2 } }, // Angle_180
+            { { 1, 1 }, { 2, 0 }, { 2, 1 }, { 3, 0 } } // Angle_270
+        }
+    };
+
+    /**
+     * Bit masks of the columns occupied in each row of the 4 x 4 region, for
+     * every shape and rotation. Bit c is set when column c is occupied, so the
+     * Shape_T Angle_0 Tetrimino shown above has the row masks 0, 2, 7 and 0.
+     */
+    private static final int[][][] TetriminoRowMasks = new int[7][4][4];
+    
+    /**
+     * The bounding box of the blocks within the 4 x 4 region, for every shape
+     * and rotation, stored as { top row, bottom row, left column, right column }.
+     */
+    private static final int[][][] TetriminoBounds = new int[7][4][4];
+    
+    /**
+     * The bottom profile that lands on the stack when a Tetrimino drops, for
+     * every shape and rotation. Byte c holds one more than the lowermost
+     * occupied row of column c within the 4 x 4 region, or 0 for a column
+     * with no blocks, so the whole profile is read at once.
+     */
+    private static final int[][] TetriminoBottomProfiles = new int[7][4];
+    
+    static {
+        for(int s = 0; s < 7; s++) {
+            for(int r = 0; r < 4; r++) {
+                int[][] coords = TetriminoCoordinates[s][r];
+                int[] bounds = TetriminoBounds[s][r];
+                int[] bottoms = { -1, -1, -1, -1 };
+                bounds[0] = bounds[2] = 3;
+                for(int i = 0; i < 4; i++) {
+                    TetriminoRowMasks[s][r][coords[i][0]] |= 1 << coords[i][1];
+                    bottoms[coords[i][1]] = Math.max(bottoms[coords[i][1]], coords[i][0]);
+                    bounds[0] = Math.min(bounds[0], coords[i][0]);
+                    bounds[1] = Math.max(bounds[1], coords[i][0]);
+                    bounds[2] = Math.min(bounds[2], coords[i][1]);
+                    bounds[3] = Math.max(bounds[3], coords[i][1]);
+                }
+                for(int c = 0; c < 4; c++) {
+                    TetriminoBottomProfiles[s][r] |= (bottoms[c] + 1) << (8 * c);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the coordinates of the four blocks for a particular shape and
+     * rotation. The returned array is shared and must not be modified.
+     * @param shape the ordinal of the TetriminoShape
+     * @param rotation the ordinal of the TetriminoRotation
+     * @return an int[4][2] array of { row, column } pairs
+     */
+    public static int[][] getCoordinates(int shape, int rotation) {
+        return TetriminoCoordinates[shape][rotation];
+    }
+    
+    /**
+     * Get the bit mask of the columns occupied within one row of the 4 x 4
+     * region for a particular shape and rotation.
+     * @param shape the ordinal of the TetriminoShape
+     * @param rotation the ordinal of the TetriminoRotation
+     * @param row the row within the 4 x 4 region (0 to 3)
+     * @return the bit mask, where bit c is set if column c is occupied
+     */
+    public static int getRowMask(int shape, int rotation, int row) {
+        return TetriminoRowMasks[shape][rotation][row];
+    }
+    
+    /**
+     * Get the uppermost occupied row within the 4 x 4 region.
+     * @param shape the ordinal of the TetriminoShape
+     * @param rotation the ordinal of the TetriminoRotation
+     * @return the top row of the bounding box
+     */
+    public static int getTopRow(int shape, int rotation) {
+        return TetriminoBounds[shape][rotation][0];
+    }
+    
+    /**
+     * Get the lowermost occupied row within the 4 x 4 region.
+     * @param shape the ordinal of the TetriminoShape
+     * @param rotation the ordinal of the TetriminoRotation
+     * @return the bottom row of the bounding box
+     */
+    public static int getBottomRow(int shape, int rotation) {
+        return TetriminoBounds[shape][rotation][1];
+    }
+    
+    /**
+     * Get the leftmost occupied column within the 4 x 4 region.
+     * @param shape the ordinal of the TetriminoShape
+     * @param rotation the ordinal of the TetriminoRotation
+     * @return the left column of the bounding box
+     */
+    public static int getLeftColumn(int shape, int rotation) {
+        return TetriminoBounds[shape][rotation][2];
+    }
+    
+    /**
+     * Get the rightmost occupied column within the 4 x 4 region.
+     * @param shape the ordinal of the TetriminoShape
+     * @param rotation the ordinal of the TetriminoRotation
+     * @return the right column of the bounding box
+     */
+    public static int getRightColumn(int shape, int rotation) {
+        return TetriminoBounds[shape][rotation][3];
+    }
+    
+    /**
+     * Get the bottom profile of a particular shape and rotation: for each
+     * column c of the 4 x 4 region, byte c holds one more than the lowermost
+     * occupied row of the column, or 0 if the column has no blocks.
+     * @param shape the ordinal of the TetriminoShape
+     * @param rotation the ordinal of the TetriminoRotation
+     * @return the packed bottom profile
+     */
+    public static int getBottomProfile(int shape, int rotation) {
+        return TetriminoBottomProfiles[shape][rotation];
+    }
+    
+    /**
+     * Get the character symbol associated with a particular shape.
+     * @param shape the ordinal of the TetriminoShape
+     * @return a char representing the shape
+     */
+    public static char getSymbol(int shape) {
+        return "IJLOSTZ".charAt(shape);
+    }
 
     /**
      * The shape and rotation for this Tetrimino.
@@ -148,18 +235,11 @@ public class Tetrimino {
      * (This method is primarily used for testing.)
      */
     public Tetrimino() {
-        List l = new ArrayList();
-        for(TetriminoShape s: TetriminoShape.values()) {
-            l.add(s);
-        }
-        Collections.shuffle(l);
-        shape = (TetriminoShape) l.get(0);
-        l.clear();
-        for(TetriminoRotation r: TetriminoRotation.values()) {
-            l.add(r);
-        }
-        Collections.shuffle(l);
-        rotation = (TetriminoRotation) l.get(0);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        TetriminoShape[] shapes = TetriminoShape.values();
+        TetriminoRotation[] rotations = TetriminoRotation.values();
+        shape = shapes[random.nextInt(shapes.length)];
+        rotation = rotations[random.nextInt(rotations.length)];
     }
     
     /**
@@ -171,6 +251,16 @@ public class Tetrimino {
         rotation = TetriminoRotation.Angle_0;
     }
     
+    /**
+     * Constructor for a new Tetrimino of a specific shape and rotation.
+     * @param s the TetriminoShape for the new Tetrimino
+     * @param r the TetriminoRotation for the new Tetrimino
+     */
+    public Tetrimino(TetriminoShape s, TetriminoRotation r) {
+        shape = s;
+        rotation = r;
+    }
+    
     /**
      * Get this Tetrimino's shape.
      * @return the TetriminoShape
@@ -189,10 +279,21 @@ public class Tetrimino {
     
     /**
      * Get this Tetrimino's coordinates.
-     * @return an Integer[4][2] array
+     * The returned array is shared and must not be modified.
+     * @return an int[4][2] array of { row, column } pairs
      */
-    public Integer[][] getCoordinates() {
-        return TetriminoCoordinates.get(shape + " " + rotation);
+    public int[][] getCoordinates() {
+        return TetriminoCoordinates[shape.ordinal()][rotation.ordinal()];
+    }
+    
+    /**
+     * Get the bit mask of the columns this Tetrimino occupies in one row of
+     * its 4 x 4 region.
+     * @param row the row within the 4 x 4 region (0 to 3)
+     * @return the bit mask, where bit c is set if column c is occupied
+     */
+    public int getRowMask(int row) {
+        return TetriminoRowMasks[shape.ordinal()][rotation.ordinal()][row];
     }
     
     /**
@@ -219,13 +320,8 @@ public class Tetrimino {
      * @return true/false whether this Tetrimino has a block at the coordinates.
      */
     public boolean hasCoordinates(int row, int column) {
-        Integer[][] coordinates = getCoordinates();
-        for(int i = 0; i < 4; i++) {
-            if(coordinates[i][0] == row && coordinates[i][1] == column) {
-                return true;
-            }
-        }
-        return false;
+        if(row < 0 || row >= 4 || column < 0 || column >= 4) return false;
+        return (getRowMask(row) & (1 << column)) != 0;
     }
     
     /**
@@ -1,13 +1,15 @@
 
 
-import java.util.*;
+import java.nio.ByteBuffer;
 
 /**
  * The TetriminoBag holds one of each different Tetrimino shape, and it
  * allows these shapes to be picked out of the bag in a random order,
  * automatically refilling the bag once the last Tetrimino has been removed.
  * This ensures that the different Tetrimino shapes will be dropped into the
- * well at a consistent rate rather than totally at random.
+ * well at a consistent rate rather than totally at random. The bag is
+ * shuffled by its own TetriminoRandom, so a seeded bag always gives out the
+ * same sequence of Tetriminos.
  * 
  * @author  John Cowgill, Baldwin Browne, Chunda Zeng
  * @version September 29, 2014
@@ -15,53 +17,233 @@ import java.util.*;
 public class TetriminoBag {
     
     /**
-     * The ArrayList for storing the different Tetriminos in the bag.
+     * All of the Tetrimino shapes, indexed by their ordinal values.
      */
-    private ArrayList<Tetrimino> bag;
+    private static final Tetrimino.TetriminoShape[] SHAPES =
+        Tetrimino.TetriminoShape.values();
     
     /**
-     * Constructor for a new TetriminoBag.
+     * The number of bytes written by writeSnapshot().
+     */
+    public static final int SNAPSHOT_SIZE = SHAPES.length + 1 + 8 + 8;
+    
+    /**
+     * The ordinal values of the Tetrimino shapes in the bag. The shapes that
+     * have not been picked yet are stored from position index to the end.
+     */
+    private int[] bag = new int[SHAPES.length];
+    private int index;
+    
+    /**
+     * The random number generator used to shuffle the bag.
+     */
+    private TetriminoRandom random;
+    
+    /**
+     * Constructor for a new TetriminoBag with an unpredictable order.
      */
     public TetriminoBag() {
-        bag = new ArrayList();
+        this(new TetriminoRandom());
+    }
+    
+    /**
+     * Constructor for a new TetriminoBag. Bags created with the same seed
+     * will always give out the Tetriminos in the same order.
+     * @param seed the seed for shuffling the bag
+     */
+    public TetriminoBag(long seed) {
+        this(new TetriminoRandom(seed));
+    }
+    
+    /**
+     * Constructor for a new TetriminoBag shuffled by the given generator.
+     * @param random the TetriminoRandom used to shuffle the bag
+     */
+    public TetriminoBag(TetriminoRandom random) {
+        this.random = random;
         fillBag();
     }
     
     /**
-     * Fills the bag with one of each Tetrimino shape, then shuffles the bag.
+     * Creates a new TetriminoBag whose order is independent of this one, for
+     * example to give each game in a parallel simulation its own sequence.
+     * @return the new TetriminoBag
+     */
+    public TetriminoBag split() {
+        return new TetriminoBag(random.split());
+    }
+    
+    /**
+     * Get the random number generator used to shuffle the bag.
+     * @return the TetriminoRandom
+     */
+    public TetriminoRandom getRandom() {
+        return random;
+    }
+    
+    /**
+     * Fills the bag with one of each Tetrimino shape, then shuffles the bag
+     * in place.
      */
     private void fillBag() {
-        for(Tetrimino.TetriminoShape s : Tetrimino.TetriminoShape.values()) {
-            bag.add(new Tetrimino(s));
+        shuffle(bag, random);
+        index = 0;
+    }
+    
+    /**
+     * Fills an array with one of each Tetrimino shape, then shuffles it.
+     * @param bag the array to fill with the ordinal values of the shapes
+     * @param random the TetriminoRandom used to shuffle the array
+     */
+    private static void shuffle(int[] bag, TetriminoRandom random) {
+        for(int i = 0; i < bag.length; i++) {
+            bag[i] = i;
+        }
+        for(int i = bag.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = bag[i];
+            bag[i] = bag[j];
+            bag[j] = temp;
         }
-        Collections.shuffle(bag);
+    }
+    
+    /**
+     * Shows the shapes of the next Tetriminos in the bag, in the order they
+     * will be picked, but does not remove them. When the preview runs past
+     * the end of the bag, the bags after it are shuffled by a copy of this
+     * bag's TetriminoRandom, so the preview is exact however far it looks.
+     * @param shapes the array to fill with the ordinal values of the shapes,
+     * starting with the shape of nextShape()
+     */
+    public void previewShapes(int[] shapes) {
+        int[] order = bag;
+        int i = index;
+        TetriminoRandom copy = null;
+        for(int n = 0; n < shapes.length; n++) {
+            if(i == order.length) {
+                if(copy == null) {
+                    copy = new TetriminoRandom(random.getSeed(), random.getGamma());
+                    order = new int[SHAPES.length];
+                }
+                shuffle(order, copy);
+                i = 0;
+            }
+            shapes[n] = order[i++];
+        }
+    }
+    
+    /**
+     * Shows the shape of the next Tetrimino in the bag, but does not remove it.
+     * @return the next TetriminoShape
+     */
+    public Tetrimino.TetriminoShape nextShape() {
+        return SHAPES[bag[index]];
+    }
+    
+    /**
+     * Picks the shape of the next Tetrimino out of the bag, thus removing it.
+     * If this was the last Tetrimino in the bag, the bag is refilled.
+     * @return the next TetriminoShape
+     */
+    public Tetrimino.TetriminoShape pickShape() {
+        Tetrimino.TetriminoShape shape = SHAPES[bag[index++]];
+        if(index == bag.length) fillBag();
+        return shape;
     }
     
     /**
      * Shows the next Tetrimino in the bag, but does not remove it.
-     * @return the next Tetrimino
+     * @return a new Tetrimino of the next shape
      */
     public Tetrimino nextTetrimino() {
-        return bag.get(0);
+        return new Tetrimino(nextShape());
     }
     
     /**
      * Picks the next Tetrimino out of the bag, thus removing it.
      * If this was the last Tetrimino in the bag, the bag is refilled.
-     * @return the next Tetrimino
+     * @return a new Tetrimino of the next shape
      */
     public Tetrimino pickTetrimino() {
-        Tetrimino t = bag.remove(0);
-        if(bag.isEmpty()) fillBag();
-        return t;
+        return new Tetrimino(pickShape());
+    }
+    
+    /**
+     * Writes the complete state of this TetriminoBag, including its random
+     * number generator, as SNAPSHOT_SIZE bytes.
+     * @param buffer the buffer to write to
+     */
+    public void writeSnapshot(ByteBuffer buffer) {
+        for(int i = 0; i < bag.length; i++) {
+            buffer.put((byte) bag[i]);
+        }
+        buffer.put((byte) index);
+        buffer.putLong(random.getSeed());
+        buffer.putLong(random.getGamma());
+    }
+    
+    /**
+     * Restores the state of this TetriminoBag from a snapshot written by
+     * writeSnapshot(), after which it gives out the same Tetriminos that the
+     * bag that wrote it would have.
+     * @param buffer the buffer to read from
+     * @throws IllegalArgumentException if the snapshot is not valid
+     */
+    public void readSnapshot(ByteBuffer buffer) {
+        checkSnapshot(buffer, buffer.position());
+        readCheckedSnapshot(buffer);
+    }
+    
+    /**
+     * Restores the state of this TetriminoBag from a snapshot that has
+     * already been checked with checkSnapshot().
+     * @param buffer the buffer to read from
+     */
+    void readCheckedSnapshot(ByteBuffer buffer) {
+        for(int i = 0; i < bag.length; i++) {
+            bag[i] = buffer.get();
+        }
+        index = buffer.get();
+        long seed = buffer.getLong();
+        long gamma = buffer.getLong();
+        random.setState(seed, gamma);
+    }
+    
+    /**
+     * Checks a snapshot written by writeSnapshot() without restoring it or
+     * moving the position of the buffer, so that a caller can check all of
+     * its parts before it changes anything.
+     * @param buffer the buffer holding the snapshot
+     * @param start the index of the snapshot in the buffer
+     * @throws IllegalArgumentException if the snapshot is not valid
+     */
+    public static void checkSnapshot(ByteBuffer buffer, int start) {
+        if(start < 0 || buffer.limit() - start < SNAPSHOT_SIZE) {
+            throw new IllegalArgumentException("Invalid snapshot!");
+        }
+        int seen = 0;
+        for(int i = 0; i < SHAPES.length; i++) {
+            int shape = buffer.get(start + i);
+            if(shape < 0 || shape >= SHAPES.length) {
+                throw new IllegalArgumentException("Invalid snapshot!");
+            }
+            seen |= 1 << shape;
+        }
+        int index = buffer.get(start + SHAPES.length);
+        long gamma = buffer.getLong(start + SHAPES.length + 9);
+        // The shapes must be a permutation, and the bag is never left empty
+        if(seen != (1 << SHAPES.length) - 1 || index < 0 || index >= SHAPES.length ||
+            (gamma & 1) == 0) {
+            throw new IllegalArgumentException("Invalid snapshot!");
+        }
     }
     
     /**
      * Prints the contents of this TetriminoBag to the console.
      */
     public void displayTetriminoBag() {
-        for(Tetrimino t : bag) {
-            System.out.println(t.getShape());
+        for(int i = index; i < bag.length; i++) {
+            System.out.println(SHAPES[bag[i]]);
         }
     }
     
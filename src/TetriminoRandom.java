@@ -0,0 +1,159 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small, fast, splittable random number generator used by the TetriminoBag.
+ * It uses the same SplitMix64 algorithm as java.util.SplittableRandom, but its
+ * state is just two long values that can be read and restored, so a game can
+ * be replayed or saved along with its upcoming Tetriminos. Instances are not
+ * thread safe; use split() to give each thread its own independent stream.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TetriminoRandom {
+    
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    
+    /**
+     * Supplies the seeds for generators created without an explicit seed.
+     */
+    private static final AtomicLong seeder =
+        new AtomicLong(mix64(System.currentTimeMillis()) ^ mix64(System.nanoTime()));
+    
+    /**
+     * The state of this generator. The seed is advanced by the gamma value
+     * each time a new random number is needed.
+     */
+    private long seed, gamma;
+    
+    /**
+     * Constructor for a new TetriminoRandom with an unpredictable seed. The
+     * seed and the gamma value are both mixed from the shared seeder, the
+     * same as java.util.SplittableRandom does, so that generators created
+     * one after another give independent streams rather than the same stream
+     * shifted along.
+     */
+    public TetriminoRandom() {
+        long s = seeder.getAndAdd(2 * GOLDEN_GAMMA);
+        seed = mix64(s);
+        gamma = mixGamma(s + GOLDEN_GAMMA);
+    }
+    
+    /**
+     * Constructor for a new TetriminoRandom with the given seed. Two
+     * generators created with the same seed produce the same numbers.
+     * @param seed the initial seed
+     */
+    public TetriminoRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+    
+    /**
+     * Constructor for a new TetriminoRandom with the given state.
+     * @param seed the initial seed
+     * @param gamma the amount to advance the seed by, which must be odd
+     */
+    public TetriminoRandom(long seed, long gamma) {
+        if((gamma & 1) == 0) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+    
+    /**
+     * Get the current seed, which together with the gamma value is the
+     * complete state of this generator.
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+    
+    /**
+     * Get the gamma value, which together with the seed is the complete state
+     * of this generator.
+     * @return the gamma value
+     */
+    public long getGamma() {
+        return gamma;
+    }
+    
+    /**
+     * Restores the state of this generator.
+     * @param seed the seed
+     * @param gamma the gamma value, which must be odd
+     */
+    public void setState(long seed, long gamma) {
+        if((gamma & 1) == 0) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+    
+    /**
+     * Get a random long value.
+     * @return the random value
+     */
+    public long nextLong() {
+        return mix64(seed += gamma);
+    }
+    
+    /**
+     * Get a random int value between 0 (inclusive) and bound (exclusive).
+     * @param bound the upper bound, which must be positive
+     * @return the random value
+     */
+    public int nextInt(int bound) {
+        if(bound <= 0) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        int r = mix32(seed += gamma);
+        int m = bound - 1;
+        if((bound & m) == 0) return r & m; // The bound is a power of 2
+        // Reject values from the top of the range that would bias the result
+        for(int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(seed += gamma) >>> 1);
+        return r;
+    }
+    
+    /**
+     * Creates a new TetriminoRandom that produces a stream of numbers that is
+     * independent of this one. This also advances the state of this generator.
+     * @return the new TetriminoRandom
+     */
+    public TetriminoRandom split() {
+        long s = nextLong();
+        return new TetriminoRandom(s, mixGamma(seed += gamma));
+    }
+    
+    /**
+     * The 64 bit mixing function from SplitMix64.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+    
+    /**
+     * The 32 bit mixing function from SplitMix64.
+     */
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+    
+    /**
+     * Creates a gamma value for a split generator. The gamma must be odd, and
+     * must have enough bit transitions to produce a good stream of numbers.
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+    
+}
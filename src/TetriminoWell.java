@@ -1,5 +1,6 @@
-
-import java.util.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * The TetriminoWell class is used by the TetrisModel to keep track of all the
@@ -25,37 +26,456 @@ public class TetriminoWell {
     public static final int WELL_HEIGHT = Tetris.TETRIS_HEIGHT + 4 + 2;
     
     /**
-     * This list keeps track of all the rows and columns within the well.
-     * The character stored at each row/column is a symbol representing what
-     * occupies that position within the well.
+     * Bit masks for the columns of a single row of the well. Bit c is set when
+     * column c of the row is occupied. EMPTY_ROW only has the extra columns on
+     * either side set, and FULL_ROW has every column set.
+     */
+    private static final int FULL_ROW = (1 << WELL_WIDTH) - 1;
+    private static final int EMPTY_ROW = 0x3 | (0x3 << (WELL_WIDTH - 2));
+    
+    /**
+     * The number of rows above the floor of the well, and the number of
+     * columns inside it.
+     */
+    private static final int FLOOR = WELL_HEIGHT - 2;
+    private static final int WIDTH = Tetris.TETRIS_WIDTH;
+    
+    /**
+     * The number of bytes written by writeSnapshot(). Every cell of the well
+     * above the floor is stored in 4 bits, two cells to a byte.
+     */
+    public static final int SNAPSHOT_SIZE = (WELL_HEIGHT - 2) * Tetris.TETRIS_WIDTH / 2;
+    
+    /**
+     * The symbols of the cells in a snapshot, indexed by their 4 bit value.
+     * An empty cell is 0, and a block is 1 plus the ordinal of its shape.
+     */
+    private static final char[] SNAPSHOT_CHARS = " IJLOSTZ".toCharArray();
+    
+    /**
+     * The bits occupied by each pair of cells in a snapshot, before they are
+     * shifted into the column of the first cell of the pair.
+     */
+    private static final int[] PAIR_MASKS = new int[0x78];
+    
+    /**
+     * The 4 bit value of each symbol in a snapshot, indexed by the symbol.
+     */
+    private static final byte[] SNAPSHOT_VALUES = new byte['Z' + 1];
+    
+    /**
+     * The Zobrist keys for the hash of the well. Every cell above the floor
+     * has its own random key, and the hash is the exclusive or of the keys of
+     * the cells that are occupied. To handle a whole row at once, each half of
+     * a row has a table of the combined keys for every pattern of blocks in
+     * it: entry r << 6 | pattern is the left five columns of row r, and entry
+     * r << 6 | 32 | pattern the right five. The keys come from a fixed seed,
+     * so a well hashes the same in every run.
+     */
+    private static final long[] ZOBRIST_KEYS = new long[FLOOR << 6];
+    private static final long ZOBRIST_SEED = 0x5a0b415bL;
+    
+    static {
+        for(int v = 0; v < SNAPSHOT_CHARS.length; v++) {
+            SNAPSHOT_VALUES[SNAPSHOT_CHARS[v]] = (byte) v;
+        }
+        for(int pair = 0; pair < PAIR_MASKS.length; pair++) {
+            if((pair >>> 4) != 0) PAIR_MASKS[pair] |= 1;
+            if((pair & 0xF) != 0) PAIR_MASKS[pair] |= 2;
+        }
+        TetriminoRandom random = new TetriminoRandom(ZOBRIST_SEED);
+        for(int half = 0; half < FLOOR << 1; half++) {
+            long[] cells = new long[5];
+            for(int c = 0; c < cells.length; c++) {
+                cells[c] = random.nextLong();
+            }
+            for(int pattern = 1; pattern < 32; pattern++) {
+                int low = Integer.numberOfTrailingZeros(pattern);
+                ZOBRIST_KEYS[half << 5 | pattern] =
+                    ZOBRIST_KEYS[half << 5 | (pattern & (pattern - 1))] ^ cells[low];
+            }
+        }
+    }
+    
+    /**
+     * This array keeps track of which positions within the well are occupied.
+     * There is one bit mask per row, using the bit layout described above.
+     * The extra rows and columns outside of the well are always occupied.
+     */
+    private int[] rows;
+    
+    /**
+     * This array keeps track of what occupies each position within the well,
+     * stored row by row. The character stored at each row/column is a symbol
+     * representing what occupies that position within the well.
      * A ' ' character indicates the position is empty.
      * A 'X' character indicates the position is outside of the well.
      * Any other character means the position is occupied by a block.
      */
-    List<Character[]> well;
+    private char[] symbols;
+    
+    /**
+     * Space for a snapshot, created the first time one is read or written.
+     */
+    private byte[] snapshot;
+    
+    /**
+     * This array keeps track of the shape of the stack, laid out as described
+     * below, all in one array so that copyFrom() stays a few array copies.
+     * It holds the rows occupied in each column inside the well, as bit
+     * boards where bit r is set when row r is occupied, the height and holes
+     * of each column, and their totals. These are updated only for the
+     * columns that change, so the totals never need to be recounted. The
+     * bumpiness and well depths only depend on the heights, so they are
+     * worked out from them when they are read instead of on every settle.
+     */
+    private int[] stack;
+    
+    /**
+     * The Zobrist hash of the blocks in the well, which is only kept up to
+     * date along with the rows once hashing has been turned on, since only
+     * a search needs it.
+     */
+    private long hash;
+    private boolean hashing;
+    
+    /**
+     * The offsets of the parts of the stack array. The first three hold one
+     * value per column.
+     */
+    private static final int COLUMNS = 0;
+    private static final int HEIGHTS = COLUMNS + WIDTH;
+    private static final int HOLES = HEIGHTS + WIDTH;
+    private static final int AGGREGATE_HEIGHT = HOLES + WIDTH;
+    private static final int TOTAL_HOLES = AGGREGATE_HEIGHT + 1;
+    private static final int ROW_TRANSITIONS = TOTAL_HOLES + 1;
+    private static final int STACK_SIZE = ROW_TRANSITIONS + 1;
+    
+    /**
+     * The read-only view of the metrics handed out by getMetrics().
+     */
+    private WellMetrics metrics;
     
     /**
      * Constructor for a new TetriminoWell.
      */
     public TetriminoWell() {
-        well = new LinkedList<Character[]>();
+        rows = new int[WELL_HEIGHT];
+        symbols = new char[WELL_HEIGHT * WELL_WIDTH];
         for(int r = 0; r < WELL_HEIGHT; r++) {
-            addNewRow(r);
+            clearRow(r);
+        }
+        stack = new int[STACK_SIZE];
+        metrics = new Metrics();
+        rebuildMetrics();
+    }
+    
+    /**
+     * Makes this TetriminoWell an exact copy of another TetriminoWell.
+     * @param other the TetriminoWell to copy
+     */
+    public void copyFrom(TetriminoWell other) {
+        System.arraycopy(other.rows, 0, rows, 0, WELL_HEIGHT);
+        System.arraycopy(other.symbols, 0, symbols, 0, symbols.length);
+        System.arraycopy(other.stack, 0, stack, 0, STACK_SIZE);
+        copyHashFrom(other);
+    }
+    
+    /**
+     * Makes the blocks of this TetriminoWell and its metrics an exact copy of
+     * another TetriminoWell, but leaves the symbols of the cells as they were.
+     * This skips most of the work of copyFrom(), for searches that clone
+     * wells over and over but never display them or write snapshots of them.
+     * @param other the TetriminoWell to copy
+     */
+    public void copyBlocksFrom(TetriminoWell other) {
+        System.arraycopy(other.rows, 0, rows, 0, WELL_HEIGHT);
+        System.arraycopy(other.stack, 0, stack, 0, STACK_SIZE);
+        copyHashFrom(other);
+    }
+    
+    /**
+     * Brings the hash up to date after the blocks of another TetriminoWell
+     * have been copied, if hashing is turned on.
+     * @param other the TetriminoWell that was copied
+     */
+    private void copyHashFrom(TetriminoWell other) {
+        if(!hashing) return;
+        if(other.hashing) {
+            hash = other.hash;
+        } else {
+            rebuildHash();
+        }
+    }
+    
+    /**
+     * Writes the contents of the well as SNAPSHOT_SIZE bytes.
+     * @param buffer the buffer to write to
+     */
+    public void writeSnapshot(ByteBuffer buffer) {
+        if(snapshot == null) snapshot = new byte[SNAPSHOT_SIZE];
+        int bytes_per_row = Tetris.TETRIS_WIDTH / 2;
+        for(int r = 0; r < WELL_HEIGHT - 2; r++) {
+            int b = r * bytes_per_row;
+            if(rows[r] == EMPTY_ROW) {
+                Arrays.fill(snapshot, b, b + bytes_per_row, (byte) 0);
+                continue;
+            }
+            int i = r * WELL_WIDTH + 2;
+            for(int c = 0; c < Tetris.TETRIS_WIDTH; c += 2, i += 2, b++) {
+                snapshot[b] = (byte) (SNAPSHOT_VALUES[symbols[i]] << 4 |
+                    SNAPSHOT_VALUES[symbols[i + 1]]);
+            }
+        }
+        buffer.put(snapshot);
+    }
+    
+    /**
+     * Replaces the contents of the well with a snapshot written by
+     * writeSnapshot().
+     * @param buffer the buffer to read from
+     * @throws IllegalArgumentException if the snapshot is not valid, in which
+     * case the well is left as it was
+     */
+    public void readSnapshot(ByteBuffer buffer) {
+        checkSnapshot(buffer, buffer.position());
+        readCheckedSnapshot(buffer);
+    }
+    
+    /**
+     * Replaces the contents of the well with a snapshot that has already
+     * been checked with checkSnapshot().
+     * @param buffer the buffer to read from
+     */
+    void readCheckedSnapshot(ByteBuffer buffer) {
+        // Copy the snapshot out in one go rather than a byte at a time
+        if(snapshot == null) snapshot = new byte[SNAPSHOT_SIZE];
+        buffer.get(snapshot);
+        int bytes_per_row = Tetris.TETRIS_WIDTH / 2;
+        for(int r = 0; r < WELL_HEIGHT - 2; r++) {
+            int b = r * bytes_per_row;
+            // The top of the well is usually empty both before and after, and
+            // an empty row needs nothing done to it
+            if(rows[r] == EMPTY_ROW && isEmpty(snapshot, b, bytes_per_row)) continue;
+            int i = r * WELL_WIDTH + 2;
+            int mask = EMPTY_ROW;
+            for(int c = 2; c < Tetris.TETRIS_WIDTH + 2; c += 2, i += 2, b++) {
+                int pair = snapshot[b];
+                symbols[i] = SNAPSHOT_CHARS[pair >>> 4];
+                symbols[i + 1] = SNAPSHOT_CHARS[pair & 0x7];
+                mask |= PAIR_MASKS[pair] << c;
+            }
+            rows[r] = mask;
+        }
+        rebuildMetrics();
+        if(hashing) rebuildHash();
+    }
+    
+    /**
+     * Checks a snapshot written by writeSnapshot() without restoring it or
+     * moving the position of the buffer.
+     * @param buffer the buffer holding the snapshot
+     * @param start the index of the snapshot in the buffer
+     * @throws IllegalArgumentException if the snapshot is not valid
+     */
+    public static void checkSnapshot(ByteBuffer buffer, int start) {
+        if(start < 0 || buffer.limit() - start < SNAPSHOT_SIZE) {
+            throw new IllegalArgumentException("Invalid snapshot!");
+        }
+        // Only the values 0 to 7 are used, so the top bit of each half of
+        // every byte must be clear, which is checked eight bytes at a time
+        long invalid = 0;
+        int i = 0;
+        for(; i + 8 <= SNAPSHOT_SIZE; i += 8) invalid |= buffer.getLong(start + i);
+        for(; i < SNAPSHOT_SIZE; i++) invalid |= buffer.get(start + i);
+        if((invalid & 0x8888888888888888L) != 0) {
+            throw new IllegalArgumentException("Invalid snapshot!");
+        }
+    }
+    
+    /**
+     * Check to see if a range of bytes are all zero.
+     * @param bytes the bytes to check
+     * @param start the index of the first byte
+     * @param length the number of bytes
+     * @return true if every byte is zero, false otherwise
+     */
+    private static boolean isEmpty(byte[] bytes, int start, int length) {
+        for(int i = start; i < start + length; i++) {
+            if(bytes[i] != 0) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Rebuilds the column bit boards and the row transitions from the rows,
+     * then brings every column's metrics up to date.
+     */
+    private void rebuildMetrics() {
+        Arrays.fill(stack, COLUMNS, COLUMNS + WIDTH, 0);
+        int transitions = 0;
+        for(int r = 0; r < FLOOR; r++) {
+            transitions += getTransitions(rows[r]);
+            int blocks = (rows[r] >>> 2) & ((1 << WIDTH) - 1);
+            while(blocks != 0) {
+                stack[COLUMNS + Integer.numberOfTrailingZeros(blocks)] |= 1 << r;
+                blocks &= blocks - 1;
+            }
+        }
+        stack[ROW_TRANSITIONS] = transitions;
+        updateColumns(0, WIDTH - 1);
+    }
+    
+    /**
+     * Rebuilds the Zobrist hash from the rows.
+     */
+    private void rebuildHash() {
+        hash = computeHash();
+    }
+    
+    /**
+     * Works the Zobrist hash out from the rows.
+     * @return the 64 bit hash
+     */
+    private long computeHash() {
+        long hash = 0;
+        for(int r = 0; r < FLOOR; r++) {
+            hash ^= getRowHash(r, rows[r]);
+        }
+        return hash;
+    }
+    
+    /**
+     * Get the combined Zobrist keys of the blocks in one row.
+     * @param r the index of the row, above the floor
+     * @param mask the bit mask of the row
+     * @return the exclusive or of the keys, which is 0 for an empty row
+     */
+    private static long getRowHash(int r, int mask) {
+        int blocks = (mask >>> 2) & ((1 << WIDTH) - 1);
+        return ZOBRIST_KEYS[r << 6 | (blocks & 31)] ^ ZOBRIST_KEYS[r << 6 | 32 | blocks >>> 5];
+    }
+    
+    /**
+     * Get the Zobrist key of a single cell.
+     * @param r the index of the row, above the floor
+     * @param c the index of the column, including the extra columns
+     * @return the key
+     */
+    private static long getCellHash(int r, int c) {
+        c -= 2;
+        return c < 5 ? ZOBRIST_KEYS[r << 6 | 1 << c] : ZOBRIST_KEYS[r << 6 | 32 | 1 << (c - 5)];
+    }
+    
+    /**
+     * Get the Zobrist hash of the blocks in the well. Wells with the same
+     * blocks have the same hash, however they got there, so the hash can be
+     * used to look positions up in a TranspositionTable. With hashing turned
+     * on it is kept up to date as Tetriminos settle and lines are cleared,
+     * so reading it costs nothing. Otherwise it is worked out from the rows.
+     * @return the 64 bit hash
+     */
+    public long getHash() {
+        return hashing ? hash : computeHash();
+    }
+    
+    /**
+     * Turns keeping the hash up to date on or off. It is off to begin with,
+     * so that a game that never reads the hash never pays for it. A search
+     * that reads the hash of every position it reaches should turn it on.
+     * @param hashing true to keep the hash up to date, false otherwise
+     */
+    public void setHashing(boolean hashing) {
+        this.hashing = hashing;
+        if(hashing) rebuildHash();
+    }
+    
+    /**
+     * Brings the heights and holes of a range of columns up to date with
+     * their bit boards, by replacing each old value in the totals with the
+     * new one.
+     * @param first the first column that changed
+     * @param last the last column that changed
+     */
+    private void updateColumns(int first, int last) {
+        int[] stack = this.stack;
+        for(int c = first; c <= last; c++) {
+            int mask = stack[COLUMNS + c];
+            int height = mask == 0 ? 0 : FLOOR - Integer.numberOfTrailingZeros(mask);
+            int hole = height - Integer.bitCount(mask);
+            stack[AGGREGATE_HEIGHT] += height - stack[HEIGHTS + c];
+            stack[HEIGHTS + c] = height;
+            stack[TOTAL_HOLES] += hole - stack[HOLES + c];
+            stack[HOLES + c] = hole;
         }
     }
     
     /**
-     * Adds a new row to the well.
-     * @param r the index of the new row to add
+     * Get the depth of the well in one column from the heights, which is how
+     * far it is below the lower of its two neighbours.
+     * @param column the column
+     * @return the depth, or 0 if the column is not below both neighbours
+     */
+    private int getWellDepth(int column) {
+        // The sides of the well are as high as the well itself
+        int left = column > 0 ? stack[HEIGHTS + column - 1] : FLOOR;
+        int right = column < WIDTH - 1 ? stack[HEIGHTS + column + 1] : FLOOR;
+        return Math.max(Math.min(left, right) - stack[HEIGHTS + column], 0);
+    }
+    
+    /**
+     * Get the number of row transitions within one row: places where a
+     * filled cell is next to an empty one, counting the sides as filled.
+     * @param mask the bit mask of the row
+     * @return the number of transitions
+     */
+    private static int getTransitions(int mask) {
+        // Bit c of the exclusive or is set when column c differs from column
+        // c + 1, and the pairs from the inner side columns across are kept
+        return Integer.bitCount((mask ^ (mask >>> 1)) & (((1 << (WIDTH + 1)) - 1) << 1));
+    }
+    
+    /**
+     * Get a read-only view of the column heights, holes, bumpiness, well
+     * depths and row transitions of the well, which stays up to date as the
+     * well changes.
+     * @return the WellMetrics
      */
-    private void addNewRow(int r) {
-        Character[] row = new Character[WELL_WIDTH];
+    public WellMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Resets a row of the well back to its initial contents.
+     * @param r the index of the row to reset
+     */
+    private void clearRow(int r) {
+        boolean floor = r >= WELL_HEIGHT - 2;
+        rows[r] = floor ? FULL_ROW : EMPTY_ROW;
         for(int c = 0; c < WELL_WIDTH; c++) {
             char symbol = ' ';
-            if(r >= WELL_HEIGHT - 2 || c < 2 || c >= WELL_WIDTH - 2) symbol = 'X';
-            row[c] = symbol;
+            if(floor || c < 2 || c >= WELL_WIDTH - 2) symbol = 'X';
+            symbols[r * WELL_WIDTH + c] = symbol;
         }
-        well.add(r, row);
+    }
+    
+    /**
+     * Get the symbol representing what occupies a position within the well.
+     * @param row the row of the position
+     * @param column the column of the position (including the extra columns)
+     * @return the symbol at that position
+     */
+    public char getSymbol(int row, int column) {
+        return symbols[row * WELL_WIDTH + column];
+    }
+    
+    /**
+     * Get the bit mask of occupied positions for a row of the well.
+     * @param row the row to check
+     * @return the bit mask for the row
+     */
+    public int getRowMask(int row) {
+        return rows[row];
     }
     
     /**
@@ -74,16 +494,41 @@ public class TetriminoWell {
         if(row < 0 || column < 0 || row + 4 > WELL_HEIGHT || column + 4 > WELL_WIDTH) {
             return true;
         }
-        Integer[][] coords = t.getCoordinates();
-        // Check the four blocks of the Tetrimino to see if there is a collision
-        for(int i = 0; i < 4; i++) {
-            if(well.get(row + coords[i][0])[column + coords[i][1]] != ' ') {
+        // Check the four rows of the Tetrimino to see if there is a collision
+        for(int r = 0; r < 4; r++) {
+            if((rows[row + r] & (t.getRowMask(r) << column)) != 0) {
                 return true;
             }
         }
         return false; // No collision detected
     }
     
+    /**
+     * Get the number of rows the given Tetrimino can fall straight down from
+     * a location before it lands, in constant time however tall the well is.
+     * Each column of the Tetrimino's bottom profile is checked against the
+     * first occupied row below it in the column's bit board, so blocks that
+     * overhang the Tetrimino are handled correctly. The precondition is that
+     * checkCollision() is false for the Tetrimino at this location.
+     * @param t the Tetrimino to drop
+     * @param row the uppermost row of the location
+     * @param column the leftmost column of the location
+     * @return the number of rows the Tetrimino can fall
+     */
+    public int getDropDistance(Tetrimino t, int row, int column) {
+        int profile = Tetrimino.getBottomProfile(t.getShape().ordinal(),
+            t.getRotation().ordinal());
+        int distance = FLOOR;
+        for(int c = column; profile != 0; c++, profile >>>= 8) {
+            int bottom = profile & 0xFF;
+            if(bottom == 0) continue;
+            // The rows below the bottom block of this column, and the floor
+            int below = (stack[COLUMNS + c] | 1 << FLOOR) >>> (row + bottom);
+            distance = Math.min(distance, Integer.numberOfTrailingZeros(below));
+        }
+        return distance;
+    }
+    
     /**
      * Check to see if the indicated row is filled with blocks.
      * @param row the row to check
@@ -91,10 +536,7 @@ public class TetriminoWell {
      */
     private boolean rowFilled(int row) {
         if(row >= WELL_HEIGHT - 2) return false;
-        for(int c = 2; c < WELL_WIDTH - 2; c++) {
-            if(well.get(row)[c] == ' ') return false;
-        }
-        return true;
+        return rows[row] == FULL_ROW;
     }
     
     /**
@@ -108,10 +550,17 @@ public class TetriminoWell {
      * @return true if the well has overflowed, false otherwise
      */
     public boolean overflow() {
-        for(int c = 2; c < WELL_WIDTH - 2; c++) {
-            if(well.get(3)[c] != ' ') return true;
-        }
-        return false;
+        return rows[3] != EMPTY_ROW;
+    }
+    
+    /**
+     * Get the height of the stack of settled blocks.
+     * @return the number of rows from the floor of the well to the highest block
+     */
+    public int getStackHeight() {
+        int top = 0;
+        while(top < WELL_HEIGHT - 2 && rows[top] == EMPTY_ROW) { top++; }
+        return WELL_HEIGHT - 2 - top;
     }
     
     /**
@@ -131,26 +580,299 @@ public class TetriminoWell {
         // so a small adjustment is needed here to accomodate for this.
         column += 2;
         int rows_cleared = 0;
-        int new_rows_to_add = 0;
-        Integer[][] coords = t.getCoordinates();
+        int[][] coords = t.getCoordinates();
+        char symbol = t.getSymbol();
+        int last_row = Math.min(row + 4, FLOOR);
+        int transitions = 0;
+        for(int r = row; r < last_row; r++) {
+            transitions -= getTransitions(rows[r]);
+        }
         // Copy the symbol for this Tetrimino into the well
         // where the four blocks of the Tetrimino are located
         for(int i = 0; i < 4; i++) {
-            well.get(row + coords[i][0])[column + coords[i][1]] = t.getSymbol();
+            int r = row + coords[i][0];
+            int c = column + coords[i][1];
+            rows[r] |= 1 << c;
+            if(hashing) hash ^= getCellHash(r, c);
+            symbols[r * WELL_WIDTH + c] = symbol;
+            stack[COLUMNS + c - 2] |= 1 << r;
+        }
+        for(int r = row; r < last_row; r++) {
+            transitions += getTransitions(rows[r]);
         }
+        stack[ROW_TRANSITIONS] += transitions;
         // Check the four rows that were affected and see if any were filled
-        for(int r = 3; r >= 0; r--) {
+        for(int r = 0; r < 4; r++) {
             if(rowFilled(row + r)) {
                 rows_cleared |= 1 << r; // Record a bit for this row
-                new_rows_to_add++;
-                well.remove(row + r); // Remove the filled row
+                removeRow(row + r);
             }
         }
-        // Up at the top of the well, add back in any rows that were cleared
-        for(int i = 0; i < new_rows_to_add; i++) {
-            addNewRow(0);
+        // A line clear moves every column, otherwise only the Tetrimino's
+        // own columns have changed
+        if(rows_cleared != 0) {
+            updateColumns(0, WIDTH - 1);
+        } else {
+            int shape = t.getShape().ordinal();
+            int rotation = t.getRotation().ordinal();
+            updateColumns(column - 2 + Tetrimino.getLeftColumn(shape, rotation),
+                column - 2 + Tetrimino.getRightColumn(shape, rotation));
         }
         return rows_cleared;
     }
+    
+    /**
+     * Removes a filled row from the well. Every row above it is shifted down
+     * by one, and an empty row is added back in at the top of the well.
+     * @param r the index of the row to remove
+     */
+    private void removeRow(int r) {
+        stack[ROW_TRANSITIONS] -= getTransitions(rows[r]);
+        if(hashing) hash ^= getRowHash(r, rows[r]);
+        System.arraycopy(rows, 0, rows, 1, r);
+        System.arraycopy(symbols, 0, symbols, WELL_WIDTH, r * WELL_WIDTH);
+        clearRow(0);
+        stack[ROW_TRANSITIONS] += getTransitions(rows[0]);
+        // Shift the bits for the rows above r down by one in every column
+        int above = (1 << r) - 1;
+        int below = ~((2 << r) - 1);
+        int occupied = 0;
+        for(int c = COLUMNS; c < COLUMNS + WIDTH; c++) {
+            occupied |= stack[c];
+            stack[c] = (stack[c] & above) << 1 | (stack[c] & below);
+        }
+        if(!hashing) return;
+        // Move the hash of each row from the top of the stack down to r
+        // down by one as well
+        for(int i = Integer.numberOfTrailingZeros(occupied & above); i < r; i++) {
+            hash ^= getRowHash(i, rows[i + 1]) ^ getRowHash(i + 1, rows[i + 1]);
+        }
+    }
+    
+    /**
+     * The read-only view of the well's metrics.
+     */
+    private class Metrics implements WellMetrics {
+        
+        @Override
+        public int getColumnMask(int column) {
+            return stack[COLUMNS + column];
+        }
+        
+        @Override
+        public int getColumnHeight(int column) {
+            return stack[HEIGHTS + column];
+        }
+        
+        @Override
+        public int getColumnHoles(int column) {
+            return stack[HOLES + column];
+        }
+        
+        @Override
+        public int getWellDepth(int column) {
+            return TetriminoWell.this.getWellDepth(column);
+        }
+        
+        @Override
+        public int getMaxHeight() {
+            int max = 0;
+            for(int c = 0; c < WIDTH; c++) max = Math.max(max, stack[HEIGHTS + c]);
+            return max;
+        }
+        
+        @Override
+        public int getAggregateHeight() {
+            return stack[AGGREGATE_HEIGHT];
+        }
+        
+        @Override
+        public int getHoles() {
+            return stack[TOTAL_HOLES];
+        }
+        
+        @Override
+        public int getBumpiness() {
+            // The bump of a column is its difference from the column to its right
+            int bumpiness = 0;
+            for(int c = HEIGHTS; c < HEIGHTS + WIDTH - 1; c++) {
+                bumpiness += Math.abs(stack[c] - stack[c + 1]);
+            }
+            return bumpiness;
+        }
+        
+        @Override
+        public int getWellDepthSum() {
+            int sum = 0;
+            for(int c = 0; c < WIDTH; c++) sum += TetriminoWell.this.getWellDepth(c);
+            return sum;
+        }
+        
+        @Override
+        public int getRowTransitions() {
+            return stack[ROW_TRANSITIONS];
+        }
+    
+    }
+    
+    /**
+     * Counts the metrics of a well from scratch, cell by cell.
+     * @param well the TetriminoWell
+     * @return the aggregate height, holes, bumpiness, total well depth and
+     * row transitions, followed by the height, holes and well depth of each
+     * column
+     */
+    private static int[] countMetrics(TetriminoWell well) {
+        int[] height = new int[WIDTH];
+        int[] counts = new int[5 + 3 * WIDTH];
+        for(int c = 0; c < WIDTH; c++) {
+            int r = 0;
+            while(r < FLOOR && well.getSymbol(r, c + 2) == ' ') r++;
+            height[c] = FLOOR - r;
+            for(; r < FLOOR; r++) {
+                if(well.getSymbol(r, c + 2) == ' ') counts[6 + 3 * c]++;
+            }
+            counts[5 + 3 * c] = height[c];
+            counts[0] += height[c];
+            counts[1] += counts[6 + 3 * c];
+        }
+        for(int c = 0; c < WIDTH; c++) {
+            if(c < WIDTH - 1) counts[2] += Math.abs(height[c] - height[c + 1]);
+            int left = c > 0 ? height[c - 1] : FLOOR;
+            int right = c < WIDTH - 1 ? height[c + 1] : FLOOR;
+            counts[7 + 3 * c] = Math.max(Math.min(left, right) - height[c], 0);
+            counts[3] += counts[7 + 3 * c];
+        }
+        for(int r = 0; r < FLOOR; r++) {
+            for(int c = 1; c < WIDTH + 2; c++) {
+                if((well.getSymbol(r, c) == ' ') != (well.getSymbol(r, c + 1) == ' ')) {
+                    counts[4]++;
+                }
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Get the metrics of a well as kept up to date by the well, in the same
+     * layout as countMetrics().
+     * @param well the TetriminoWell
+     * @return the metrics
+     */
+    private static int[] getMetrics(TetriminoWell well) {
+        WellMetrics m = well.getMetrics();
+        int[] counts = { m.getAggregateHeight(), m.getHoles(), m.getBumpiness(),
+            m.getWellDepthSum(), m.getRowTransitions() };
+        counts = Arrays.copyOf(counts, 5 + 3 * WIDTH);
+        for(int c = 0; c < WIDTH; c++) {
+            counts[5 + 3 * c] = m.getColumnHeight(c);
+            counts[6 + 3 * c] = m.getColumnHoles(c);
+            counts[7 + 3 * c] = m.getWellDepth(c);
+        }
+        return counts;
+    }
+    
+    /**
+     * Test routine. Builds ragged wells full of overhangs, and checks that
+     * getDropDistance() agrees with probing one row at a time from every
+     * location a Tetrimino can occupy.
+     */
+    public static void testDropDistance() {
+        Random random = new Random(2);
+        Tetrimino.TetriminoShape[] shapes = Tetrimino.TetriminoShape.values();
+        Tetrimino.TetriminoRotation[] rotations = Tetrimino.TetriminoRotation.values();
+        int checks = 0, mismatches = 0;
+        for(int w = 0; w < 1000; w++) {
+            // Settle Tetriminos at random heights, not just where they land,
+            // to leave gaps underneath them
+            TetriminoWell well = new TetriminoWell();
+            for(int i = 0; i < 30; i++) {
+                Tetrimino t = new Tetrimino(shapes[random.nextInt(shapes.length)],
+                    rotations[random.nextInt(rotations.length)]);
+                int row = 4 + random.nextInt(FLOOR - 4);
+                int column = random.nextInt(WIDTH + 3) - 3;
+                if(!well.checkCollision(t, row, column)) well.settleTetrimino(t, row, column);
+            }
+            for(Tetrimino.TetriminoShape shape : shapes) {
+                for(Tetrimino.TetriminoRotation rotation : rotations) {
+                    Tetrimino t = new Tetrimino(shape, rotation);
+                    for(int row = 0; row < FLOOR; row++) {
+                        for(int column = -3; column < WIDTH; column++) {
+                            if(well.checkCollision(t, row, column)) continue;
+                            int distance = 0;
+                            while(!well.checkCollision(t, row + distance + 1, column)) {
+                                distance++;
+                            }
+                            if(well.getDropDistance(t, row, column) != distance) mismatches++;
+                            checks++;
+                        }
+                    }
+                }
+            }
+        }
+        System.out.println("Drop distances checked: " + checks + ", mismatches: " + mismatches);
+    }
+    
+    /**
+     * Test routine. Settles random Tetriminos in random columns, clearing
+     * lines along the way, and checks after every one that the metrics kept
+     * up to date by the well match the metrics counted from scratch, that the
+     * hash matches one rebuilt from the rows, and that they survive
+     * copyFrom() and a snapshot.
+     */
+    public static void testWellMetrics() {
+        Random random = new Random(1);
+        Tetrimino.TetriminoShape[] shapes = Tetrimino.TetriminoShape.values();
+        Tetrimino.TetriminoRotation[] rotations = Tetrimino.TetriminoRotation.values();
+        TetriminoWell well = new TetriminoWell();
+        well.setHashing(true);
+        // The copy works its hash out from the rows instead
+        TetriminoWell copy = new TetriminoWell();
+        ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_SIZE);
+        int placements = 0, lines = 0, games = 0, mismatches = 0;
+        while(placements < 100000) {
+            // Keep the lowest of a few random placements, so lines get cleared
+            Tetrimino t = null;
+            int row = -1, column = 0;
+            for(int i = 0; i < 8; i++) {
+                Tetrimino candidate = new Tetrimino(shapes[random.nextInt(shapes.length)],
+                    rotations[random.nextInt(rotations.length)]);
+                int c = random.nextInt(WIDTH + 3) - 3;
+                if(well.checkCollision(candidate, 0, c)) continue;
+                int r = 0;
+                while(!well.checkCollision(candidate, r + 1, c)) { r++; }
+                if(r > row) {
+                    t = candidate;
+                    row = r;
+                    column = c;
+                }
+            }
+            if(t == null) continue;
+            lines += Integer.bitCount(well.settleTetrimino(t, row, column));
+            placements++;
+            if(!Arrays.equals(countMetrics(well), getMetrics(well))) mismatches++;
+            long hash = well.hash;
+            well.rebuildHash();
+            if(well.hash != hash) mismatches++;
+            if(placements % 10 == 0) {
+                copy.copyFrom(well);
+                if(!Arrays.equals(getMetrics(copy), getMetrics(well))) mismatches++;
+                if(copy.getHash() != well.getHash()) mismatches++;
+                buffer.clear();
+                well.writeSnapshot(buffer);
+                buffer.flip();
+                copy.readSnapshot(buffer);
+                if(!Arrays.equals(getMetrics(copy), getMetrics(well))) mismatches++;
+                if(copy.getHash() != well.getHash()) mismatches++;
+            }
+            if(well.overflow()) {
+                well = new TetriminoWell();
+                well.setHashing(true);
+                games++;
+            }
+        }
+        System.out.println("Placements: " + placements + ", lines: " + lines +
+            ", wells filled: " + games + ", mismatches: " + mismatches);
+    }
   
 }
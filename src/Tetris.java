@@ -1,3 +1,4 @@
+import java.io.IOException;
 
 /**
  * The classic Tetris game implemented in Java.
@@ -16,14 +17,26 @@ public class Tetris {
 
     /**
      * Spawn our Tetris application by creating a new TetrisController.
-     * @param args unused command line arguments
+     * Pass "--replay file [speed]" to watch a recorded game instead, run
+     * with -Dtetris.record=file to record the games that are played, and run
+     * with -Dtetris.metrics=seconds to log the game's latencies periodically.
+     * @param args optional command line arguments for replaying a game
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        final GameReplay replay;
+        final int speed;
+        if(args.length >= 2 && args[0].equals("--replay")) {
+            replay = GameReplay.load(args[1]);
+            speed = args.length >= 3 ? Integer.parseInt(args[2]) : 1;
+        } else {
+            replay = null;
+            speed = 1;
+        }
         javax.swing.SwingUtilities.invokeLater(new Runnable() {
             
             @Override
             public void run() {
-                new TetrisController();
+                new TetrisController(replay, speed);
             }
             
         });
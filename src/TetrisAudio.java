@@ -0,0 +1,289 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+import javax.sound.sampled.*;
+
+/**
+ * The audio engine for the Tetris game. Sound effects are decoded to 16 bit
+ * PCM once when they are loaded, and the background music is streamed from a
+ * MusicStream. A single audio thread mixes the background music and every
+ * sound effect that is playing into one SourceDataLine with a small buffer.
+ * Playing a sound only claims a voice for the audio thread to mix, so no
+ * threads are started and no memory is allocated while the game runs.
+ * 
+ * At most MAX_VOICES sound effects play at once. When all of the voices are
+ * busy, the sound effect that has been playing the longest is cut off to make
+ * room for the new one. The time from when a sound is played until its first
+ * sample is expected to be heard is measured for each sound.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TetrisAudio implements Runnable {
+    
+    /**
+     * The format that every sound is converted to, and that the line plays:
+     * 44.1 kHz, 16 bit signed little endian, mono.
+     */
+    public static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 1, true, false);
+    public static final int MAX_VOICES = 8;
+    
+    private static final int BLOCK_FRAMES = 256; // About 6 ms per block
+    private static final int LINE_BUFFER_FRAMES = 4 * BLOCK_FRAMES;
+    
+    private SourceDataLine line;
+    private Thread thread;
+    private volatile boolean open;
+    
+    /**
+     * The sound effect voices. A voice is free if its sound is null.
+     */
+    private short[][] voice_sounds = new short[MAX_VOICES][];
+    private int[] voice_positions = new int[MAX_VOICES];
+    private long[] voice_triggers = new long[MAX_VOICES];
+    private long[] voice_ages = new long[MAX_VOICES];
+    private long next_age;
+    
+    /**
+     * The background music, which loops until it is stopped.
+     */
+    private MusicStream music;
+    private boolean music_playing;
+    
+    /**
+     * The buffers used by the audio thread to mix each block.
+     */
+    private int[] mix = new int[BLOCK_FRAMES];
+    private byte[] output = new byte[BLOCK_FRAMES * 2];
+    
+    /**
+     * Statistics about the sounds played.
+     */
+    private long trigger_count, stolen_voices;
+    private long total_latency, max_latency;
+    
+    /**
+     * Constructor for a new TetrisAudio, which opens the audio line and starts
+     * the audio thread. If there is no audio line available the error is
+     * reported and every sound is silently ignored.
+     */
+    public TetrisAudio() {
+        try {
+            line = AudioSystem.getSourceDataLine(FORMAT);
+            line.open(FORMAT, LINE_BUFFER_FRAMES * FORMAT.getFrameSize());
+            line.start();
+            open = true;
+            thread = new Thread(this, "TetrisAudio");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            thread.start();
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+            line = null;
+        }
+    }
+    
+    /**
+     * Loads a sound from a file and decodes it to samples in FORMAT.
+     * @param file_name the name of the sound file
+     * @return the samples of the sound
+     * @throws IOException if the file could not be read
+     * @throws UnsupportedAudioFileException if the file is not a known format
+     */
+    public static short[] loadSound(String file_name)
+        throws IOException, UnsupportedAudioFileException {
+        AudioInputStream source = AudioSystem.getAudioInputStream(new File(file_name));
+        try {
+            AudioInputStream stream = source;
+            if(!source.getFormat().matches(FORMAT)) {
+                stream = AudioSystem.getAudioInputStream(FORMAT, source);
+            }
+            byte[] bytes = stream.readAllBytes();
+            ShortBuffer samples = ByteBuffer.wrap(bytes)
+                .order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+            short[] sound = new short[samples.remaining()];
+            samples.get(sound);
+            return sound;
+        } finally {
+            source.close();
+        }
+    }
+    
+    /**
+     * Plays a sound effect once, on top of anything else that is playing.
+     * @param sound the samples of the sound, from loadSound()
+     */
+    public synchronized void play(short[] sound) {
+        if(!open || sound == null || sound.length == 0) return;
+        int voice = 0;
+        for(int v = 0; v < MAX_VOICES; v++) {
+            if(voice_sounds[v] == null) {
+                voice = v;
+                break;
+            }
+            if(voice_ages[v] < voice_ages[voice]) voice = v;
+        }
+        if(voice_sounds[voice] != null) stolen_voices++;
+        voice_sounds[voice] = sound;
+        voice_positions[voice] = 0;
+        voice_triggers[voice] = System.nanoTime();
+        voice_ages[voice] = next_age++;
+    }
+    
+    /**
+     * Starts looping the background music from where it was last paused, or
+     * from the beginning if it has not been played or has been stopped.
+     * @param stream the MusicStream to play
+     */
+    public synchronized void playMusic(MusicStream stream) {
+        if(!open || stream == null) return;
+        music = stream;
+        music_playing = true;
+    }
+    
+    /**
+     * Pauses the background music, keeping its position.
+     */
+    public synchronized void pauseMusic() {
+        music_playing = false;
+    }
+    
+    /**
+     * Stops the background music and moves it back to the beginning.
+     */
+    public synchronized void stopMusic() {
+        music_playing = false;
+        if(music != null) music.rewind();
+    }
+    
+    /**
+     * Stops all sounds and closes the audio line.
+     */
+    public void close() {
+        open = false;
+        if(thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * The body of the audio thread. Each block is mixed and then written to
+     * the line, which blocks until there is room for it, so the line's small
+     * buffer sets the pace of the thread.
+     */
+    @Override
+    public void run() {
+        while(open) {
+            mixBlock();
+            line.write(output, 0, output.length);
+        }
+        line.stop();
+        line.flush();
+        line.close();
+    }
+    
+    /**
+     * Mixes the next block of samples from the music and the sound effects
+     * into the output buffer.
+     */
+    private synchronized void mixBlock() {
+        Arrays.fill(mix, 0);
+        if(music_playing) music.mix(mix, BLOCK_FRAMES);
+        for(int v = 0; v < MAX_VOICES; v++) {
+            short[] sound = voice_sounds[v];
+            if(sound == null) continue;
+            int position = voice_positions[v];
+            if(position == 0) recordLatency(voice_triggers[v]);
+            int count = Math.min(BLOCK_FRAMES, sound.length - position);
+            for(int i = 0; i < count; i++) {
+                mix[i] += sound[position + i];
+            }
+            position += count;
+            if(position == sound.length) voice_sounds[v] = null;
+            else voice_positions[v] = position;
+        }
+        for(int i = 0; i < BLOCK_FRAMES; i++) {
+            int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+            output[2 * i] = (byte) sample;
+            output[2 * i + 1] = (byte) (sample >> 8);
+        }
+    }
+    
+    /**
+     * Records the latency of a sound that is being mixed for the first time:
+     * the time it waited to be mixed, plus the time for the audio already
+     * queued in the line to be played ahead of it.
+     * @param trigger the System.nanoTime() when the sound was played
+     */
+    private void recordLatency(long trigger) {
+        int queued_frames = (line.getBufferSize() - line.available()) /
+            FORMAT.getFrameSize();
+        long latency = System.nanoTime() - trigger +
+            (long) (queued_frames * 1e9 / FORMAT.getFrameRate());
+        trigger_count++;
+        total_latency += latency;
+        if(latency > max_latency) max_latency = latency;
+    }
+    
+    /**
+     * Check to see if the audio line could be opened.
+     * @return true if sounds can be played, false otherwise
+     */
+    public boolean isOpen() {
+        return open;
+    }
+    
+    /**
+     * Get the number of sound effects that have started playing.
+     * @return the number of sound effects
+     */
+    public synchronized long getTriggerCount() {
+        return trigger_count;
+    }
+    
+    /**
+     * Get the number of sound effects that were cut off because too many
+     * sound effects were playing at once.
+     * @return the number of sound effects cut off
+     */
+    public synchronized long getStolenVoices() {
+        return stolen_voices;
+    }
+    
+    /**
+     * Get the average time from when a sound effect was played until its
+     * first sample is heard.
+     * @return the average latency in nanoseconds
+     */
+    public synchronized long getMeanLatencyNanos() {
+        return trigger_count == 0 ? 0 : total_latency / trigger_count;
+    }
+    
+    /**
+     * Get the longest time from when a sound effect was played until its
+     * first sample is heard.
+     * @return the longest latency in nanoseconds
+     */
+    public synchronized long getMaxLatencyNanos() {
+        return max_latency;
+    }
+    
+    /**
+     * Get a summary of the sound effects played.
+     * @return the summary
+     */
+    public String getLatencyReport() {
+        return String.format("sounds %d, cut off %d, latency mean %d ns, max %d ns",
+            getTriggerCount(), getStolenVoices(), getMeanLatencyNanos(),
+            getMaxLatencyNanos());
+    }
+
+}
@@ -0,0 +1,411 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Micro benchmarks for the hot paths of the Tetris model and rendering code.
+ * Each benchmark is warmed up first, then measured over several timed
+ * iterations, and the average time per operation is reported along with its
+ * error margin. Run it with -Djava.awt.headless=true to benchmark painting
+ * without a display. The results are written to the console in the same
+ * layout as the checked in results under the benchmarks folder. The JMH
+ * module there runs the same operations, which it looks up by name with
+ * getOperation().
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TetrisBenchmark {
+    
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 10;
+    private static final long ITERATION_TIME = 200000000L; // 1000000000 = 1 second
+    private static final int BATCH_SIZE = 1000;
+    
+    /**
+     * A single operation to benchmark. The value returned is consumed so that
+     * the JIT compiler cannot remove the work as dead code.
+     */
+    private interface Operation {
+        long run();
+    }
+    
+    /**
+     * Results are accumulated here so that no benchmark is optimized away.
+     */
+    private static volatile long sink;
+    
+    /**
+     * The name of the benchmark getOperation() is looking for, or null to
+     * measure every benchmark, and the Operation it found.
+     */
+    private static String wanted;
+    private static Operation found;
+    
+    /**
+     * Measures one operation and prints the average nanoseconds per operation.
+     * @param name the name of the benchmark
+     * @param op the Operation to measure
+     */
+    private static void measure(String name, Operation op) {
+        if(wanted != null) {
+            if(wanted.equals(name)) found = op;
+            return;
+        }
+        for(int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(op);
+        }
+        double[] scores = new double[MEASUREMENT_ITERATIONS];
+        double mean = 0;
+        for(int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            scores[i] = runIteration(op);
+            mean += scores[i];
+        }
+        mean /= MEASUREMENT_ITERATIONS;
+        double variance = 0;
+        for(int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            variance += (scores[i] - mean) * (scores[i] - mean);
+        }
+        double error = 2 * Math.sqrt(variance / (MEASUREMENT_ITERATIONS - 1));
+        System.out.println(String.format("%-32s avgt %4d %12.3f +- %9.3f  ns/op",
+            name, MEASUREMENT_ITERATIONS, mean, error));
+    }
+    
+    /**
+     * Runs batches of an operation for one timed iteration.
+     * @param op the Operation to run
+     * @return the average nanoseconds per operation
+     */
+    private static double runIteration(Operation op) {
+        long operations = 0;
+        long result = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for(int i = 0; i < BATCH_SIZE; i++) {
+                result += op.run();
+            }
+            operations += BATCH_SIZE;
+            elapsed = System.nanoTime() - start;
+        } while(elapsed < ITERATION_TIME);
+        sink += result;
+        return (double) elapsed / operations;
+    }
+    
+    /**
+     * Creates a TetriminoWell with a ragged stack of blocks in the bottom half,
+     * similar to the middle of a typical game.
+     * @param random the source of random numbers
+     * @return the new TetriminoWell
+     */
+    private static TetriminoWell createWell(Random random) {
+        TetriminoWell well = new TetriminoWell();
+        Tetrimino.TetriminoShape[] shapes = Tetrimino.TetriminoShape.values();
+        for(int i = 0; i < 20; i++) {
+            Tetrimino t = new Tetrimino(shapes[random.nextInt(shapes.length)]);
+            int column = random.nextInt(Tetris.TETRIS_WIDTH - 2);
+            if(well.checkCollision(t, 0, column)) continue;
+            int row = 0;
+            while(!well.checkCollision(t, row + 1, column)) { row++; }
+            well.settleTetrimino(t, row, column);
+        }
+        return well;
+    }
+    
+    /**
+     * Creates a TetriminoWell where the bottom four rows are filled except for
+     * the leftmost column. Settling a vertical Shape_I Tetrimino in the leftmost
+     * column will then clear anywhere from 0 to 4 lines, depending on its row.
+     * @return the new TetriminoWell
+     */
+    private static TetriminoWell createClearWell() {
+        TetriminoWell well = new TetriminoWell();
+        Tetrimino i = new Tetrimino(Tetrimino.TetriminoShape.Shape_I);
+        i.rotateClockwise();
+        for(int column = 1; column < Tetris.TETRIS_WIDTH; column++) {
+            well.settleTetrimino(i, Tetris.TETRIS_HEIGHT, column - 2);
+        }
+        return well;
+    }
+    
+    /**
+     * Benchmarks for the TetriminoWell, Tetrimino, TetriminoBag and
+     * TetrisModel.
+     */
+    private static void benchmarkModel() {
+        Random random = new Random(1);
+        final TetriminoWell well = createWell(random);
+        final Tetrimino[] pieces = new Tetrimino[28];
+        for(int s = 0; s < 7; s++) {
+            for(int r = 0; r < 4; r++) {
+                pieces[s * 4 + r] = new Tetrimino(Tetrimino.TetriminoShape.values()[s]);
+                for(int n = 0; n < r; n++) pieces[s * 4 + r].rotateClockwise();
+            }
+        }
+        
+        measure("well_checkCollision", new Operation() {
+            int n;
+            @Override
+            public long run() {
+                n++;
+                Tetrimino t = pieces[n % pieces.length];
+                return well.checkCollision(t, n % TetriminoWell.WELL_HEIGHT,
+                    (n % (Tetris.TETRIS_WIDTH + 2)) - 2) ? 1 : 0;
+            }
+        });
+        
+        measure("well_ghostDrop", new Operation() {
+            int n;
+            @Override
+            public long run() {
+                n++;
+                Tetrimino t = pieces[n % pieces.length];
+                int column = n % (Tetris.TETRIS_WIDTH - 2);
+                if(well.checkCollision(t, 0, column)) return 0;
+                int ghost_row = 0;
+                while(!well.checkCollision(t, ghost_row + 1, column)) { ghost_row++; }
+                return ghost_row;
+            }
+        });
+        
+        measure("well_getDropDistance", new Operation() {
+            int n;
+            @Override
+            public long run() {
+                n++;
+                Tetrimino t = pieces[n % pieces.length];
+                int column = n % (Tetris.TETRIS_WIDTH - 2);
+                if(well.checkCollision(t, 0, column)) return 0;
+                return well.getDropDistance(t, 0, column);
+            }
+        });
+        
+        final MoveGenerator generator = new MoveGenerator();
+        measure("movegen_generate", new Operation() {
+            int n;
+            @Override
+            public long run() {
+                n++;
+                return generator.generate(well, pieces[n % pieces.length], 0, 3);
+            }
+        });
+        
+        final TranspositionTable table = new TranspositionTable(1 << 16);
+        measure("table_probeAndStore", new Operation() {
+            long key;
+            @Override
+            public long run() {
+                key += 0x9e3779b97f4a7c15L;
+                long data = table.probe(key);
+                if(data == TranspositionTable.MISS) table.store(key, 1.0, 1, 0);
+                return data;
+            }
+        });
+        
+        final TetriminoWell template = createClearWell();
+        final TetriminoWell scratch = new TetriminoWell();
+        final Tetrimino i = new Tetrimino(Tetrimino.TetriminoShape.Shape_I);
+        i.rotateClockwise();
+        measure("well_copyFrom", new Operation() {
+            @Override
+            public long run() {
+                scratch.copyFrom(template);
+                return scratch.getRowMask(TetriminoWell.WELL_HEIGHT - 3);
+            }
+        });
+        measure("well_copyBlocksFrom", new Operation() {
+            @Override
+            public long run() {
+                scratch.copyBlocksFrom(template);
+                return scratch.getRowMask(TetriminoWell.WELL_HEIGHT - 3);
+            }
+        });
+        for(int lines = 0; lines <= 4; lines++) {
+            final int row = Tetris.TETRIS_HEIGHT - 4 + lines;
+            measure("well_copyFrom_settle_" + lines + "_lines", new Operation() {
+                @Override
+                public long run() {
+                    scratch.copyFrom(template);
+                    return scratch.settleTetrimino(i, row, -2);
+                }
+            });
+        }
+        
+        measure("tetrimino_getCoordinates", new Operation() {
+            int n;
+            @Override
+            public long run() {
+                n++;
+                int[][] coords = pieces[n % pieces.length].getCoordinates();
+                return coords[3][0] + coords[3][1];
+            }
+        });
+        
+        final TetriminoBag bag = new TetriminoBag();
+        measure("bag_pickTetrimino", new Operation() {
+            @Override
+            public long run() {
+                return bag.pickTetrimino().getShape().ordinal();
+            }
+        });
+        
+        final GameEngine engine = new GameEngine();
+        final GameEngine.Input[] inputs = GameEngine.Input.values();
+        measure("engine_randomInputAndTick", new Operation() {
+            int n;
+            @Override
+            public long run() {
+                n++;
+                if(engine.isGameOver()) engine.reset();
+                engine.step(inputs[(n * 7) % inputs.length]);
+                if((n & 3) == 0) engine.tick();
+                return engine.getScore();
+            }
+        });
+        
+        final ByteBuffer snapshot = ByteBuffer.allocate(GameEngine.SNAPSHOT_SIZE);
+        final GameEngine branch = new GameEngine();
+        // There is a snapshot to read even if only the read is measured
+        engine.writeSnapshot(snapshot);
+        measure("engine_writeSnapshot", new Operation() {
+            @Override
+            public long run() {
+                snapshot.clear();
+                engine.writeSnapshot(snapshot);
+                return snapshot.position();
+            }
+        });
+        measure("engine_readSnapshot", new Operation() {
+            @Override
+            public long run() {
+                snapshot.clear();
+                branch.readSnapshot(snapshot);
+                return branch.getTicks();
+            }
+        });
+    }
+    
+    /**
+     * Benchmarks for the BlockGridPanel, using an offscreen image in place of
+     * the display. The queue draining benchmark runs the part of
+     * TetrisView.update() that needs no JFrame, which turns the events from
+     * the TetrisModel into a ModifyBlockBuffer and paints them on the grids.
+     */
+    private static void benchmarkRendering() {
+        final BlockGridPanel grid = new BlockGridPanel(Tetris.TETRIS_HEIGHT + 4,
+            Tetris.TETRIS_WIDTH, 20);
+        grid.setBackground(Color.BLACK);
+        grid.setSize(grid.getPreferredSize());
+        Random random = new Random(1);
+        Color[] colors = { Color.CYAN, Color.BLUE, Color.ORANGE, Color.YELLOW,
+            Color.GREEN, Color.MAGENTA, Color.RED };
+        for(int r = 4; r < grid.getRows(); r++) {
+            for(int c = 0; c < grid.getColumns(); c++) {
+                if(r > 12 && random.nextInt(4) != 0) {
+                    grid.paintBlock(r, c, colors[random.nextInt(colors.length)], Color.GRAY);
+                } else {
+                    grid.paintBlock(r, c, null, Color.DARK_GRAY);
+                }
+            }
+        }
+        
+        final TetrisEventQueue queue = new TetrisEventQueue(1024);
+        final GameEngine engine = new GameEngine();
+        engine.setListener(new TetrisModelListener() {
+            @Override
+            public void queueInsert(int event) { queue.add(event); }
+            @Override
+            public void timerHiccup() {}
+            @Override
+            public void processStatistics(int tetriminos_dropped,
+                int single_lines_cleared, int double_lines_cleared,
+                int triple_lines_cleared, int tetris_cleared) {}
+            @Override
+            public void gameOver() {}
+        });
+        final BlockGridPanel holdGrid = new BlockGridPanel(4, 4, 20);
+        final BlockGridPanel nextGrid = new BlockGridPanel(4, 4, 20);
+        final ModifyBlockBuffer blockList = TetrisView.createBlockList();
+        final TetrisEventQueue pending = new TetrisEventQueue(64);
+        measure("view_update_drain", new Operation() {
+            int n;
+            @Override
+            public long run() {
+                n++;
+                if((n & 1) == 0) engine.step(GameEngine.Input.MOVE_LEFT);
+                else engine.step(GameEngine.Input.MOVE_RIGHT);
+                return TetrisView.drainEvents(queue, queue, pending, blockList,
+                    holdGrid, nextGrid, grid);
+            }
+        });
+        
+        final BufferedImage image = new BufferedImage(grid.getWidth(),
+            grid.getHeight(), BufferedImage.TYPE_INT_RGB);
+        final Graphics2D g = image.createGraphics();
+        measure("grid_paintComponent", new Operation() {
+            @Override
+            public long run() {
+                grid.paintComponent(g);
+                return image.getRGB(0, 0);
+            }
+        });
+        // An operation handed out by getOperation() keeps painting with it
+        if(wanted == null) g.dispose();
+        
+        measure("grid_clearRow", new Operation() {
+            int n;
+            @Override
+            public long run() {
+                n++;
+                grid.clearRow(grid.getRows() - 1 - (n & 3), 4, null, Color.DARK_GRAY);
+                return grid.getRows();
+            }
+        });
+    }
+    
+    /**
+     * Get the operation of one benchmark, set up the same way as when all
+     * of them are run, for a harness such as JMH to measure instead.
+     * @param name the name of the benchmark, as it is printed
+     * @return the operation, which returns a value to be consumed
+     */
+    public static synchronized LongSupplier getOperation(String name) {
+        wanted = name;
+        found = null;
+        try {
+            benchmarkModel();
+            benchmarkRendering();
+        } finally {
+            wanted = null;
+        }
+        if(found == null) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        final Operation op = found;
+        found = null;
+        return new LongSupplier() {
+            @Override
+            public long getAsLong() {
+                return op.run();
+            }
+        };
+    }
+    
+    /**
+     * Runs all of the benchmarks.
+     * @param args unused command line arguments
+     */
+    public static void main(String[] args) {
+        System.out.println("# " + System.getProperty("java.vm.name") + " " +
+            System.getProperty("java.version") + ", " +
+            Runtime.getRuntime().availableProcessors() + " processors");
+        System.out.println(String.format("%-32s %4s %4s %12s   %9s  %s",
+            "Benchmark", "Mode", "Cnt", "Score", "Error", "Units"));
+        benchmarkModel();
+        benchmarkRendering();
+        System.out.println("# sink " + (sink & 1));
+    }
+
+}
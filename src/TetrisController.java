@@ -1,58 +1,72 @@
 
 
-import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.Queue;
-import java.util.LinkedList;
 
 /**
  * This class is the controller for the Tetris game. 
  * It creates the model and the view, and processes state-changes from the
- * model and user-input from the view.
+ * model and user-input from the view. Gravity is driven by a GameLoop on its
+ * own thread, so every access to the model and the event queue is made while
+ * holding the lock on the TetrisController, and the view is only touched on
+ * the event dispatch thread.
  * 
  * @author John Cowgill, Baldwin Browne, Chunda Zeng
  * @version November 16, 2014
  */
-public class TetrisController {
+public class TetrisController implements TetrisModelListener, GameLoop.Listener {
 
-    private static final int ONE_TICK = 100; // 1000 = 1 second
-    private static final int MAX_LEVEL = 10;
-    private static final int CLEARS_PER_LEVEL = 4;
+    private static final int QUEUE_CAPACITY = 1024;
 
-    private Queue queue;
-    private Timer timer;
+    private TetrisEventQueue queue;
+    private GameLoop loop;
+    private TetrisMetrics metrics;
     private Toolkit toolkit;
     private TetrisModel model;
     private TetrisView view;
+    private TetrisAudio audio;
     private TetrisMusic music;
     private TetrisSFX sfx;
     private boolean running;
     private boolean paused;
-    private int counter, level, highScore;
+    private int level, lines, score, highScore;
+    private int ticks, speed;
+    private long gravity_nanos;
+    private boolean statistics_changed, game_over, replay_finished;
+    private GameRecorder recorder;
+    private GameReplay replay;
+    private int replay_index;
     
     /**
-     * Constructor sets up a Queue, a Timer, a TetrisModel, and a TetrisView.
+     * Constructor sets up a Queue, a GameLoop, a TetrisModel, and a TetrisView.
      */
     public TetrisController() {
-        queue = new LinkedList();
-        timer = new Timer(ONE_TICK, new ActionListener() {
-            
-            @Override
-            public void actionPerformed(ActionEvent event) {
-                counter++;
-                if((counter % (MAX_LEVEL - level + 1)) == 0) {
-                    model.update();
-                    view.update();
-                }
-            }
-            
-        });
+        this(null, 1);
+    }
+    
+    /**
+     * Constructor for a TetrisController that replays a recorded game instead
+     * of taking input from the player. The replay starts with the Start button
+     * and can be paused or quit as usual.
+     * @param replay the GameReplay to play, or null to play normally
+     * @param speed how many times faster than normal to replay the game
+     */
+    public TetrisController(GameReplay replay, int speed) {
+        this.replay = replay;
+        this.speed = Math.max(1, speed);
+        queue = new TetrisEventQueue(QUEUE_CAPACITY);
+        loop = new GameLoop(this, GameLoop.DEFAULT_STEP_NANOS);
+        metrics = new TetrisMetrics();
+        metrics.register();
+        if(System.getProperty("tetris.metrics") != null) {
+            metrics.startLogging(Long.parseLong(System.getProperty("tetris.metrics")));
+        }
         toolkit = Toolkit.getDefaultToolkit();
         model = new TetrisModel(this);
         view = new TetrisView(this);
-        music = new TetrisMusic(this);
-        sfx = new TetrisSFX(this);
+        audio = new TetrisAudio();
+        music = new TetrisMusic(this, audio);
+        sfx = new TetrisSFX(this, audio);
         running = false;
         paused = false;
         
@@ -60,45 +74,140 @@ public class TetrisController {
         view.setPauseButton(false);
         view.setStartButton(true);
         view.togglePauseButtonText(paused);
-        counter = 0;
+        gravity_nanos = 0;
         level = 1;
         highScore = 0;
     }
     
+    /**
+     * This method is called by the GameLoop at a fixed rate. It lets the
+     * current Tetrimino fall by one row each time the gravity for the current
+     * level has built up, which may be more than once per step at the highest
+     * levels.
+     * @param step_nanos the nanoseconds of game time in one step
+     * @return true if the TetrisModel changed, false otherwise
+     */
+    @Override
+    public synchronized boolean logicStep(long step_nanos) {
+        if(!running || paused || game_over) return false;
+        boolean changed = false;
+        gravity_nanos += step_nanos * speed;
+        while(gravity_nanos >= TetrisScoring.getGravityNanos(level) &&
+            running && !game_over && !replay_finished) {
+            gravity_nanos -= TetrisScoring.getGravityNanos(level);
+            ticks++;
+            if(recorder != null) recorder.recordTick();
+            long start = System.nanoTime();
+            model.update();
+            metrics.recordModelStep(start);
+            if(replay != null) replayInputs();
+            changed = true;
+        }
+        return changed;
+    }
+    
+    /**
+     * This method is called on the event dispatch thread by the GameLoop after
+     * the TetrisModel has changed, and by the TetrisController itself after
+     * the player's input. It finishes the game if it has ended, and brings
+     * the TetrisView up to date. Only the statistics and the events are
+     * taken while holding the lock, so the GameLoop is not kept waiting
+     * while the view paints.
+     */
+    @Override
+    public void presentFrame() {
+        boolean over, changed, new_high_score;
+        int shown_level, shown_lines, shown_score;
+        synchronized(this) {
+            changed = statistics_changed;
+            statistics_changed = false;
+            shown_level = level;
+            shown_lines = lines;
+            shown_score = score;
+            // Change the high score if needed
+            new_high_score = score > highScore;
+            if(new_high_score) highScore = score;
+            over = game_over;
+            // Quit before the flags are cleared, so the GameLoop never steps
+            // a game that has already ended
+            if(game_over || replay_finished) handleInput(KeyEvent.VK_ESCAPE);
+            game_over = replay_finished = false;
+        }
+        view.update();
+        if(changed) {
+            view.setLevelValue(shown_level);
+            view.setLinesValue(shown_lines);
+            view.setScoreValue(shown_score);
+        }
+        if(new_high_score) view.setHighScoreValue(shown_score);
+        if(over) {
+            sfx.playGameOver();
+            view.displayGameOver();
+        }
+    }
+    
+    /**
+     * Get the TetrisMetrics that the latency of each stage of the game is
+     * recorded in.
+     * @return the TetrisMetrics
+     */
+    public TetrisMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Get the GameLoop that drives the game, for access to its timing.
+     * @return the GameLoop
+     */
+    public GameLoop getGameLoop() {
+        return loop;
+    }
+    
     /**
      * This method is called by the TetrisModel when it highlights lines of
-     * blocks to clear so that the timer will back up one TICK in order to
+     * blocks to clear so that the gravity will start over in order to
      * display the highlighted lines long enough to be seen.
      */
+    @Override
     public void timerHiccup() {
-        counter = 0;
+        gravity_nanos = 0;
     }
     
     /**
-     * Inserts an object into the TetrisController's Queue.
+     * Inserts an event into the TetrisController's Queue.
      * This is used by the TetrisModel to send changes to the TetrisView.
-     * @param object the Object to be inserted into the Queue
+     * @param event the packed event to be inserted into the Queue
      */
-    public void queueInsert(Object object) {
-        queue.add(object);
+    @Override
+    public void queueInsert(int event) {
+        queue.add(event);
     }
 
     /**
-     * Removes the next object in the TetrisController's Queue and returns it.
+     * Get the TetrisController's Queue, for the TetrisView to drain. It must
+     * only be used while holding the lock of this TetrisController.
+     * @return the TetrisEventQueue
+     */
+    TetrisEventQueue getQueue() {
+        return queue;
+    }
+    
+    /**
+     * Removes the next event in the TetrisController's Queue and returns it.
      * This is used by the TetrisView to receive changes from the TetrisModel.
-     * @return the next Object in the Queue
+     * @return the next packed event in the Queue
      */
-    public Object queueRemove() {
+    public synchronized int queueRemove() {
         return queue.remove();
     }
 
     /**
-     * Checks to see if there is a next object in the TetrisController's Queue.
+     * Checks to see if there is a next event in the TetrisController's Queue.
      * This is used by the TetrisView to check if there are any changes to make.
-     * @return true if there is an object in the Queue, false otherwise
+     * @return true if there is an event in the Queue, false otherwise
      */
-    public boolean queueHasNext() {
-        return queue.peek() != null;
+    public synchronized boolean queueHasNext() {
+        return queue.hasNext();
     }
     
     /**
@@ -109,10 +218,30 @@ public class TetrisController {
      * @param keyCode the code for what type of input was received
      */
     public void processInput(int keyCode) {
+        if(handleInput(keyCode)) presentFrame();
+    }
+    
+    /**
+     * Performs the actions for the user input to the program while holding
+     * the lock, leaving the TetrisView to be brought up to date afterward.
+     * @param keyCode the code for what type of input was received
+     * @return true if a frame should be presented, false otherwise
+     */
+    private synchronized boolean handleInput(int keyCode) {
         if(!running) {
             if(keyCode == KeyEvent.VK_F10) { // START
-                timer.start();
-                model.resetModel();
+                ticks = 0;
+                game_over = replay_finished = false;
+                if(replay != null) {
+                    model.resetModel(replay.getSeed());
+                    replay_index = 0;
+                } else {
+                    long seed = new TetriminoRandom().nextLong();
+                    model.resetModel(seed);
+                    if(System.getProperty("tetris.record") != null) {
+                        recorder = new GameRecorder(seed);
+                    }
+                }
                 view.resetView();
                 music.play();
                 running = true;
@@ -121,116 +250,166 @@ public class TetrisController {
                 view.setPauseButton(true);
                 view.setStartButton(false);
                 view.togglePauseButtonText(paused);
-                counter = 0;
+                gravity_nanos = 0;
                 level = 1;
+                if(replay != null) replayInputs();
+                loop.start();
+                return true;
             }
-            return;
+            return false;
         }
         if(keyCode == KeyEvent.VK_ESCAPE) { // QUIT
-            timer.stop();
+            loop.stop();
+            if(System.getProperty("tetris.jitter") != null) {
+                System.out.println(loop.getJitterReport());
+                System.out.println(audio.getLatencyReport());
+            }
             music.stop();
+            saveRecording();
             running = false;
             paused = false;
             view.setQuitButton(false);
             view.setPauseButton(false);
             view.setStartButton(true);
             view.togglePauseButtonText(paused);
-            return;
+            return false;
         }
         if(paused) { // Check to see if PAUSE already active
             if(keyCode == 'p' || keyCode == 'P') {
-                timer.start();
+                loop.start();
                 music.play();
                 paused = false;
                 view.togglePauseButtonText(paused);
             }
-            return;
+            return false;
         }
+        GameEngine.Input input = null;
         switch(keyCode) {
             case KeyEvent.VK_LEFT: // MOVE LEFT
             case 'a':
             case 'A':
-                if(model.tryMoveLeft()) view.update();
-                else toolkit.beep();
+                input = GameEngine.Input.MOVE_LEFT;
                 break;
             case KeyEvent.VK_RIGHT: // MOVE RIGHT
             case 'd':
             case 'D':
-                if(model.tryMoveRight()) view.update();
-                else toolkit.beep();
+                input = GameEngine.Input.MOVE_RIGHT;
                 break;
             case KeyEvent.VK_DOWN: // MOVE DOWN
             case 's':
             case 'S':
-                if(model.tryMoveDown()) view.update();
-                else toolkit.beep();
+                input = GameEngine.Input.MOVE_DOWN;
                 break;
             case 'e': // ROTATE CLOCKWISE
             case 'E':
-                if(model.tryRotateClockwise()) view.update();
-                else toolkit.beep();
+                input = GameEngine.Input.ROTATE_CLOCKWISE;
                 break;
             case 'q': // ROTATE COUNTER CLOCKWISE
             case 'Q':
-                if(model.tryRotateCounterClockwise()) view.update();
-                else toolkit.beep();
+                input = GameEngine.Input.ROTATE_COUNTER_CLOCKWISE;
                 break;
             case KeyEvent.VK_UP: // HOLD EXCHANGE
             case 'w':
             case 'W':
-                if(model.tryHoldExchange()) view.update();
-                else toolkit.beep();
+                input = GameEngine.Input.HOLD_EXCHANGE;
                 break;
             case KeyEvent.VK_SPACE: // DROP
-                model.drop();
-                view.update();
+                input = GameEngine.Input.DROP;
                 break;
             case 'p': // PAUSE
             case 'P':
-                timer.stop();
-                music.stop();
+                loop.stop();
+                music.pause();
                 paused = true;
                 view.togglePauseButtonText(paused);
                 break;
         }
+        // The player's inputs are ignored while a recorded game is replayed,
+        // or once the game has ended
+        if(input != null && replay == null && !game_over) {
+            if(applyInput(input)) {
+                metrics.inputChanged();
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Performs one of the player's inputs on the TetrisModel, recording it if
+     * the game is being recorded, and beeps if it failed.
+     * @param input the GameEngine.Input to perform
+     * @return true if the input succeeded, false otherwise
+     */
+    private boolean applyInput(GameEngine.Input input) {
+        if(recorder != null) recorder.recordInput(input);
+        long start = System.nanoTime();
+        boolean changed = model.tryInput(input);
+        metrics.recordModelStep(start);
+        if(!changed) toolkit.beep();
+        return changed;
+    }
+    
+    /**
+     * Performs all of the recorded inputs that are due by the current tick
+     * of a replay, and asks for the replay to be quit once the end of the
+     * recording has been reached.
+     */
+    private void replayInputs() {
+        while(running && !game_over && replay_index < replay.getInputCount() &&
+            replay.getInputTick(replay_index) <= ticks) {
+            applyInput(replay.getInput(replay_index++));
+        }
+        if(running && replay_index == replay.getInputCount() &&
+            ticks >= replay.getTotalTicks()) {
+            replay_finished = true;
+        }
+    }
+    
+    /**
+     * Saves the game that was just played if recording is turned on, using the
+     * file name given by the tetris.record system property.
+     */
+    private void saveRecording() {
+        if(recorder == null) return;
+        try {
+            recorder.save(System.getProperty("tetris.record"));
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+        recorder = null;
     }
     
     /**
      * This method is called by the TetrisModel after it performs an update
      * so that the TetrisController can update the game statistics for level,
-     * lines, score, and high score.
+     * lines, score, and high score. The TetrisView shows them in the next
+     * frame.
      * @param tetriminos_dropped the number of Tetriminos dropped
      * @param single_lines_cleared the number of single lines cleared
      * @param double_lines_cleared the number of double lines cleared
      * @param triple_lines_cleared the number of triple lines cleared
      * @param tetris_cleared the number of Tetris (4 lines at once) cleared
      */
+    @Override
     public void processStatistics(int tetriminos_dropped,
         int single_lines_cleared, int double_lines_cleared,
         int triple_lines_cleared, int tetris_cleared) {
         
         // Compute the level
-        level = 1 + ((single_lines_cleared + double_lines_cleared +
-            triple_lines_cleared + tetris_cleared) / CLEARS_PER_LEVEL);
-        if(level > MAX_LEVEL) level = MAX_LEVEL;
-        view.setLevelValue(level);
+        level = TetrisScoring.getLevel(single_lines_cleared,
+            double_lines_cleared, triple_lines_cleared, tetris_cleared);
         
         // Compute the lines
-        int lines = single_lines_cleared + 2 * double_lines_cleared +
-            3 * triple_lines_cleared + 4 * tetris_cleared;
-        view.setLinesValue(lines);
+        lines = TetrisScoring.getLines(single_lines_cleared,
+            double_lines_cleared, triple_lines_cleared, tetris_cleared);
         
         // Compute the score
-        int score = tetriminos_dropped + 100 * single_lines_cleared +
-            200 * double_lines_cleared + 400 * triple_lines_cleared +
-            800 * tetris_cleared;
-        view.setScoreValue(score);
-        
-        // Change the high score if needed
-        if(score > highScore) {
-            highScore = score;
-            view.setHighScoreValue(highScore);
-        }  
+        score = TetrisScoring.getScore(tetriminos_dropped,
+            single_lines_cleared, double_lines_cleared, triple_lines_cleared,
+            tetris_cleared);
+        statistics_changed = true;
     }
     
     /**
@@ -250,12 +429,11 @@ public class TetrisController {
     /**
      * This method is called by the TetrisModel when the TetriminoWell has
      * overflowed to let the TetrisController know that the game has ended.
+     * The game is finished in the next frame.
      */
+    @Override
     public void gameOver() {
-        processInput(KeyEvent.VK_ESCAPE);
-        sfx.playGameOver();
-        music.stop();
-        view.displayGameOver();
+        game_over = true;
     }
     
 }
@@ -0,0 +1,228 @@
+import java.util.NoSuchElementException;
+
+/**
+ * A ring buffer of events sent from the TetrisModel to the TetrisView. Each
+ * event is packed into a single int holding an opcode, a row, a column, a
+ * Tetrimino shape and rotation, and a bit pattern of lines, so passing events
+ * between the model and the view never creates garbage. If the view falls
+ * behind and the buffer fills up, it doubles in size rather than losing
+ * events, and then stays at that size.
+ * 
+ *   bits  0 -  3  opcode
+ *   bits  4 - 11  row (offset by 128)
+ *   bits 12 - 19  column (offset by 128)
+ *   bits 20 - 22  TetriminoShape ordinal
+ *   bits 23 - 24  TetriminoRotation ordinal
+ *   bits 25 - 28  bit pattern of lines to highlight or clear
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TetrisEventQueue {
+    
+    /**
+     * The different types of events. DISPLAY, ERASE and GHOST carry the
+     * position, shape and rotation of a Tetrimino in the well. NEXT and HOLD
+     * carry the shape and rotation of the next piece and the hold piece.
+     * HIGHLIGHT and CLEAR carry the first row that may be affected and a bit
+     * pattern of which rows from there to highlight or clear.
+     */
+    public static final int DISPLAY = 1;
+    public static final int ERASE = 2;
+    public static final int GHOST = 3;
+    public static final int NEXT = 4;
+    public static final int HOLD = 5;
+    public static final int HIGHLIGHT = 6;
+    public static final int CLEAR = 7;
+    
+    private static final int OFFSET = 128;
+    private static final int MAX_CAPACITY = 1 << 30;
+    
+    private int[] events;
+    private int mask, head, tail;
+    
+    /**
+     * Constructor for a new TetrisEventQueue.
+     * @param capacity the initial number of events, rounded up to a power of 2
+     */
+    public TetrisEventQueue(int capacity) {
+        if(capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        int size = 1;
+        while(size < capacity) size <<= 1;
+        events = new int[size];
+        mask = size - 1;
+    }
+    
+    /**
+     * Packs the details of an event into an int.
+     * @param opcode the type of event
+     * @param row the row of the event
+     * @param column the column of the event
+     * @param shape the ordinal of the TetriminoShape
+     * @param rotation the ordinal of the TetriminoRotation
+     * @param lines the bit pattern of lines
+     * @return the packed event
+     */
+    public static int encode(int opcode, int row, int column, int shape,
+        int rotation, int lines) {
+        return opcode | ((row + OFFSET) << 4) | ((column + OFFSET) << 12) |
+            (shape << 20) | (rotation << 23) | (lines << 25);
+    }
+    
+    /**
+     * Packs an event about a Tetrimino into an int.
+     * @param opcode the type of event
+     * @param t the Tetrimino
+     * @param row the uppermost row of the Tetrimino
+     * @param column the leftmost column of the Tetrimino
+     * @return the packed event
+     */
+    public static int encode(int opcode, Tetrimino t, int row, int column) {
+        return encode(opcode, row, column, t.getShape().ordinal(),
+            t.getRotation().ordinal(), 0);
+    }
+    
+    /**
+     * Get the type of a packed event.
+     * @param event the packed event
+     * @return the opcode
+     */
+    public static int getOpcode(int event) {
+        return event & 0xF;
+    }
+    
+    /**
+     * Get the row of a packed event.
+     * @param event the packed event
+     * @return the row
+     */
+    public static int getRow(int event) {
+        return ((event >>> 4) & 0xFF) - OFFSET;
+    }
+    
+    /**
+     * Get the column of a packed event.
+     * @param event the packed event
+     * @return the column
+     */
+    public static int getColumn(int event) {
+        return ((event >>> 12) & 0xFF) - OFFSET;
+    }
+    
+    /**
+     * Get the Tetrimino shape of a packed event.
+     * @param event the packed event
+     * @return the ordinal of the TetriminoShape
+     */
+    public static int getShape(int event) {
+        return (event >>> 20) & 0x7;
+    }
+    
+    /**
+     * Get the Tetrimino rotation of a packed event.
+     * @param event the packed event
+     * @return the ordinal of the TetriminoRotation
+     */
+    public static int getRotation(int event) {
+        return (event >>> 23) & 0x3;
+    }
+    
+    /**
+     * Get the bit pattern of lines of a packed event.
+     * @param event the packed event
+     * @return the bit pattern of lines
+     */
+    public static int getLines(int event) {
+        return (event >>> 25) & 0xF;
+    }
+    
+    /**
+     * Inserts an event at the end of the queue, making the queue larger if it
+     * is full.
+     * @param event the packed event
+     */
+    public void add(int event) {
+        if(tail - head == events.length) grow();
+        events[tail++ & mask] = event;
+    }
+    
+    /**
+     * Doubles the size of the queue, moving its events to the front of the
+     * new array in order.
+     */
+    private void grow() {
+        if(events.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Queue full!");
+        }
+        int[] larger = new int[events.length << 1];
+        int size = tail - head;
+        for(int i = 0; i < size; i++) {
+            larger[i] = events[(head + i) & mask];
+        }
+        events = larger;
+        mask = larger.length - 1;
+        head = 0;
+        tail = size;
+    }
+    
+    /**
+     * Removes the event at the front of the queue and returns it.
+     * @return the packed event
+     */
+    public int remove() {
+        if(head == tail) {
+            throw new NoSuchElementException();
+        }
+        return events[head++ & mask];
+    }
+    
+    /**
+     * Moves every event in the queue to the end of another one, in order,
+     * leaving this queue empty.
+     * @param destination the TetrisEventQueue to move the events to
+     */
+    public void transferTo(TetrisEventQueue destination) {
+        while(destination.events.length - (destination.tail - destination.head) <
+            tail - head) {
+            destination.grow();
+        }
+        while(head != tail) {
+            destination.events[destination.tail++ & destination.mask] =
+                events[head++ & mask];
+        }
+    }
+    
+    /**
+     * Check to see if there are any events in the queue.
+     * @return true if there is an event in the queue, false otherwise
+     */
+    public boolean hasNext() {
+        return head != tail;
+    }
+    
+    /**
+     * Get the number of events the queue can hold before it has to grow.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return events.length;
+    }
+    
+    /**
+     * Get the number of events in the queue.
+     * @return the number of events
+     */
+    public int size() {
+        return tail - head;
+    }
+    
+    /**
+     * Removes all of the events from the queue.
+     */
+    public void clear() {
+        head = tail = 0;
+    }
+
+}
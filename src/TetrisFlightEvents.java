@@ -0,0 +1,153 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder events emitted by the Tetris game, so that a game
+ * can be lined up against garbage collections, safepoints and other pauses in
+ * JDK Mission Control. When no recording is running, each event costs about
+ * one check of whether it is enabled. Record a game with, for example,
+ * -XX:StartFlightRecording=filename=tetris.jfr
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public final class TetrisFlightEvents {
+    
+    /**
+     * One step of the TetrisModel's simulation, from TetrisModel.update().
+     */
+    @Name("tetris.ModelTick")
+    @Label("Model Tick")
+    @Category("Tetris")
+    @Description("One step of gravity in the TetrisModel")
+    @StackTrace(false)
+    public static class ModelTick extends Event {
+        
+        @Label("Tetriminos Dropped")
+        int tetriminos_dropped;
+        
+        @Label("Row")
+        @Description("The row of the current Tetrimino after the tick")
+        int row;
+        
+        @Label("Column")
+        @Description("The column of the current Tetrimino after the tick")
+        int column;
+        
+        @Label("Lines Cleared")
+        @Description("The lines cleared in the game so far")
+        int lines_cleared;
+    
+    }
+    
+    /**
+     * A new Tetrimino placed at the top of the well, from
+     * TetrisModel.getNextTetrimino().
+     */
+    @Name("tetris.PieceSpawn")
+    @Label("Piece Spawn")
+    @Category("Tetris")
+    @Description("A new Tetrimino placed at the top of the well")
+    @StackTrace(false)
+    public static class PieceSpawn extends Event {
+        
+        @Label("Shape")
+        String shape;
+        
+        @Label("Next Shape")
+        String next_shape;
+        
+        @Label("Tetriminos Dropped")
+        int tetriminos_dropped;
+        
+        @Label("Stack Height")
+        @Description("The number of rows from the floor of the well to the highest block")
+        int stack_height;
+    
+    }
+    
+    /**
+     * Lines filled by a settled Tetrimino, from TetrisModel.settle().
+     */
+    @Name("tetris.LineClear")
+    @Label("Line Clear")
+    @Category("Tetris")
+    @Description("Lines filled by a settled Tetrimino")
+    @StackTrace(false)
+    public static class LineClear extends Event {
+        
+        @Label("Lines")
+        int lines;
+        
+        @Label("Row")
+        @Description("The uppermost row of the Tetrimino that filled the lines")
+        int row;
+        
+        @Label("Row Mask")
+        @Description("A bit pattern of the rows below Row that were filled")
+        int row_mask;
+        
+        @Label("Tetriminos Dropped")
+        int tetriminos_dropped;
+    
+    }
+    
+    /**
+     * The TetrisView draining the events from the TetrisModel, from
+     * TetrisView.update().
+     */
+    @Name("tetris.QueueDrain")
+    @Label("Queue Drain")
+    @Category("Tetris")
+    @Description("The TetrisView draining the events from the TetrisModel")
+    @StackTrace(false)
+    public static class QueueDrain extends Event {
+        
+        @Label("Events")
+        int events;
+        
+        @Label("Blocks")
+        @Description("The number of blocks changed on the well")
+        int blocks;
+        
+        @Label("Lines Cleared")
+        int lines_cleared;
+    
+    }
+    
+    /**
+     * A BlockGridPanel painted on the screen, from
+     * BlockGridPanel.paintComponent().
+     */
+    @Name("tetris.GridPaint")
+    @Label("Grid Paint")
+    @Category("Tetris")
+    @Description("A grid of blocks painted on the screen")
+    @StackTrace(false)
+    public static class GridPaint extends Event {
+        
+        @Label("Rows")
+        int rows;
+        
+        @Label("Columns")
+        int columns;
+        
+        @Label("Clip Width")
+        int clip_width;
+        
+        @Label("Clip Height")
+        int clip_height;
+    
+    }
+    
+    /**
+     * The events are only created through the nested classes.
+     */
+    private TetrisFlightEvents() {
+    }
+
+}
@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Simulates many clients of a TetrisServer from one thread, to check that
+ * the server keeps up with a large number of games. Each client connects,
+ * sends a random input every so often, starts a new game when its game is
+ * over, and checks that every frame the server sends is well formed.
+ * 
+ * Usage: java TetrisLoadClient [host] [port] [clients] [seconds]
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TetrisLoadClient {
+    
+    private static final int INPUT_BUFFER = 4096;
+    private static final long MIN_INPUT_NANOS = 100000000L; // 100 ms
+    private static final long MAX_INPUT_NANOS = 300000000L; // 300 ms
+    private static final long INPUT_PERIOD_NANOS = 10000000L; // 10 ms
+    private static final int MAX_CONNECTING = 256;
+    
+    /**
+     * One simulated client.
+     */
+    private static class Client {
+        
+        private SocketChannel channel;
+        private ByteBuffer input = ByteBuffer.allocate(INPUT_BUFFER);
+        private boolean connected, welcomed, game_over;
+        private long next_input;
+    
+    }
+    
+    private String host;
+    private int port;
+    private Client[] clients;
+    private Selector selector;
+    private Random random = new Random(1);
+    private ByteBuffer message = ByteBuffer.allocate(1);
+    private int opened, connected, welcomed, dropped;
+    private long welcomes, frames, events, stats, games_over, inputs_sent;
+    private long bytes_received, errors;
+    
+    /**
+     * Constructor for a new TetrisLoadClient, which does not connect until
+     * run() is called.
+     * @param host the host of the TetrisServer
+     * @param port the port of the TetrisServer
+     * @param clients the number of clients to simulate
+     */
+    public TetrisLoadClient(String host, int port, int clients) {
+        // Check for valid parameters
+        if(port < 1 || port > 0xFFFF || clients < 1) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.host = host;
+        this.port = port;
+        this.clients = new Client[clients];
+    }
+    
+    /**
+     * Connects every client and plays for the given time. The clients stay
+     * connected until close() is called.
+     * @param seconds how long to play for
+     * @throws IOException if the Selector could not be opened
+     */
+    public void run(int seconds) throws IOException {
+        selector = Selector.open();
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        long now = System.nanoTime();
+        long end = now + seconds * 1000000000L;
+        long next_inputs = now;
+        while(System.nanoTime() - end < 0) {
+            // Ramp up gradually, so the server's backlog of connections
+            // waiting to be accepted never overflows
+            while(opened < clients.length && opened - welcomed < MAX_CONNECTING) {
+                open(address);
+            }
+            selector.select(1);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Client client = (Client) key.attachment();
+                if(!key.isValid()) continue;
+                if(key.isConnectable()) {
+                    try {
+                        client.channel.finishConnect();
+                        connect(client);
+                        key.interestOps(SelectionKey.OP_READ);
+                    } catch(IOException e) {
+                        drop(client);
+                    }
+                } else if(key.isReadable()) {
+                    read(client);
+                }
+            }
+            now = System.nanoTime();
+            if(now - next_inputs >= 0) {
+                sendInputs(now);
+                next_inputs = now + INPUT_PERIOD_NANOS;
+            }
+        }
+    }
+    
+    /**
+     * Disconnects every client.
+     */
+    public void close() {
+        for(Client client : clients) {
+            if(client != null) close(client);
+        }
+        try {
+            if(selector != null) selector.close();
+        } catch(IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Starts connecting the next client.
+     * @param address the address of the TetrisServer
+     * @throws IOException if the connection could not be opened
+     */
+    private void open(InetSocketAddress address) throws IOException {
+        Client client = new Client();
+        client.channel = SocketChannel.open();
+        client.channel.configureBlocking(false);
+        client.next_input = System.nanoTime() + nextInputNanos();
+        if(client.channel.connect(address)) {
+            connect(client);
+            client.channel.register(selector, SelectionKey.OP_READ, client);
+        } else {
+            client.channel.register(selector, SelectionKey.OP_CONNECT, client);
+        }
+        clients[opened++] = client;
+    }
+    
+    /**
+     * Get a random time between the inputs of a client.
+     * @return the nanoseconds until the next input
+     */
+    private long nextInputNanos() {
+        return MIN_INPUT_NANOS + (long) (random.nextDouble() *
+            (MAX_INPUT_NANOS - MIN_INPUT_NANOS));
+    }
+    
+    /**
+     * Records that a client has connected.
+     * @param client the Client
+     */
+    private void connect(Client client) throws IOException {
+        client.channel.socket().setTcpNoDelay(true);
+        client.connected = true;
+        connected++;
+    }
+    
+    /**
+     * Sends an input from every client whose turn has come.
+     * @param now the current System.nanoTime()
+     */
+    private void sendInputs(long now) {
+        for(int i = 0; i < opened; i++) {
+            Client client = clients[i];
+            if(!client.welcomed || now - client.next_input < 0) continue;
+            message.clear();
+            if(client.game_over) {
+                message.put((byte) TetrisServer.RESET);
+                client.game_over = false;
+            } else {
+                message.put((byte) random.nextInt(GameEngine.Input.values().length));
+            }
+            message.flip();
+            try {
+                client.channel.write(message);
+                inputs_sent++;
+            } catch(IOException e) {
+                drop(client);
+            }
+            client.next_input = now + nextInputNanos();
+        }
+    }
+    
+    /**
+     * Reads and checks the frames the server has sent to a client.
+     * @param client the Client
+     */
+    private void read(Client client) {
+        ByteBuffer input = client.input;
+        int count;
+        try {
+            count = client.channel.read(input);
+        } catch(IOException e) {
+            count = -1;
+        }
+        if(count < 0) {
+            drop(client);
+            return;
+        }
+        bytes_received += count;
+        input.flip();
+        while(input.remaining() >= 2) {
+            int length = input.getShort(input.position()) & 0xFFFF;
+            if(input.remaining() < 2 + length) break;
+            input.position(input.position() + 2);
+            int end = input.position() + length;
+            checkFrame(client, input, length);
+            input.position(end);
+            frames++;
+        }
+        input.compact();
+    }
+    
+    /**
+     * Checks that one frame is well formed and counts it.
+     * @param client the Client that received the frame
+     * @param frame the buffer, positioned at the type of the frame
+     * @param length the length of the type and the payload
+     */
+    private void checkFrame(Client client, ByteBuffer frame, int length) {
+        int type = length > 0 ? frame.get() : -1;
+        if(type == TetrisServer.WELCOME && length == 13) {
+            if(!client.welcomed) welcomed++;
+            client.welcomed = true;
+            welcomes++;
+        } else if(type == TetrisServer.EVENTS && length % 4 == 1 && client.welcomed) {
+            for(int i = 1; i < length; i += 4) {
+                int opcode = TetrisEventQueue.getOpcode(frame.getInt());
+                if(opcode < TetrisEventQueue.DISPLAY || opcode > TetrisEventQueue.CLEAR) {
+                    errors++;
+                }
+                events++;
+            }
+        } else if(type == TetrisServer.STATS && length == 14 && client.welcomed) {
+            stats++;
+        } else if(type == TetrisServer.GAME_OVER && length == 5 && client.welcomed) {
+            client.game_over = true;
+            games_over++;
+        } else {
+            errors++;
+        }
+    }
+    
+    /**
+     * Disconnects a client.
+     * @param client the Client
+     */
+    private void close(Client client) {
+        try {
+            client.channel.close();
+        } catch(IOException e) {
+            // The connection is gone either way
+        }
+    }
+    
+    /**
+     * Disconnects a client whose connection failed or was closed by the
+     * server before the run ended.
+     * @param client the Client
+     */
+    private void drop(Client client) {
+        if(client.channel.isOpen()) dropped++;
+        close(client);
+    }
+    
+    /**
+     * Check to see if every client connected, was welcomed, stayed connected,
+     * and received only well formed frames.
+     * @return true if the run was clean, false otherwise
+     */
+    public boolean isClean() {
+        return welcomed == clients.length && dropped == 0 && errors == 0;
+    }
+    
+    /**
+     * Get a summary of the run.
+     * @return the summary
+     */
+    public String getReport() {
+        return String.format("clients %d, connected %d, welcomed %d, dropped %d, " +
+            "inputs %d, frames %d (welcome %d, events %d, stats %d, game over %d), " +
+            "bytes %d, errors %d, %s", clients.length, connected, welcomed,
+            dropped, inputs_sent, frames, welcomes,
+            events, stats, games_over, bytes_received, errors,
+            isClean() ? "clean" : "NOT CLEAN");
+    }
+    
+    /**
+     * Runs a TetrisLoadClient against a TetrisServer and prints a report.
+     * @param args the host, the port, the number of clients, and the seconds
+     * to play for
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : TetrisServer.DEFAULT_PORT;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        TetrisLoadClient load = new TetrisLoadClient(host, port, clients);
+        load.run(seconds);
+        load.close();
+        System.out.println(load.getReport());
+    }
+
+}
@@ -0,0 +1,191 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms for each stage between a key press and the Tetris well
+ * being painted: dispatching the input, stepping the TetrisModel, draining the
+ * event queue in the TetrisView, and painting the well, along with the whole
+ * trip from a key press to the paint that shows it. The histograms can be
+ * recorded into from any thread without locking. They are published through
+ * JMX under the name "tetris:type=TetrisMetrics", and can also be written to
+ * the log at a fixed interval.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TetrisMetrics implements TetrisMetricsMXBean {
+    
+    public static final String OBJECT_NAME = "tetris:type=TetrisMetrics";
+    
+    private static final Logger LOGGER = Logger.getLogger("TetrisMetrics");
+    
+    private LatencyHistogram input_dispatch, model_step, queue_drain, paint,
+        input_to_paint;
+    
+    /**
+     * The System.nanoTime() of the key press being dispatched, and of the
+     * earliest key press that changed the game but has not been painted yet,
+     * or 0 if there is none. These are only used on the event dispatch thread.
+     */
+    private long input_start, unpainted_input;
+    
+    private ScheduledExecutorService log_executor;
+    
+    /**
+     * Constructor for a new TetrisMetrics with empty histograms.
+     */
+    public TetrisMetrics() {
+        input_dispatch = new LatencyHistogram();
+        model_step = new LatencyHistogram();
+        queue_drain = new LatencyHistogram();
+        paint = new LatencyHistogram();
+        input_to_paint = new LatencyHistogram();
+    }
+    
+    /**
+     * Publishes these metrics through the platform MBeanServer. Any error is
+     * reported, and the game goes on without them.
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Starts writing a summary of every histogram to the log at a fixed
+     * interval, on a daemon thread.
+     * @param seconds the number of seconds between summaries
+     */
+    public synchronized void startLogging(long seconds) {
+        if(seconds < 1) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        if(log_executor != null) log_executor.shutdown();
+        log_executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TetrisMetrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+            
+        });
+        log_executor.scheduleAtFixedRate(new Runnable() {
+            
+            @Override
+            public void run() {
+                LOGGER.info(getReport());
+            }
+            
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Called on the event dispatch thread when a key press is received.
+     */
+    public void beginInput() {
+        input_start = System.nanoTime();
+    }
+    
+    /**
+     * Called on the event dispatch thread when a key press has been processed.
+     */
+    public void endInput() {
+        input_dispatch.record(System.nanoTime() - input_start);
+    }
+    
+    /**
+     * Called on the event dispatch thread when the key press being dispatched
+     * has changed the game, so the next paint of the well will show it.
+     */
+    public void inputChanged() {
+        if(unpainted_input == 0) unpainted_input = input_start;
+    }
+    
+    /**
+     * Records the time taken by one step of the TetrisModel.
+     * @param start the System.nanoTime() when the step began
+     */
+    public void recordModelStep(long start) {
+        model_step.record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Records the time taken to drain the event queue.
+     * @param start the System.nanoTime() when the drain began
+     */
+    public void recordQueueDrain(long start) {
+        queue_drain.record(System.nanoTime() - start);
+    }
+    
+    /**
+     * Called on the event dispatch thread when the well has been painted.
+     * @param start the System.nanoTime() when the paint began
+     */
+    public void recordPaint(long start) {
+        long now = System.nanoTime();
+        paint.record(now - start);
+        if(unpainted_input != 0) {
+            input_to_paint.record(now - unpainted_input);
+            unpainted_input = 0;
+        }
+    }
+    
+    @Override
+    public LatencyHistogram.Summary getInputDispatch() {
+        return input_dispatch.getSummary();
+    }
+    
+    @Override
+    public LatencyHistogram.Summary getModelStep() {
+        return model_step.getSummary();
+    }
+    
+    @Override
+    public LatencyHistogram.Summary getQueueDrain() {
+        return queue_drain.getSummary();
+    }
+    
+    @Override
+    public LatencyHistogram.Summary getPaint() {
+        return paint.getSummary();
+    }
+    
+    @Override
+    public LatencyHistogram.Summary getInputToPaint() {
+        return input_to_paint.getSummary();
+    }
+    
+    @Override
+    public void reset() {
+        input_dispatch.reset();
+        model_step.reset();
+        queue_drain.reset();
+        paint.reset();
+        input_to_paint.reset();
+    }
+    
+    /**
+     * Get a summary of every histogram, one per line.
+     * @return the summary
+     */
+    public String getReport() {
+        return "Input dispatch: " + getInputDispatch() +
+            "\nModel step:     " + getModelStep() +
+            "\nQueue drain:    " + getQueueDrain() +
+            "\nPaint:          " + getPaint() +
+            "\nInput to paint: " + getInputToPaint();
+    }
+    
+}
@@ -0,0 +1,49 @@
+/**
+ * The management interface of the TetrisMetrics, published through JMX so
+ * that the latency of each stage of the game can be watched from JConsole or
+ * any other JMX client. All of the latencies are in nanoseconds.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public interface TetrisMetricsMXBean {
+    
+    /**
+     * Get the latency of dispatching a key press, from when the TetrisView
+     * receives the KeyEvent until TetrisController.processInput() returns.
+     * @return the Summary of the latencies
+     */
+    LatencyHistogram.Summary getInputDispatch();
+    
+    /**
+     * Get the latency of one step of the TetrisModel, either an input or a
+     * tick of gravity.
+     * @return the Summary of the latencies
+     */
+    LatencyHistogram.Summary getModelStep();
+    
+    /**
+     * Get the latency of draining the event queue in TetrisView.update().
+     * @return the Summary of the latencies
+     */
+    LatencyHistogram.Summary getQueueDrain();
+    
+    /**
+     * Get the latency of painting the Tetris well.
+     * @return the Summary of the latencies
+     */
+    LatencyHistogram.Summary getPaint();
+    
+    /**
+     * Get the latency from a key press that changed the game until the Tetris
+     * well has been painted with the change.
+     * @return the Summary of the latencies
+     */
+    LatencyHistogram.Summary getInputToPaint();
+    
+    /**
+     * Forgets all of the latencies recorded so far.
+     */
+    void reset();
+    
+}
@@ -1,44 +1,83 @@
 
 
+import java.nio.ByteBuffer;
+
 /**
  * This class is the model for the Tetris game. 
  * It creates a simulation and updates the state of the game based on messages
- * from the controller.
+ * from the controller, and publishes the results to a TetrisModelListener.
+ * The model does not depend on any user interface, so it can also be driven
+ * by a GameEngine without a TetrisController.
  * 
  * @author John Cowgill, Baldwin Browne, Chunda Zeng
  * @version October 26, 2014
  */
 public class TetrisModel {
     
-    private TetrisController controller;
+    /**
+     * The number of bytes written by writeSnapshot(). A snapshot has a fixed
+     * layout: a version byte, a flags byte, the shape and rotation of the
+     * current and held Tetriminos, the row, column and ghost row, the pending
+     * line clear, the five statistics counters, then the TetriminoBag and
+     * the TetriminoWell.
+     */
+    public static final int SNAPSHOT_SIZE = 9 + 20 + TetriminoBag.SNAPSHOT_SIZE +
+        TetriminoWell.SNAPSHOT_SIZE;
+    
+    private static final int HEADER_SIZE = 9 + 20;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int EXCHANGED = 1, SHOW_GHOST = 2, HELD_PRESENT = 4;
+    private static final Tetrimino.TetriminoShape[] SHAPES =
+        Tetrimino.TetriminoShape.values();
+    private static final Tetrimino.TetriminoRotation[] ROTATIONS =
+        Tetrimino.TetriminoRotation.values();
+    
+    private TetrisModelListener listener;
     private TetriminoWell well;
     private TetriminoBag bag;
     private Tetrimino current, held, ghost, held_ghost;
-    private ClearLines clear_highlighted;
+    private int clear_highlighted, clear_row;
     private int row, column, ghost_row;
     private boolean exchanged, show_ghost = true;
     private int tetriminos_dropped, single_lines_cleared, double_lines_cleared,
         triple_lines_cleared, tetris_cleared;
     
     /**
-     * Constructor keeps track of the controller.
-     * @param controller the TetrisController that created this TetrisModel
+     * Constructor keeps track of the listener.
+     * @param listener the TetrisModelListener that receives the results
      */
-    public TetrisModel(TetrisController controller) {
-        this.controller = controller;
+    public TetrisModel(TetrisModelListener listener) {
+        this.listener = listener;
     }
     
     /**
-     * Resets the game simulation.
+     * Resets the game simulation with an unpredictable sequence of Tetriminos.
      */
     public void resetModel() {
+        resetModel(new TetriminoBag());
+    }
+    
+    /**
+     * Resets the game simulation. Games reset with the same seed are given
+     * the same sequence of Tetriminos.
+     * @param seed the seed for the TetriminoBag
+     */
+    public void resetModel(long seed) {
+        resetModel(new TetriminoBag(seed));
+    }
+    
+    /**
+     * Resets the game simulation using the given TetriminoBag.
+     * @param bag the TetriminoBag to pick Tetriminos from
+     */
+    public void resetModel(TetriminoBag bag) {
         tetriminos_dropped = 0;
         single_lines_cleared = 0;
         double_lines_cleared = 0;
         triple_lines_cleared = 0;
         tetris_cleared = 0;
         well = new TetriminoWell();
-        bag = new TetriminoBag();
+        this.bag = bag;
         held = null;
         getNextTetrimino();
     }
@@ -53,48 +92,60 @@ public class TetrisModel {
     }
     
     /**
-     * Inserts messages into the TetrisController's Queue telling the TetrisView
+     * Inserts messages into the TetrisModelListener telling the TetrisView
      * how to display the current Tetrimino and its ghost image.
      */
     private void displayTetrimino() {
-        ghost_row = row;
-        while(!well.checkCollision(ghost, ghost_row + 1, column)) { ghost_row++; }
+        ghost_row = row + well.getDropDistance(ghost, row, column);
         if(show_ghost) {
-            controller.queueInsert(new GhostTetrimino(ghost, ghost_row, column));
+            listener.queueInsert(TetrisEventQueue.encode(TetrisEventQueue.GHOST,
+                ghost, ghost_row, column));
         }
-        controller.queueInsert(new DisplayTetrimino(current, row, column));
+        listener.queueInsert(TetrisEventQueue.encode(TetrisEventQueue.DISPLAY,
+            current, row, column));
     }
     
     /**
-     * Inserts messages into the TetrisController's Queue telling the TetrisView
+     * Inserts messages into the TetrisModelListener telling the TetrisView
      * how to erase the current Tetrimino and its ghost image.
      */
     private void eraseTetrimino() {
         if(show_ghost) {
-            controller.queueInsert(new EraseTetrimino(ghost, ghost_row, column));
+            listener.queueInsert(TetrisEventQueue.encode(TetrisEventQueue.ERASE,
+                ghost, ghost_row, column));
         }
-        controller.queueInsert(new EraseTetrimino(current, row, column));
+        listener.queueInsert(TetrisEventQueue.encode(TetrisEventQueue.ERASE,
+            current, row, column));
     }
     
     /**
      * First checks to see if the well has overflowed (if so, game over),
      * otherwise picks the next Tetrimino out of the bag, places it at the top
-     * of the well, and inserts a message into the TetrisController's Queue
+     * of the well, and inserts a message into the TetrisModelListener
      * telling the TetrisView what the next piece will be.
      */
     private void getNextTetrimino() {
         if(well.overflow()) {
-            controller.gameOver();
+            listener.gameOver();
             return;
         }
-        current = bag.pickTetrimino();
+        current = new Tetrimino(bag.pickShape());
         ghost = new Tetrimino(current.getShape());
         resetPosition();
         displayTetrimino();
-        controller.queueInsert(new NextTetrimino(bag.nextTetrimino()));
+        listener.queueInsert(TetrisEventQueue.encode(TetrisEventQueue.NEXT, 0, 0,
+            bag.nextShape().ordinal(), 0, 0));
         tetriminos_dropped++;
         exchanged = false;
-        clear_highlighted = null;
+        clear_highlighted = 0;
+        TetrisFlightEvents.PieceSpawn event = new TetrisFlightEvents.PieceSpawn();
+        if(event.shouldCommit()) {
+            event.shape = current.getShape().name();
+            event.next_shape = bag.nextShape().name();
+            event.tetriminos_dropped = tetriminos_dropped;
+            event.stack_height = well.getStackHeight();
+            event.commit();
+        }
     }
 
     /**
@@ -102,7 +153,7 @@ public class TetrisModel {
      * @return true if the move was successful, false otherwise
      */
     public boolean tryMoveLeft() {
-        if(clear_highlighted != null) return false;
+        if(clear_highlighted != 0) return false;
         if(well.checkCollision(current, row, column - 1)) return false;
         eraseTetrimino();
         column--;
@@ -115,7 +166,7 @@ public class TetrisModel {
      * @return true if the move was successful, false otherwise
      */
     public boolean tryMoveRight() {
-        if(clear_highlighted != null) return false;
+        if(clear_highlighted != 0) return false;
         if(well.checkCollision(current, row, column + 1)) return false;
         eraseTetrimino();
         column++;
@@ -128,7 +179,7 @@ public class TetrisModel {
      * @return true if the move was successful, false otherwise
      */
     public boolean tryMoveDown() {
-        if(clear_highlighted != null) return false;
+        if(clear_highlighted != 0) return false;
         if(well.checkCollision(current, row + 1, column)) return false;
         eraseTetrimino();
         row++;
@@ -141,7 +192,7 @@ public class TetrisModel {
      * @return true if the rotate was successful, false otherwise
      */
     public boolean tryRotateClockwise() {
-        if(clear_highlighted != null) return false;
+        if(clear_highlighted != 0) return false;
         current.rotateClockwise();
         boolean fail = well.checkCollision(current, row, column);
         current.rotateCounterClockwise();
@@ -158,7 +209,7 @@ public class TetrisModel {
      * @return true if the rotate was successful, false otherwise
      */
     public boolean tryRotateCounterClockwise() {
-        if(clear_highlighted != null) return false;
+        if(clear_highlighted != 0) return false;
         current.rotateCounterClockwise();
         boolean fail = well.checkCollision(current, row, column);
         current.rotateClockwise();
@@ -175,7 +226,7 @@ public class TetrisModel {
      * @return true if the exchange was successful, false otherwise
      */
     public boolean tryHoldExchange() {
-        if(clear_highlighted != null) return false;
+        if(clear_highlighted != 0) return false;
         if(exchanged) return false;
         if(held == null) {
             held = current;
@@ -194,17 +245,38 @@ public class TetrisModel {
             displayTetrimino();
         }
         exchanged = true;
-        controller.queueInsert(new HoldTetrimino(held));
+        listener.queueInsert(TetrisEventQueue.encode(TetrisEventQueue.HOLD,
+            held, 0, 0));
         return true;
     }
     
+    /**
+     * Try to perform one of the player's inputs.
+     * @param input the GameEngine.Input to perform
+     * @return true if the input was successful, false otherwise
+     */
+    public boolean tryInput(GameEngine.Input input) {
+        switch(input) {
+            case MOVE_LEFT: return tryMoveLeft();
+            case MOVE_RIGHT: return tryMoveRight();
+            case MOVE_DOWN: return tryMoveDown();
+            case ROTATE_CLOCKWISE: return tryRotateClockwise();
+            case ROTATE_COUNTER_CLOCKWISE: return tryRotateCounterClockwise();
+            case HOLD_EXCHANGE: return tryHoldExchange();
+            case DROP:
+                drop();
+                return true;
+            default: return false;
+        }
+    }
+    
     /**
      * Drops the current Tetrimino to the bottom of the well.
      */
     public void drop() {
-        if(clear_highlighted != null) return;
+        if(clear_highlighted != 0) return;
         eraseTetrimino();
-        while(!well.checkCollision(current, row + 1, column)) { row++; }
+        row += well.getDropDistance(current, row, column);
         displayTetrimino();
         settle();
     }
@@ -212,18 +284,26 @@ public class TetrisModel {
     /**
      * Settles the current Tetrimino within the well and checks to see if any
      * rows were cleared as a result. If any rows were cleared, this method will
-     * insert a message in the TetrisController's Queue telling the TetrisView
-     * which lines to highlight, and will create a message about which lines to
-     * clear to be sent on the next update of the TetrisModel.
+     * send an event to the TetrisModelListener telling the TetrisView which
+     * lines to highlight, and will remember which lines to clear so that event
+     * can be sent on the next update of the TetrisModel.
      */
     private void settle() {
         int rows_cleared = well.settleTetrimino(current, row, column);
         if(rows_cleared != 0) {
-            HighlightLines hl = new HighlightLines(row, rows_cleared);
-            ClearLines cl = new ClearLines(row, rows_cleared);
-            controller.queueInsert(hl);
-            clear_highlighted = cl;
-            switch(cl.line_count) {
+            TetrisFlightEvents.LineClear event = new TetrisFlightEvents.LineClear();
+            if(event.shouldCommit()) {
+                event.lines = Integer.bitCount(rows_cleared);
+                event.row = row;
+                event.row_mask = rows_cleared;
+                event.tetriminos_dropped = tetriminos_dropped;
+                event.commit();
+            }
+            listener.queueInsert(TetrisEventQueue.encode(TetrisEventQueue.HIGHLIGHT,
+                row, 0, 0, 0, rows_cleared));
+            clear_highlighted = rows_cleared;
+            clear_row = row;
+            switch(Integer.bitCount(rows_cleared)) {
                 case 1:
                     single_lines_cleared++;
                     break;
@@ -237,29 +317,280 @@ public class TetrisModel {
                     tetris_cleared++;
                     break;
             }
-            controller.timerHiccup(); // Reset the current TICK of the Timer
+            listener.timerHiccup(); // Start the gravity over
         } else {
             getNextTetrimino();
         }
     }
     
     /**
-     * This method is called by the TetrisController's Timer, letting the
-     * TetrisModel know when it is time to advance the simulation by one step.
+     * This method is called by the TetrisController's GameLoop (or by a
+     * GameEngine tick), letting the TetrisModel know when it is time to
+     * advance the simulation by one step.
      */
     public void update() {
-        if(clear_highlighted != null) {
-            controller.queueInsert(clear_highlighted);
-            clear_highlighted = null;
+        TetrisFlightEvents.ModelTick event = new TetrisFlightEvents.ModelTick();
+        event.begin();
+        if(clear_highlighted != 0) {
+            listener.queueInsert(TetrisEventQueue.encode(TetrisEventQueue.CLEAR,
+                clear_row, 0, 0, 0, clear_highlighted));
+            clear_highlighted = 0;
             getNextTetrimino();
-            return;
+        } else {
+            if(!tryMoveDown()) {
+                settle();
+            }
+            // Update the statistics information
+            listener.processStatistics(tetriminos_dropped, single_lines_cleared,
+                double_lines_cleared, triple_lines_cleared, tetris_cleared);
+        }
+        if(event.shouldCommit()) {
+            event.tetriminos_dropped = tetriminos_dropped;
+            event.row = row;
+            event.column = column;
+            event.lines_cleared = TetrisScoring.getLines(single_lines_cleared,
+                double_lines_cleared, triple_lines_cleared, tetris_cleared);
+            event.commit();
+        }
+    }
+
+    /**
+     * Writes the complete state of the game as SNAPSHOT_SIZE bytes, so that
+     * it can be saved, or restored later to branch the game from this point.
+     * The game must have been reset at least once.
+     * @param buffer the buffer to write to
+     */
+    public void writeSnapshot(ByteBuffer buffer) {
+        int flags = 0;
+        if(exchanged) flags |= EXCHANGED;
+        if(show_ghost) flags |= SHOW_GHOST;
+        if(held != null) flags |= HELD_PRESENT;
+        buffer.put((byte) SNAPSHOT_VERSION);
+        buffer.put((byte) flags);
+        buffer.put((byte) getShapeRotation(current));
+        buffer.put((byte) (held != null ? getShapeRotation(held) : 0));
+        buffer.put((byte) row);
+        buffer.put((byte) column);
+        buffer.put((byte) ghost_row);
+        buffer.put((byte) clear_row);
+        buffer.put((byte) clear_highlighted);
+        buffer.putInt(tetriminos_dropped);
+        buffer.putInt(single_lines_cleared);
+        buffer.putInt(double_lines_cleared);
+        buffer.putInt(triple_lines_cleared);
+        buffer.putInt(tetris_cleared);
+        bag.writeSnapshot(buffer);
+        well.writeSnapshot(buffer);
+    }
+    
+    /**
+     * Restores the complete state of the game from a snapshot written by
+     * writeSnapshot(). Nothing is sent to the TetrisModelListener, so a
+     * user interface must be redrawn from the restored state. The whole
+     * snapshot is checked before anything is changed, so a snapshot that is
+     * not valid leaves the game as it was. The well, the TetriminoBag and any
+     * Tetriminos of the same shapes are reused, so restoring a branch of the
+     * same game does not allocate at all.
+     * @param buffer the buffer to read from
+     * @throws IllegalArgumentException if the snapshot is not valid
+     */
+    public void readSnapshot(ByteBuffer buffer) {
+        int start = buffer.position();
+        if(buffer.remaining() < SNAPSHOT_SIZE || buffer.get(start) != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Invalid snapshot!");
+        }
+        int flags = buffer.get(start + 1);
+        int current_shape_rotation = buffer.get(start + 2);
+        int held_shape_rotation = buffer.get(start + 3);
+        if(current_shape_rotation < 0 || current_shape_rotation >= SHAPES.length << 2 ||
+            held_shape_rotation < 0 || held_shape_rotation >= SHAPES.length << 2) {
+            throw new IllegalArgumentException("Invalid snapshot!");
         }
-        if(!tryMoveDown()) {
-            settle();
+        TetriminoBag.checkSnapshot(buffer, start + HEADER_SIZE);
+        TetriminoWell.checkSnapshot(buffer, start + HEADER_SIZE + TetriminoBag.SNAPSHOT_SIZE);
+        // Nothing can fail from here on
+        buffer.position(start + 4);
+        exchanged = (flags & EXCHANGED) != 0;
+        show_ghost = (flags & SHOW_GHOST) != 0;
+        current = reuseTetrimino(current, current_shape_rotation);
+        ghost = reuseTetrimino(ghost, current_shape_rotation);
+        if((flags & HELD_PRESENT) != 0) {
+            held = reuseTetrimino(held, held_shape_rotation);
+            held_ghost = reuseTetrimino(held_ghost, held_shape_rotation);
+        } else {
+            held = held_ghost = null;
         }
-        // Update the statistics information
-        controller.processStatistics(tetriminos_dropped, single_lines_cleared,
-            double_lines_cleared, triple_lines_cleared, tetris_cleared);
+        row = buffer.get();
+        column = buffer.get();
+        ghost_row = buffer.get();
+        clear_row = buffer.get();
+        clear_highlighted = buffer.get() & 0xF;
+        tetriminos_dropped = buffer.getInt();
+        single_lines_cleared = buffer.getInt();
+        double_lines_cleared = buffer.getInt();
+        triple_lines_cleared = buffer.getInt();
+        tetris_cleared = buffer.getInt();
+        if(bag == null) bag = new TetriminoBag(0);
+        bag.readCheckedSnapshot(buffer);
+        if(well == null) well = new TetriminoWell();
+        well.readCheckedSnapshot(buffer);
+    }
+    
+    /**
+     * Get the shape and rotation of a Tetrimino, packed as in a snapshot.
+     * @param t the Tetrimino
+     * @return shape << 2 | rotation
+     */
+    private static int getShapeRotation(Tetrimino t) {
+        return t.getShape().ordinal() << 2 | t.getRotation().ordinal();
+    }
+    
+    /**
+     * Gives a Tetrimino the shape and rotation packed as in a snapshot,
+     * turning it if it already has that shape and creating a new one if not.
+     * The Tetriminos of a TetrisModel are its own, so turning one in place
+     * is safe.
+     * @param t the Tetrimino to reuse, or null
+     * @param shape_rotation shape << 2 | rotation
+     * @return the Tetrimino with that shape and rotation
+     */
+    private static Tetrimino reuseTetrimino(Tetrimino t, int shape_rotation) {
+        if(t == null || t.getShape() != SHAPES[shape_rotation >>> 2]) {
+            return new Tetrimino(SHAPES[shape_rotation >>> 2], ROTATIONS[shape_rotation & 3]);
+        }
+        while(t.getRotation() != ROTATIONS[shape_rotation & 3]) t.rotateClockwise();
+        return t;
+    }
+    
+    /**
+     * Get the TetriminoWell holding the settled blocks.
+     * @return the TetriminoWell
+     */
+    public TetriminoWell getWell() {
+        return well;
+    }
+    
+    /**
+     * Get the TetriminoBag the Tetriminos are picked from.
+     * @return the TetriminoBag
+     */
+    public TetriminoBag getBag() {
+        return bag;
+    }
+    
+    /**
+     * Get the Tetrimino currently falling in the well.
+     * @return the current Tetrimino
+     */
+    public Tetrimino getCurrent() {
+        return current;
+    }
+    
+    /**
+     * Get the Tetrimino in the hold slot.
+     * @return the held Tetrimino, or null if nothing has been held yet
+     */
+    public Tetrimino getHeld() {
+        return held;
+    }
+    
+    /**
+     * Get the uppermost row of the current Tetrimino.
+     * @return the row
+     */
+    public int getRow() {
+        return row;
+    }
+    
+    /**
+     * Get the leftmost column of the current Tetrimino.
+     * @return the column
+     */
+    public int getColumn() {
+        return column;
+    }
+    
+    /**
+     * Get the uppermost row of the ghost image of the current Tetrimino.
+     * @return the ghost row
+     */
+    public int getGhostRow() {
+        return ghost_row;
+    }
+    
+    /**
+     * Check to see if the hold exchange has already been used for the current
+     * Tetrimino.
+     * @return true if the exchange was used, false otherwise
+     */
+    public boolean isExchanged() {
+        return exchanged;
+    }
+    
+    /**
+     * Check to see if cleared lines are highlighted and waiting to be removed
+     * on the next update.
+     * @return true if lines are waiting to be cleared, false otherwise
+     */
+    public boolean isClearPending() {
+        return clear_highlighted != 0;
+    }
+    
+    /**
+     * Get the uppermost row that may be cleared on the next update.
+     * @return the row, only meaningful while a clear is pending
+     */
+    public int getClearRow() {
+        return clear_row;
+    }
+    
+    /**
+     * Get the bit pattern of the highlighted lines waiting to be cleared,
+     * counting down from the clear row.
+     * @return the bit pattern of lines, or 0 if no clear is pending
+     */
+    public int getClearLines() {
+        return clear_highlighted;
+    }
+    
+    /**
+     * Get the number of Tetriminos dropped.
+     * @return the number of Tetriminos dropped
+     */
+    public int getTetriminosDropped() {
+        return tetriminos_dropped;
+    }
+    
+    /**
+     * Get the number of single lines cleared.
+     * @return the number of single lines cleared
+     */
+    public int getSingleLinesCleared() {
+        return single_lines_cleared;
+    }
+    
+    /**
+     * Get the number of double lines cleared.
+     * @return the number of double lines cleared
+     */
+    public int getDoubleLinesCleared() {
+        return double_lines_cleared;
+    }
+    
+    /**
+     * Get the number of triple lines cleared.
+     * @return the number of triple lines cleared
+     */
+    public int getTripleLinesCleared() {
+        return triple_lines_cleared;
+    }
+    
+    /**
+     * Get the number of Tetris (4 lines at once) cleared.
+     * @return the number of Tetris cleared
+     */
+    public int getTetrisCleared() {
+        return tetris_cleared;
     }
 
 }
@@ -0,0 +1,42 @@
+/**
+ * The TetrisModel publishes the results of each step of the simulation to an
+ * implementation of this interface. The TetrisController implements it to
+ * drive the TetrisView, while the GameEngine implements it to run games
+ * without any user interface at all.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public interface TetrisModelListener {
+    
+    /**
+     * Receives an event from the TetrisModel describing a change to display,
+     * packed into an int as described by the TetrisEventQueue.
+     * @param event the packed event from the TetrisModel
+     */
+    void queueInsert(int event);
+    
+    /**
+     * Called by the TetrisModel when it highlights lines of blocks to clear,
+     * so that the highlighted lines can be displayed long enough to be seen.
+     */
+    void timerHiccup();
+    
+    /**
+     * Called by the TetrisModel after it performs an update with the current
+     * game statistics.
+     * @param tetriminos_dropped the number of Tetriminos dropped
+     * @param single_lines_cleared the number of single lines cleared
+     * @param double_lines_cleared the number of double lines cleared
+     * @param triple_lines_cleared the number of triple lines cleared
+     * @param tetris_cleared the number of Tetris (4 lines at once) cleared
+     */
+    void processStatistics(int tetriminos_dropped, int single_lines_cleared,
+        int double_lines_cleared, int triple_lines_cleared, int tetris_cleared);
+    
+    /**
+     * Called by the TetrisModel when the TetriminoWell has overflowed.
+     */
+    void gameOver();
+    
+}
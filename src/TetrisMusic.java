@@ -2,16 +2,13 @@
 
 /**
  * This class handles the background music for the Tetris game. You can call on this
- * class to play and stop the game's background music.
+ * class to play, pause and stop the game's background music, which is streamed
+ * through the TetrisAudio engine.
  * 
  * @author Baldwin Browne
  * @version November 16, 2014
  */
 
-import java.applet.Applet;
-import java.applet.AudioClip;
-import java.net.URL;
-
 public class TetrisMusic {
 	
 	/**
@@ -19,21 +16,23 @@ public class TetrisMusic {
 	 */
 	
 	private TetrisController controller;
-	private String  music = "file:res/Tetris_Music.wav";
-	private AudioClip clip;
+	private TetrisAudio audio;
+	private String  music = "res/Tetris_Music.wav";
+	private MusicStream stream;
 	
 	
 	/**
-	 * Constructor - creates an AudioClip loaded with fileName parameter.
-	 * @param fileName
+	 * Constructor - opens a MusicStream for the music.
+	 * @param controller the TetrisController
+	 * @param audio the TetrisAudio engine to play the music through
 	 */
-	public TetrisMusic(TetrisController controller){
+	public TetrisMusic(TetrisController controller, TetrisAudio audio){
 		
 		this.controller = controller;
+		this.audio = audio;
 		
 		try {
-                    URL url = new URL(music);
-			clip = Applet.newAudioClip(url);
+			stream = new MusicStream(music);
 		} catch (Exception e) {
 			System.out.println(e.getMessage());
 			e.printStackTrace();
@@ -41,28 +40,24 @@ public class TetrisMusic {
 	}
 
 	/**
-	 * Method for playing the AudioClip in a loop.
+	 * Method for playing the music in a loop, from where it was paused.
 	 */
 	public void play() {
-            if(clip == null) return;
-		try {
-			new Thread(){ 
-				public void run(){
-					clip.loop();
-				}
-			}.start();
-		} catch (Exception ex) {
-			System.out.println(ex.getMessage());
-			ex.printStackTrace();
-		}
+		audio.playMusic(stream);
+	}
+	
+	/**
+	 * Method for pausing the music, so that play() picks up where it left off
+	 */
+	public void pause() {
+		audio.pauseMusic();
 	}
 	
 	/**
-	 * Method for stopping the AudioClip
+	 * Method for stopping the music and going back to the beginning
 	 */
 	public void stop() {
-            if(clip == null) return;
-		clip.stop();
+		audio.stopMusic();
 
 	}
 
@@ -0,0 +1,84 @@
+/**
+ * The scoring rules for the Tetris game. The level, lines and score are all
+ * computed from the statistics kept by the TetrisModel, so that the
+ * TetrisController and headless games always agree on the results.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TetrisScoring {
+    
+    public static final int MAX_LEVEL = 20;
+    public static final int CLEARS_PER_LEVEL = 4;
+    
+    /**
+     * The level where gravity reaches one row per 100 ms. Up to this level the
+     * time per row drops by 100 ms with each level, and beyond it the time per
+     * row drops by a quarter with each level.
+     */
+    public static final int CLASSIC_LEVELS = 10;
+    private static final long ONE_ROW = 100000000L; // 1000000000 = 1 second
+    
+    /**
+     * Compute the level reached for the given number of line clears.
+     * @param single_lines_cleared the number of single lines cleared
+     * @param double_lines_cleared the number of double lines cleared
+     * @param triple_lines_cleared the number of triple lines cleared
+     * @param tetris_cleared the number of Tetris (4 lines at once) cleared
+     * @return the level, from 1 up to MAX_LEVEL
+     */
+    public static int getLevel(int single_lines_cleared,
+        int double_lines_cleared, int triple_lines_cleared, int tetris_cleared) {
+        int level = 1 + ((single_lines_cleared + double_lines_cleared +
+            triple_lines_cleared + tetris_cleared) / CLEARS_PER_LEVEL);
+        if(level > MAX_LEVEL) level = MAX_LEVEL;
+        return level;
+    }
+    
+    /**
+     * Compute how long the current Tetrimino takes to fall by one row.
+     * @param level the current level
+     * @return the nanoseconds per row
+     */
+    public static long getGravityNanos(int level) {
+        if(level <= CLASSIC_LEVELS) {
+            return (CLASSIC_LEVELS - Math.max(level, 1) + 1) * ONE_ROW;
+        }
+        long nanos = ONE_ROW;
+        for(int l = CLASSIC_LEVELS; l < level; l++) {
+            nanos = nanos * 3 / 4;
+        }
+        return nanos;
+    }
+    
+    /**
+     * Compute the total number of lines cleared.
+     * @param single_lines_cleared the number of single lines cleared
+     * @param double_lines_cleared the number of double lines cleared
+     * @param triple_lines_cleared the number of triple lines cleared
+     * @param tetris_cleared the number of Tetris (4 lines at once) cleared
+     * @return the number of lines
+     */
+    public static int getLines(int single_lines_cleared,
+        int double_lines_cleared, int triple_lines_cleared, int tetris_cleared) {
+        return single_lines_cleared + 2 * double_lines_cleared +
+            3 * triple_lines_cleared + 4 * tetris_cleared;
+    }
+    
+    /**
+     * Compute the score for the given game statistics.
+     * @param tetriminos_dropped the number of Tetriminos dropped
+     * @param single_lines_cleared the number of single lines cleared
+     * @param double_lines_cleared the number of double lines cleared
+     * @param triple_lines_cleared the number of triple lines cleared
+     * @param tetris_cleared the number of Tetris (4 lines at once) cleared
+     * @return the score
+     */
+    public static int getScore(int tetriminos_dropped, int single_lines_cleared,
+        int double_lines_cleared, int triple_lines_cleared, int tetris_cleared) {
+        return tetriminos_dropped + 100 * single_lines_cleared +
+            200 * double_lines_cleared + 400 * triple_lines_cleared +
+            800 * tetris_cleared;
+    }
+    
+}
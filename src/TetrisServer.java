@@ -0,0 +1,877 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A server that hosts many games of Tetris at once, each played by a remote
+ * client over a TCP connection. Every game is a GameEngine with no user
+ * interface. The connections are spread across a few event loops, one per
+ * processor by default, and each event loop handles the sockets of its games
+ * with a single Selector and drives their gravity from a single TimerWheel,
+ * so the server needs no thread and no Timer for each game.
+ * 
+ * The protocol is binary and big endian. The client sends one byte for each
+ * message:
+ * 
+ *   0 - 6   the ordinal of a GameEngine.Input to apply to the game
+ *   RESET   start a new game, such as after the game is over
+ * 
+ * Any other byte closes the connection. The server sends frames, each made
+ * of an unsigned short length, counting the type and the payload, followed by
+ * a type byte and the payload:
+ * 
+ *   WELCOME    int session id, long seed of the TetriminoBag
+ *   EVENTS     the packed TetrisEventQueue events of the changes to the game
+ *   STATS      int Tetriminos dropped, int lines, int score, byte level
+ *   GAME_OVER  int final score
+ * 
+ * A WELCOME frame is sent when a game starts, and the EVENTS that follow it
+ * draw the game from an empty well. After that only the changes are sent.
+ * 
+ * Spectators connect to a second port and send the int session id of the
+ * game they want to watch. From then on they are sent the frames of the
+ * game's SpectatorBroadcast. A spectator that falls too far behind has its
+ * waiting frames dropped and picks up again from the next keyframe.
+ * 
+ * Usage: java TetrisServer [port] [spectator port] [event loops]
+ *        [report seconds]
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TetrisServer {
+    
+    /**
+     * The message sent by a client to start a new game.
+     */
+    public static final int RESET = 0x10;
+    
+    /**
+     * The types of the frames sent by the server.
+     */
+    public static final int WELCOME = 1;
+    public static final int EVENTS = 2;
+    public static final int STATS = 3;
+    public static final int GAME_OVER = 4;
+    
+    public static final int DEFAULT_PORT = 7777;
+    
+    private static final GameEngine.Input[] INPUTS = GameEngine.Input.values();
+    private static final int BACKLOG = 1024;
+    private static final long WHEEL_TICK_NANOS = 1000000L; // 1 ms
+    private static final int WHEEL_SLOTS = 1024;
+    private static final int INPUT_BUFFER = 64;
+    private static final int OUTPUT_BUFFER = 2048;
+    private static final int MAX_EVENTS_PER_FRAME = 64;
+    private static final int MAX_QUEUED_FRAMES = 256;
+    
+    /**
+     * One connected client and its game. A Session is only used by the
+     * thread of its EventLoop, and its Timer is the game's gravity.
+     */
+    private class Session implements TetrisModelListener, Runnable {
+        
+        private int id;
+        private EventLoop loop;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private GameEngine engine;
+        private TetrisEventQueue events;
+        private ByteBuffer input, output;
+        private TimerWheel.Timer gravity;
+        private SpectatorBroadcast broadcast;
+        private int last_dropped, last_lines;
+        private boolean game_over, closed;
+        
+        /**
+         * Constructor for a new Session, which starts a game right away.
+         * @param loop the EventLoop that owns the Session
+         * @param channel the client's connection
+         * @throws IOException if the connection could not be registered
+         */
+        private Session(EventLoop loop, SocketChannel channel) throws IOException {
+            this.id = next_id.incrementAndGet();
+            this.loop = loop;
+            this.channel = channel;
+            engine = new GameEngine();
+            engine.setListener(this);
+            events = new TetrisEventQueue(MAX_EVENTS_PER_FRAME);
+            input = ByteBuffer.allocate(INPUT_BUFFER);
+            output = ByteBuffer.allocate(OUTPUT_BUFFER);
+            gravity = new TimerWheel.Timer(this);
+            broadcast = new SpectatorBroadcast(SpectatorBroadcast.DEFAULT_KEYFRAME_INTERVAL);
+            key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+            session_count.incrementAndGet();
+            sessions.put(id, this);
+            start(loop.random.nextLong());
+        }
+        
+        /**
+         * Starts a new game and sends it to the client.
+         * @param seed the seed for the TetriminoBag
+         */
+        private void start(long seed) {
+            events.clear();
+            engine.reset(seed);
+            broadcast.restart(engine);
+            game_over = false;
+            last_dropped = last_lines = -1;
+            if(!reserve(13)) return;
+            output.putShort((short) 13).put((byte) WELCOME).putInt(id).putLong(seed);
+            loop.wheel.schedule(gravity, System.nanoTime() + getGravityNanos());
+            flush();
+        }
+        
+        /**
+         * Get the time between gravity ticks at the game's current level.
+         * @return the nanoseconds between ticks
+         */
+        private long getGravityNanos() {
+            return TetrisScoring.getGravityNanos(engine.getLevel());
+        }
+        
+        /**
+         * Runs one gravity tick when the Session's Timer expires. The
+         * TimerWheel runs the ticks of many Sessions in a row, so a tick that
+         * fails only closes its own Session.
+         */
+        @Override
+        public void run() {
+            try {
+                tick();
+            } catch(RuntimeException e) {
+                fail(e);
+            }
+        }
+        
+        /**
+         * Runs one gravity tick and schedules the next one.
+         */
+        private void tick() {
+            long deadline = gravity.getDeadline();
+            engine.tick();
+            ticks.increment();
+            long now = System.nanoTime();
+            tick_latency.record(now - deadline);
+            if(!engine.isGameOver()) {
+                long next = deadline + getGravityNanos();
+                // If the loop fell a whole tick behind, start over from now
+                if(now - next >= 0) next = now;
+                loop.wheel.schedule(gravity, next);
+            }
+            flush();
+        }
+        
+        /**
+         * Reads and applies the messages the client has sent.
+         */
+        private void read() {
+            try {
+                if(channel.read(input) < 0) {
+                    close();
+                    return;
+                }
+            } catch(IOException e) {
+                close();
+                return;
+            }
+            input.flip();
+            while(input.hasRemaining()) {
+                int message = input.get() & 0xFF;
+                if(message < INPUTS.length) {
+                    engine.step(INPUTS[message]);
+                    inputs.increment();
+                } else if(message == RESET) {
+                    start(loop.random.nextLong());
+                } else {
+                    close();
+                }
+                if(closed) return;
+            }
+            input.clear();
+            flush();
+        }
+        
+        /**
+         * Adds frames for everything that changed in the game since the last
+         * flush, and sends as much as the connection will take.
+         */
+        private void flush() {
+            broadcast.publish(engine);
+            if(events.hasNext()) writeEvents();
+            TetrisModel model = engine.getModel();
+            int lines = engine.getLines();
+            if(model.getTetriminosDropped() != last_dropped || lines != last_lines) {
+                last_dropped = model.getTetriminosDropped();
+                last_lines = lines;
+                if(!reserve(14)) return;
+                output.putShort((short) 14).put((byte) STATS).putInt(last_dropped)
+                    .putInt(lines).putInt(engine.getScore()).put((byte) engine.getLevel());
+            }
+            if(engine.isGameOver() && !game_over) {
+                game_over = true;
+                loop.wheel.cancel(gravity);
+                if(!reserve(5)) return;
+                output.putShort((short) 5).put((byte) GAME_OVER).putInt(engine.getScore());
+            }
+            send();
+        }
+        
+        /**
+         * Moves the waiting events into an EVENTS frame.
+         */
+        private void writeEvents() {
+            int count = events.size();
+            if(!reserve(1 + 4 * count)) return;
+            output.putShort((short) (1 + 4 * count)).put((byte) EVENTS);
+            while(events.hasNext()) output.putInt(events.remove());
+        }
+        
+        /**
+         * Makes room in the output buffer for a frame, sending what is already
+         * there if needed. A client that falls so far behind that its frames
+         * no longer fit is disconnected.
+         * @param length the length of the frame after its length field
+         * @return true if there is room, false if the Session was closed
+         */
+        private boolean reserve(int length) {
+            if(closed) return false;
+            if(output.remaining() < 2 + length) send();
+            if(!closed && output.remaining() < 2 + length) {
+                slow_clients.increment();
+                close();
+            }
+            return !closed;
+        }
+        
+        /**
+         * Writes as much of the output buffer as the connection will take,
+         * and asks to be told when it can take more if anything is left.
+         */
+        private void send() {
+            if(closed || output.position() == 0) return;
+            output.flip();
+            try {
+                bytes_sent.add(channel.write(output));
+            } catch(IOException e) {
+                close();
+                return;
+            }
+            output.compact();
+            key.interestOps(output.position() == 0 ? SelectionKey.OP_READ :
+                SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        
+        /**
+         * Closes the Session after an unexpected exception.
+         * @param e the exception
+         */
+        private void fail(RuntimeException e) {
+            recordFailure(e);
+            close();
+        }
+        
+        /**
+         * Closes the connection and ends the game.
+         */
+        private void close() {
+            if(closed) return;
+            closed = true;
+            loop.wheel.cancel(gravity);
+            key.cancel();
+            try {
+                channel.close();
+            } catch(IOException e) {
+                // The connection is gone either way
+            }
+            session_count.decrementAndGet();
+            sessions.remove(id);
+            broadcast.close();
+        }
+        
+        @Override
+        public void queueInsert(int event) {
+            if(events.size() == MAX_EVENTS_PER_FRAME) writeEvents();
+            if(closed) events.clear();
+            events.add(event);
+            broadcast.add(event);
+        }
+        
+        @Override
+        public void timerHiccup() {
+            // The highlighted lines stay up until the next tick anyway
+        }
+        
+        @Override
+        public void processStatistics(int tetriminos_dropped,
+            int single_lines_cleared, int double_lines_cleared,
+            int triple_lines_cleared, int tetris_cleared) {
+            // The statistics are sent when the Session is flushed
+        }
+        
+        @Override
+        public void gameOver() {
+            // The game over is sent when the Session is flushed
+        }
+    
+    }
+    
+    /**
+     * A connection watching a game. Until it has sent the id of the game it
+     * belongs to the first EventLoop, and after that to the EventLoop of the
+     * game it watches.
+     */
+    private class Spectator implements SpectatorBroadcast.Subscriber {
+        
+        private EventLoop loop;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer request;
+        private Session session;
+        private ArrayDeque<ByteBuffer> frames;
+        private boolean waiting_for_keyframe, closed;
+        
+        /**
+         * Constructor for a new Spectator, which waits for the id of a game.
+         * @param loop the first EventLoop
+         * @param channel the spectator's connection
+         * @throws IOException if the connection could not be registered
+         */
+        private Spectator(EventLoop loop, SocketChannel channel) throws IOException {
+            this.loop = loop;
+            this.channel = channel;
+            request = ByteBuffer.allocate(4);
+            frames = new ArrayDeque<ByteBuffer>();
+            key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+            spectator_count.incrementAndGet();
+        }
+        
+        /**
+         * Reads the id of the game to watch, or notices that the spectator
+         * has gone. Anything else the spectator sends is ignored.
+         */
+        private void read() {
+            if(session != null) request.clear();
+            try {
+                if(channel.read(request) < 0) {
+                    close();
+                    return;
+                }
+            } catch(IOException e) {
+                close();
+                return;
+            }
+            if(session != null || request.hasRemaining()) return;
+            session = sessions.get(request.getInt(0));
+            if(session == null) {
+                close();
+            } else if(session.loop == loop) {
+                session.broadcast.subscribe(this, session.engine);
+            } else {
+                // Move over to the EventLoop that runs the game
+                key.cancel();
+                session.loop.watch(this);
+            }
+        }
+        
+        /**
+         * Subscribes to the game, on the thread of the game's EventLoop.
+         */
+        private void attach() {
+            loop = session.loop;
+            if(session.closed) {
+                close();
+                return;
+            }
+            try {
+                key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+            } catch(IOException e) {
+                close();
+                return;
+            }
+            session.broadcast.subscribe(this, session.engine);
+        }
+        
+        @Override
+        public boolean send(ByteBuffer frame) {
+            // Called by the game's SpectatorBroadcast, so a failure here must
+            // not reach the Session
+            try {
+                return queue(frame);
+            } catch(RuntimeException e) {
+                fail(e);
+                return false;
+            }
+        }
+        
+        /**
+         * Adds a frame to the ones waiting to be written, and writes them.
+         * @param frame the frame
+         * @return true if the frame was accepted, false if the Spectator has
+         * been closed
+         */
+        private boolean queue(ByteBuffer frame) {
+            if(closed) return false;
+            if(frames.size() >= MAX_QUEUED_FRAMES) {
+                // Too far behind, so skip ahead to the next keyframe, keeping
+                // a frame that has been partly written
+                ByteBuffer head = frames.peek();
+                frames.clear();
+                if(head.position() > 0) frames.add(head);
+                waiting_for_keyframe = true;
+                spectator_resyncs.increment();
+            }
+            if(waiting_for_keyframe) {
+                if(frame.get(2) != SpectatorBroadcast.KEYFRAME) return true;
+                waiting_for_keyframe = false;
+            }
+            frames.add(frame);
+            if(frames.size() == 1) write();
+            return !closed;
+        }
+        
+        /**
+         * Writes as many of the waiting frames as the connection will take,
+         * and asks to be told when it can take more if any are left.
+         */
+        private void write() {
+            try {
+                while(!frames.isEmpty()) {
+                    ByteBuffer frame = frames.peek();
+                    spectator_bytes.add(channel.write(frame));
+                    if(frame.hasRemaining()) break;
+                    frames.poll();
+                }
+            } catch(IOException e) {
+                close();
+                return;
+            }
+            key.interestOps(frames.isEmpty() ? SelectionKey.OP_READ :
+                SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        
+        /**
+         * Closes the Spectator after an unexpected exception.
+         * @param e the exception
+         */
+        private void fail(RuntimeException e) {
+            recordFailure(e);
+            close();
+        }
+        
+        @Override
+        public void close() {
+            if(closed) return;
+            closed = true;
+            if(session != null) session.broadcast.unsubscribe(this);
+            key.cancel();
+            try {
+                channel.close();
+            } catch(IOException e) {
+                // The connection is gone either way
+            }
+            frames.clear();
+            spectator_count.decrementAndGet();
+        }
+    
+    }
+    
+    /**
+     * A thread that runs the Sessions assigned to it, and the Spectators
+     * watching them. The first EventLoop also accepts new connections and
+     * hands them out to every EventLoop in turn.
+     */
+    private class EventLoop implements Runnable {
+        
+        private Selector selector;
+        private TimerWheel wheel;
+        private ConcurrentLinkedQueue<SocketChannel> pending;
+        private ConcurrentLinkedQueue<Spectator> watchers;
+        private Random random;
+        private Thread thread;
+        
+        /**
+         * Constructor for a new EventLoop, which does not run until its
+         * thread is started.
+         * @param index the number of the EventLoop
+         * @throws IOException if the Selector could not be opened
+         */
+        private EventLoop(int index) throws IOException {
+            selector = Selector.open();
+            wheel = new TimerWheel(WHEEL_SLOTS, WHEEL_TICK_NANOS, System.nanoTime());
+            pending = new ConcurrentLinkedQueue<SocketChannel>();
+            watchers = new ConcurrentLinkedQueue<Spectator>();
+            random = new Random();
+            thread = new Thread(this, "TetrisServer-" + index);
+            thread.setDaemon(true);
+        }
+        
+        /**
+         * Hands a new connection to this EventLoop from any thread.
+         * @param channel the connection
+         */
+        private void add(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+        
+        /**
+         * Hands a Spectator to this EventLoop from any thread, to watch one
+         * of this EventLoop's games.
+         * @param spectator the Spectator
+         */
+        private void watch(Spectator spectator) {
+            watchers.add(spectator);
+            selector.wakeup();
+        }
+        
+        /**
+         * Handles one ready key. An exception from a Session or Spectator
+         * closes only that connection, and the loop goes on with the rest.
+         * @param key the ready SelectionKey
+         */
+        private void handle(SelectionKey key) {
+            if(key.attachment() instanceof Session) {
+                Session session = (Session) key.attachment();
+                try {
+                    if(key.isWritable()) session.send();
+                    if(key.isValid() && key.isReadable()) session.read();
+                } catch(RuntimeException e) {
+                    session.fail(e);
+                }
+            } else if(key.attachment() instanceof Spectator) {
+                Spectator spectator = (Spectator) key.attachment();
+                try {
+                    if(key.isWritable()) spectator.write();
+                    if(key.isValid() && key.isReadable()) spectator.read();
+                } catch(RuntimeException e) {
+                    spectator.fail(e);
+                }
+            } else {
+                try {
+                    accept((ServerSocketChannel) key.channel());
+                } catch(RuntimeException e) {
+                    recordFailure(e);
+                }
+            }
+        }
+        
+        /**
+         * The body of the EventLoop's thread. It waits for the sockets until
+         * the next tick of the TimerWheel, then runs any gravity ticks due.
+         */
+        @Override
+        public void run() {
+            while(running) {
+                try {
+                    long wait = wheel.nanosUntilNextTick(System.nanoTime());
+                    long millis = (wait + 999999) / 1000000;
+                    if(millis == 0) selector.selectNow();
+                    else selector.select(millis);
+                } catch(IOException e) {
+                    System.out.println(e.getMessage());
+                    e.printStackTrace();
+                    break;
+                }
+                SocketChannel channel;
+                while((channel = pending.poll()) != null) {
+                    try {
+                        channel.configureBlocking(false);
+                        new Session(this, channel);
+                    } catch(IOException e) {
+                        System.out.println(e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+                Spectator spectator;
+                while((spectator = watchers.poll()) != null) {
+                    try {
+                        spectator.attach();
+                    } catch(RuntimeException e) {
+                        spectator.fail(e);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while(keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if(key.isValid()) handle(key);
+                }
+                // Each Session guards its own gravity tick
+                wheel.advance(System.nanoTime());
+            }
+            for(SelectionKey key : selector.keys()) {
+                if(key.attachment() instanceof Session) {
+                    ((Session) key.attachment()).close();
+                } else if(key.attachment() instanceof Spectator) {
+                    ((Spectator) key.attachment()).close();
+                }
+            }
+            try {
+                selector.close();
+            } catch(IOException e) {
+                System.out.println(e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    
+    }
+    
+    private ServerSocketChannel server, spectator_server;
+    private EventLoop[] loops;
+    private int next_loop;
+    private volatile boolean running;
+    private ConcurrentHashMap<Integer, Session> sessions;
+    private AtomicInteger next_id, session_count, spectator_count;
+    private LongAdder ticks, inputs, bytes_sent, slow_clients, failures;
+    private LongAdder spectator_bytes, spectator_resyncs;
+    private LatencyHistogram tick_latency;
+    private long start_heap;
+    
+    /**
+     * Constructor for a new TetrisServer, which listens for connections
+     * right away but does not accept them until start() is called.
+     * @param port the port to listen on, or 0 for any free port
+     * @param spectator_port the port to listen on for spectators, or 0 for
+     * any free port
+     * @param threads the number of EventLoops to run
+     * @throws IOException if a port could not be opened
+     */
+    public TetrisServer(int port, int spectator_port, int threads) throws IOException {
+        // Check for valid parameters
+        if(port < 0 || port > 0xFFFF || spectator_port < 0 ||
+            spectator_port > 0xFFFF || threads < 1) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        sessions = new ConcurrentHashMap<Integer, Session>();
+        next_id = new AtomicInteger();
+        session_count = new AtomicInteger();
+        spectator_count = new AtomicInteger();
+        spectator_bytes = new LongAdder();
+        spectator_resyncs = new LongAdder();
+        ticks = new LongAdder();
+        inputs = new LongAdder();
+        bytes_sent = new LongAdder();
+        slow_clients = new LongAdder();
+        failures = new LongAdder();
+        tick_latency = new LatencyHistogram();
+        start_heap = getHeapUsed();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port), BACKLOG);
+        server.configureBlocking(false);
+        loops = new EventLoop[threads];
+        for(int i = 0; i < threads; i++) loops[i] = new EventLoop(i);
+        server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        spectator_server = ServerSocketChannel.open();
+        spectator_server.bind(new InetSocketAddress(spectator_port), BACKLOG);
+        spectator_server.configureBlocking(false);
+        spectator_server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+    }
+    
+    /**
+     * Starts the EventLoops.
+     */
+    public void start() {
+        running = true;
+        for(EventLoop loop : loops) loop.thread.start();
+    }
+    
+    /**
+     * Accepts every waiting connection, on the first EventLoop's thread.
+     * Players are handed out to the EventLoops in turn, while spectators
+     * stay on the first EventLoop until they say which game to watch.
+     * @param listener the ServerSocketChannel with connections waiting
+     */
+    private void accept(ServerSocketChannel listener) {
+        try {
+            SocketChannel channel;
+            while((channel = listener.accept()) != null) {
+                channel.socket().setTcpNoDelay(true);
+                if(listener == spectator_server) {
+                    channel.configureBlocking(false);
+                    new Spectator(loops[0], channel);
+                    continue;
+                }
+                loops[next_loop].add(channel);
+                next_loop = (next_loop + 1) % loops.length;
+            }
+        } catch(IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Stops the EventLoops, disconnecting every client, and closes the port.
+     */
+    public void close() {
+        running = false;
+        for(EventLoop loop : loops) {
+            loop.selector.wakeup();
+            try {
+                loop.thread.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            server.close();
+            spectator_server.close();
+        } catch(IOException e) {
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Get the port the server is listening on.
+     * @return the port
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+    
+    /**
+     * Get the port the server is listening on for spectators.
+     * @return the port
+     */
+    public int getSpectatorPort() {
+        return spectator_server.socket().getLocalPort();
+    }
+    
+    /**
+     * Get the number of spectators connected.
+     * @return the number of spectators
+     */
+    public int getSpectatorCount() {
+        return spectator_count.get();
+    }
+    
+    /**
+     * Get the number of games being played.
+     * @return the number of connected clients
+     */
+    public int getSessionCount() {
+        return session_count.get();
+    }
+    
+    /**
+     * Get the gravity ticks run so far, across every game.
+     * @return the number of ticks
+     */
+    public long getTicks() {
+        return ticks.sum();
+    }
+    
+    /**
+     * Get the lateness of the gravity ticks, from when each tick was due until
+     * it had been applied to its game.
+     * @return a summary of the tick latency
+     */
+    public LatencyHistogram.Summary getTickLatency() {
+        return tick_latency.getSummary();
+    }
+    
+    /**
+     * Get the growth of the heap since the server started, shared out over
+     * the games being played. This includes garbage that has not yet been
+     * collected, so it is only an upper bound on the memory of one game.
+     * @return the bytes of heap per game, or 0 if there are no games
+     */
+    public long getHeapPerSession() {
+        int sessions = getSessionCount();
+        return sessions == 0 ? 0 : Math.max(0, getHeapUsed() - start_heap) / sessions;
+    }
+    
+    /**
+     * Get the bytes of heap in use.
+     * @return the bytes in use
+     */
+    private static long getHeapUsed() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+    
+    /**
+     * Counts a Session or Spectator that failed with an unexpected exception,
+     * printing the stack trace of the first one.
+     * @param e the exception
+     */
+    private void recordFailure(RuntimeException e) {
+        if(failures.sum() == 0) e.printStackTrace();
+        failures.increment();
+    }
+    
+    /**
+     * Get a summary of the server's activity.
+     * @return the summary
+     */
+    public String getReport() {
+        return String.format("sessions %d, ticks %d, inputs %d, bytes sent %d, " +
+            "slow clients %d, failures %d, heap per session %d bytes%n  " +
+            "spectators %d, spectator bytes sent %d, spectator resyncs %d%n  " +
+            "tick latency: %s",
+            getSessionCount(), getTicks(), inputs.sum(), bytes_sent.sum(),
+            slow_clients.sum(), failures.sum(), getHeapPerSession(),
+            getSpectatorCount(), spectator_bytes.sum(), spectator_resyncs.sum(),
+            getTickLatency());
+    }
+    
+    /**
+     * Runs a TetrisServer until the process is ended, printing a report
+     * periodically.
+     * @param args the port, the spectator port, the number of EventLoops, and
+     * the seconds between reports
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int spectator_port = args.length > 1 ? Integer.parseInt(args[1]) :
+            DEFAULT_PORT + 1;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) :
+            Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        TetrisServer server = new TetrisServer(port, spectator_port, threads);
+        server.start();
+        System.out.println("Listening on port " + server.getPort() +
+            ", spectators on port " + server.getSpectatorPort());
+        while(true) {
+            Thread.sleep(seconds * 1000L);
+            System.out.println(server.getReport());
+        }
+    }
+    
+    /**
+     * Test routine. Starts a TetrisServer on a free port of this machine and
+     * plays games on it from many simulated clients over loopback. Each client
+     * uses two file descriptors in this process, so for the largest runs start
+     * the server and the TetrisLoadClient in separate processes.
+     * @param clients the number of clients
+     * @param seconds how long to play for
+     */
+    public static void testTetrisServer(int clients, int seconds)
+        throws IOException, InterruptedException {
+        TetrisServer server = new TetrisServer(0, 0,
+            Runtime.getRuntime().availableProcessors());
+        server.start();
+        TetrisLoadClient load = new TetrisLoadClient("localhost", server.getPort(), clients);
+        load.run(seconds);
+        System.out.println("Server: " + server.getReport());
+        System.out.println("Clients: " + load.getReport());
+        load.close();
+        server.close();
+    }
+
+}
@@ -0,0 +1,247 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Plays many independent games of Tetris without any user interface, spread
+ * across every processor with a ForkJoinPool, and reports how fast they were
+ * played. Each game is driven by an InputPolicy, and both the policy and the
+ * TetriminoBag are seeded separately for every game, so the same command line
+ * always plays the same set of games.
+ * 
+ * Usage: java TetrisSimulator [games] [policy class] [seed] [max pieces]
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TetrisSimulator {
+    
+    private static final int GAMES_PER_TASK = 16;
+    private static final int MAX_INPUTS_PER_TICK = 64;
+    
+    /**
+     * The combined results of playing one or more games.
+     */
+    public static class Result {
+        
+        public int games, tetriminos_dropped, single_lines_cleared,
+            double_lines_cleared, triple_lines_cleared, tetris_cleared;
+        public long total_score;
+        public int max_score;
+        
+        /**
+         * The nanoseconds spent on each Tetrimino, from the moment it appeared
+         * until the next Tetrimino appeared. Only the first piece_count
+         * entries are used.
+         */
+        public long[] piece_nanos = new long[1024];
+        public int piece_count;
+        
+        /**
+         * Records the time spent on one Tetrimino.
+         * @param nanos the nanoseconds spent
+         */
+        private void addPiece(long nanos) {
+            if(piece_count == piece_nanos.length) {
+                piece_nanos = Arrays.copyOf(piece_nanos, 2 * piece_count);
+            }
+            piece_nanos[piece_count++] = nanos;
+        }
+        
+        /**
+         * Adds the results of another set of games to these results.
+         * @param other the Result to add
+         */
+        private void merge(Result other) {
+            games += other.games;
+            tetriminos_dropped += other.tetriminos_dropped;
+            single_lines_cleared += other.single_lines_cleared;
+            double_lines_cleared += other.double_lines_cleared;
+            triple_lines_cleared += other.triple_lines_cleared;
+            tetris_cleared += other.tetris_cleared;
+            total_score += other.total_score;
+            max_score = Math.max(max_score, other.max_score);
+            if(piece_count + other.piece_count > piece_nanos.length) {
+                piece_nanos = Arrays.copyOf(piece_nanos, piece_count + other.piece_count);
+            }
+            System.arraycopy(other.piece_nanos, 0, piece_nanos, piece_count, other.piece_count);
+            piece_count += other.piece_count;
+        }
+        
+        /**
+         * Get a percentile of the time spent per Tetrimino. The piece times
+         * must already be sorted.
+         * @param percentile the percentile, from 0 to 100
+         * @return the nanoseconds per Tetrimino at that percentile
+         */
+        public long getPercentile(double percentile) {
+            if(piece_count == 0) return 0;
+            int index = (int) Math.ceil(percentile / 100 * piece_count) - 1;
+            return piece_nanos[Math.max(0, Math.min(index, piece_count - 1))];
+        }
+    
+    }
+    
+    /**
+     * Plays a range of games, splitting the range in half until it is small
+     * enough to play on a single thread.
+     */
+    private static class GameTask extends RecursiveTask<Result> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private Class<? extends InputPolicy> policy;
+        private long seed;
+        private int first, last, max_pieces;
+        
+        GameTask(Class<? extends InputPolicy> policy, long seed, int first,
+            int last, int max_pieces) {
+            this.policy = policy;
+            this.seed = seed;
+            this.first = first;
+            this.last = last;
+            this.max_pieces = max_pieces;
+        }
+        
+        @Override
+        protected Result compute() {
+            if(last - first > GAMES_PER_TASK) {
+                int middle = (first + last) >>> 1;
+                GameTask left = new GameTask(policy, seed, first, middle, max_pieces);
+                GameTask right = new GameTask(policy, seed, middle, last, max_pieces);
+                left.fork();
+                Result result = right.compute();
+                result.merge(left.join());
+                return result;
+            }
+            Result result = new Result();
+            InputPolicy p;
+            try {
+                p = policy.getDeclaredConstructor().newInstance();
+            } catch(ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Invalid policy!", e);
+            }
+            GameEngine engine = new GameEngine();
+            for(int game = first; game < last; game++) {
+                playGame(engine, p, seed + game, max_pieces, result);
+            }
+            return result;
+        }
+    
+    }
+    
+    /**
+     * Plays a single game until the well overflows or the maximum number of
+     * Tetriminos have been dropped.
+     * @param engine the GameEngine to play on
+     * @param policy the InputPolicy that decides the inputs
+     * @param seed the seed for this game
+     * @param max_pieces the maximum number of Tetriminos to drop
+     * @param result the Result to record the game in
+     */
+    private static void playGame(GameEngine engine, InputPolicy policy,
+        long seed, int max_pieces, Result result) {
+        engine.reset(seed);
+        policy.reset(seed);
+        TetrisModel model = engine.getModel();
+        int pieces = model.getTetriminosDropped();
+        int inputs = 0;
+        long piece_start = System.nanoTime();
+        while(!engine.isGameOver() && pieces <= max_pieces) {
+            GameEngine.Input input = policy.nextInput(engine);
+            if(input == null || inputs == MAX_INPUTS_PER_TICK) {
+                engine.tick();
+                inputs = 0;
+            } else {
+                engine.step(input);
+                inputs++;
+            }
+            if(model.getTetriminosDropped() != pieces) {
+                long now = System.nanoTime();
+                result.addPiece(now - piece_start);
+                piece_start = now;
+                pieces = model.getTetriminosDropped();
+            }
+        }
+        int score = engine.getScore();
+        result.games++;
+        result.tetriminos_dropped += model.getTetriminosDropped();
+        result.single_lines_cleared += model.getSingleLinesCleared();
+        result.double_lines_cleared += model.getDoubleLinesCleared();
+        result.triple_lines_cleared += model.getTripleLinesCleared();
+        result.tetris_cleared += model.getTetrisCleared();
+        result.total_score += score;
+        result.max_score = Math.max(result.max_score, score);
+    }
+    
+    /**
+     * Plays a batch of games in parallel.
+     * @param pool the ForkJoinPool to play the games on
+     * @param policy the InputPolicy class that decides the inputs
+     * @param seed the seed for the first game, incremented for each game
+     * @param games the number of games to play
+     * @param max_pieces the maximum number of Tetriminos to drop per game
+     * @return the combined Result for all of the games
+     */
+    public static Result simulate(ForkJoinPool pool,
+        Class<? extends InputPolicy> policy, long seed, int games, int max_pieces) {
+        Result result = pool.invoke(new GameTask(policy, seed, 0, games, max_pieces));
+        Arrays.sort(result.piece_nanos, 0, result.piece_count);
+        return result;
+    }
+    
+    /**
+     * Prints a report of the results of a batch of games.
+     * @param result the Result to report
+     * @param nanos the nanoseconds taken to play the games
+     * @param threads the number of threads used
+     */
+    private static void printReport(Result result, long nanos, int threads) {
+        double seconds = nanos / 1e9;
+        int clears = result.single_lines_cleared + result.double_lines_cleared +
+            result.triple_lines_cleared + result.tetris_cleared;
+        System.out.println(String.format("Games:          %d on %d threads in %.3f s",
+            result.games, threads, seconds));
+        System.out.println(String.format("Games/sec:      %.1f", result.games / seconds));
+        System.out.println(String.format("Pieces/sec:     %.1f", result.tetriminos_dropped / seconds));
+        System.out.println(String.format("Piece latency:  p50 %d ns, p90 %d ns, p99 %d ns, p99.9 %d ns, max %d ns",
+            result.getPercentile(50), result.getPercentile(90),
+            result.getPercentile(99), result.getPercentile(99.9),
+            result.getPercentile(100)));
+        System.out.println(String.format("Line clears:    single %d, double %d, triple %d, tetris %d",
+            result.single_lines_cleared, result.double_lines_cleared,
+            result.triple_lines_cleared, result.tetris_cleared));
+        if(clears > 0) {
+            System.out.println(String.format("Clear mix:      single %.1f%%, double %.1f%%, triple %.1f%%, tetris %.1f%%",
+                100.0 * result.single_lines_cleared / clears,
+                100.0 * result.double_lines_cleared / clears,
+                100.0 * result.triple_lines_cleared / clears,
+                100.0 * result.tetris_cleared / clears));
+        }
+        System.out.println(String.format("Total lines:    %d",
+            TetrisScoring.getLines(result.single_lines_cleared,
+            result.double_lines_cleared, result.triple_lines_cleared,
+            result.tetris_cleared)));
+        System.out.println(String.format("Score:          mean %.1f, max %d",
+            (double) result.total_score / Math.max(1, result.games), result.max_score));
+    }
+    
+    /**
+     * Runs the simulator from the command line.
+     * @param args the number of games, the InputPolicy class name, the seed,
+     *        and the maximum number of Tetriminos per game, all optional
+     */
+    public static void main(String[] args) throws ClassNotFoundException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        String policy_name = args.length > 1 ? args[1] : "RandomInputPolicy";
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        int max_pieces = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        Class<? extends InputPolicy> policy =
+            Class.forName(policy_name).asSubclass(InputPolicy.class);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        Result result = simulate(pool, policy, seed, games, max_pieces);
+        printReport(result, System.nanoTime() - start, pool.getParallelism());
+    }
+
+}
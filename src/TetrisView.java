@@ -2,8 +2,6 @@
 import java.awt.*;
 import javax.swing.*;
 import java.awt.event.*;
-import java.util.List;
-import java.util.ArrayList;
 
 /**
  * This class is the view for the Tetris game. 
@@ -25,6 +23,41 @@ public class TetrisView {
     private static final Color HIGHLIGHTED_BLOCK_COLOR = Color.WHITE;
     private static final Color HIGHLIGHTED_BLOCK_OUTLINE_COLOR = Color.BLACK;
     
+    /**
+     * The Color of each Tetrimino symbol, indexed by the symbol. Uppercase
+     * letters are for regular Tetriminos and lowercase letters are for ghost
+     * images. The ghost colors are translucent.
+     */
+    private static final Color[] SYMBOL_COLORS = new Color[128];
+    static {
+        // Regular piece colors
+        SYMBOL_COLORS['I'] = Color.CYAN;
+        SYMBOL_COLORS['J'] = Color.BLUE;
+        SYMBOL_COLORS['L'] = Color.ORANGE;
+        SYMBOL_COLORS['O'] = Color.YELLOW;
+        SYMBOL_COLORS['S'] = Color.GREEN;
+        SYMBOL_COLORS['T'] = Color.MAGENTA;
+        SYMBOL_COLORS['Z'] = Color.RED;
+        // Ghost piece colors
+        SYMBOL_COLORS['i'] = new Color(0.0f, 1.0f, 1.0f, 0.25f); //Color.CYAN;
+        SYMBOL_COLORS['j'] = new Color(0.0f, 0.0f, 1.0f, 0.35f); //Color.BLUE;
+        SYMBOL_COLORS['l'] = new Color(1.0f, 0.6f, 0.0f, 0.25f); //Color.ORANGE;
+        SYMBOL_COLORS['o'] = new Color(1.0f, 1.0f, 0.0f, 0.25f); //Color.YELLOW;
+        SYMBOL_COLORS['s'] = new Color(0.0f, 1.0f, 0.0f, 0.25f); //Color.GREEN;
+        SYMBOL_COLORS['t'] = new Color(1.0f, 0.0f, 1.0f, 0.25f); //Color.MAGENTA;
+        SYMBOL_COLORS['z'] = new Color(1.0f, 0.0f, 0.0f, 0.25f); //Color.RED;
+    }
+    
+    /**
+     * Indexes into the BlockPalette of the Tetris well. The Tetrimino and ghost
+     * entries are followed by one entry for each TetriminoShape, in order.
+     */
+    private static final int EMPTY_BLOCK = 0;
+    private static final int HIDDEN_BLOCK = 1;
+    private static final int TETRIMINO_BLOCK = 2;
+    private static final int GHOST_BLOCK = TETRIMINO_BLOCK + 7;
+    private static final BlockPalette WELL_PALETTE = createWellPalette();
+    
     private TetrisController controller;
     private BlockGridPanel holdGrid;
     private BlockGridPanel nextGrid;
@@ -37,6 +70,8 @@ public class TetrisView {
     private JButton quitButton;
     private JButton pauseButton;
     private JButton startButton;
+    private ModifyBlockBuffer blockList = createBlockList();
+    private TetrisEventQueue pending = new TetrisEventQueue(64);
 
     /**
      * Constructor builds the user interface for the Tetris game.
@@ -96,6 +131,7 @@ public class TetrisView {
         JPanel tetrisGridContainer = new JPanel();
         tetrisGrid = new BlockGridPanel(GRID_HEIGHT, GRID_WIDTH, BLOCK_SIZE);
         tetrisGrid.setBackground(TETRIS_BACKGROUND_COLOR);
+        tetrisGrid.setMetrics(controller.getMetrics());
         tetrisGridContainer.add(tetrisGrid);
         viewPanel.add(tetrisGridContainer, BorderLayout.CENTER);
         
@@ -188,7 +224,10 @@ public class TetrisView {
             
             @Override
             public void keyPressed(KeyEvent e) {
+                TetrisMetrics metrics = controller.getMetrics();
+                metrics.beginInput();
                 controller.processInput(e.getKeyCode());
+                metrics.endInput();
             }
         
         });
@@ -204,12 +243,14 @@ public class TetrisView {
     public void resetView() {
         holdGrid.clearBlockGrid(null, null);
         nextGrid.clearBlockGrid(null, null);
+        tetrisGrid.beginUpdate();
         tetrisGrid.clearBlockGrid(null, EMPTY_BLOCK_OUTLINE_COLOR);
         for(int r = 0; r < 4; r++) {
             for(int c = 0; c < GRID_WIDTH; c++) {
                 tetrisGrid.paintBlock(r, c, null, null);
             }
         }
+        tetrisGrid.endUpdate();
     }
     
     /**
@@ -284,105 +325,175 @@ public class TetrisView {
      * @param symbol a character representing the shape
      * @return the Color to use for displaying the shape
      */
-    private Color getSymbolColor(char symbol) {
-        switch(symbol) {
-        // Regular piece colors
-            case 'I': return Color.CYAN;
-            case 'J': return Color.BLUE;
-            case 'L': return Color.ORANGE;
-            case 'O': return Color.YELLOW;
-            case 'S': return Color.GREEN;
-            case 'T': return Color.MAGENTA;
-            case 'Z': return Color.RED;
-        // Ghost piece colors
-            case 'i': return new Color(0.0f, 1.0f, 1.0f, 0.25f); //Color.CYAN;
-            case 'j': return new Color(0.0f, 0.0f, 1.0f, 0.35f); //Color.BLUE;
-            case 'l': return new Color(1.0f, 0.6f, 0.0f, 0.25f); //Color.ORANGE;
-            case 'o': return new Color(1.0f, 1.0f, 0.0f, 0.25f); //Color.YELLOW;
-            case 's': return new Color(0.0f, 1.0f, 0.0f, 0.25f); //Color.GREEN;
-            case 't': return new Color(1.0f, 0.0f, 1.0f, 0.25f); //Color.MAGENTA;
-            case 'z': return new Color(1.0f, 0.0f, 0.0f, 0.25f); //Color.RED;
+    private static Color getSymbolColor(char symbol) {
         // Empty piece color
-            default: return null;
+        if(symbol >= SYMBOL_COLORS.length) return null;
+        return SYMBOL_COLORS[symbol];
+    }
+    
+    /**
+     * Creates the BlockPalette used to paint the Tetris well: empty blocks,
+     * hidden blocks above the well, and the Tetrimino and ghost image blocks
+     * for each TetriminoShape.
+     * @return the new BlockPalette
+     */
+    private static BlockPalette createWellPalette() {
+        Color[] fill_colors = new Color[GHOST_BLOCK + 7];
+        Color[] draw_colors = new Color[GHOST_BLOCK + 7];
+        draw_colors[EMPTY_BLOCK] = EMPTY_BLOCK_OUTLINE_COLOR;
+        for(int shape = 0; shape < 7; shape++) {
+            char symbol = Tetrimino.getSymbol(shape);
+            fill_colors[TETRIMINO_BLOCK + shape] = getSymbolColor(symbol);
+            draw_colors[TETRIMINO_BLOCK + shape] = TETRIMINO_OUTLINE_COLOR;
+            fill_colors[GHOST_BLOCK + shape] =
+                getSymbolColor(Character.toLowerCase(symbol));
+            draw_colors[GHOST_BLOCK + shape] = EMPTY_BLOCK_OUTLINE_COLOR;
         }
+        return new BlockPalette(fill_colors, draw_colors);
     }
     
     /**
      * Displays the given Tetrimino shape on the specified BlockGridPanel.
      * Used for updating the hold piece and next piece displays.
-     * @param t the Tetrimino to display
+     * @param shape the ordinal of the TetriminoShape to display
+     * @param rotation the ordinal of the TetriminoRotation to display
      * @param grid the BlockGridPanel where the Tetrimino should be displayed
      */
-    private void drawPieceOnGrid(Tetrimino t, BlockGridPanel grid) {
+    private static void drawPieceOnGrid(int shape, int rotation, BlockGridPanel grid) {
+        Color color = getSymbolColor(Tetrimino.getSymbol(shape));
+        grid.beginUpdate();
         for(int r = 0; r < 4; r++) {
+            int row_mask = Tetrimino.getRowMask(shape, rotation, r);
             for(int c = 0; c < 4; c++) {
-                if(t.hasCoordinates(r, c)) {
-                    grid.paintBlock(r, c, getSymbolColor(t.getSymbol()),
-                    TETRIMINO_OUTLINE_COLOR);
+                if((row_mask & (1 << c)) != 0) {
+                    grid.paintBlock(r, c, color, TETRIMINO_OUTLINE_COLOR);
                 } else {
                     grid.paintBlock(r, c, null, null);
                 }
             }
         }
+        grid.endUpdate();
+    }
+    
+    /**
+     * Creates a ModifyBlockBuffer for the changes to the Tetris well, using
+     * the colors of the well.
+     * @return the new ModifyBlockBuffer
+     */
+    static ModifyBlockBuffer createBlockList() {
+        return new ModifyBlockBuffer(WELL_PALETTE, 64);
     }
         
     /**
-     * This method is called by the TetrisController's Timer, letting the
-     * TetrisView know when it is time to check the Queue for messages from
-     * the TetrisModel about blocks that need to be changed on the display.
+     * This method is called by the TetrisController on the event dispatch
+     * thread each time a frame is presented, letting the TetrisView know when
+     * it is time to check the Queue for events from the TetrisModel about
+     * blocks that need to be changed on the display.
      */
     public void update() {
-        List blockList = new ArrayList<ModifyBlock>();
-        ClearLines cl = null;
-        HighlightLines hl = null;
-        // Process all of the messages in the TetrisController's Queue
-        while(controller.queueHasNext()) {
-            Object queueObject = controller.queueRemove();
-            if(queueObject instanceof HoldTetrimino) {
-                // Update the hold piece
-                drawPieceOnGrid(((HoldTetrimino) queueObject).hold, holdGrid);
-            }
-            if(queueObject instanceof NextTetrimino) {
-                // Update the next piece
-                drawPieceOnGrid(((NextTetrimino) queueObject).next, nextGrid);
-            }
-            if(queueObject instanceof GhostTetrimino) {
-                // Update the ghost image
-                GhostTetrimino gt = (GhostTetrimino) queueObject;
-                for(int i = 0; i < 4; i++) {
-                    ModifyBlock mb =
-                        new ModifyBlock(gt.row + gt.coords[i][0], gt.column + gt.coords[i][1],
-                        getSymbolColor(gt.symbol), EMPTY_BLOCK_OUTLINE_COLOR);
-                    blockList.add(mb);
-                }
-            }
-            if(queueObject instanceof DisplayTetrimino) {
-                // Update the current Tetrimino
-                DisplayTetrimino dt = (DisplayTetrimino) queueObject;
-                for(int i = 0; i < 4; i++) {
-                    ModifyBlock mb =
-                        new ModifyBlock(dt.row + dt.coords[i][0], dt.column + dt.coords[i][1],
-                        getSymbolColor(dt.symbol), TETRIMINO_OUTLINE_COLOR);
-                    blockList.add(mb);
-                }
-            }
-            if(queueObject instanceof EraseTetrimino) {
-                // Erase a Tetrimino that has moved
-                EraseTetrimino et = (EraseTetrimino) queueObject;
-                for(int i = 0; i < 4; i++) {
-                    ModifyBlock mb =
-                        new ModifyBlock(et.row + et.coords[i][0], et.column + et.coords[i][1],
-                        null, ((et.row + et.coords[i][0]) < 4) ? null : EMPTY_BLOCK_OUTLINE_COLOR);
-                    blockList.add(mb);
-                }
-            }
-            if(queueObject instanceof HighlightLines) {
-                // Save for now, process after the Queue is empty
-                hl = (HighlightLines) queueObject;
+        long start = System.nanoTime();
+        TetrisFlightEvents.QueueDrain drain = new TetrisFlightEvents.QueueDrain();
+        drain.begin();
+        int drained = drainEvents(controller.getQueue(), controller, pending,
+            blockList, holdGrid, nextGrid, tetrisGrid);
+        int clear_lines = drained & 0xF;
+        if(clear_lines != 0) {
+            // play sound effect
+            if (Integer.bitCount(clear_lines) <= 3) {
+            	controller.playCL();
+            } else {
+            	controller.playTetris();
             }
-            if(queueObject instanceof ClearLines) {
-                // Save for now, process after the Queue is empty
-                cl = (ClearLines) queueObject;
+        }
+        controller.getMetrics().recordQueueDrain(start);
+        if(drain.shouldCommit()) {
+            drain.events = drained >>> 4;
+            drain.blocks = blockList.size();
+            drain.lines_cleared = Integer.bitCount(clear_lines);
+            drain.commit();
+        }
+    }
+    
+    /**
+     * Removes all of the events from a Queue and shows them on the grids of
+     * the display. The events are moved out of the Queue at once while
+     * holding its lock, and shown after the lock is let go, so the model is
+     * never kept waiting on the display. The changes to the well are gathered
+     * in a ModifyBlockBuffer and painted at once, after any lines are cleared.
+     * This is the work update() does each frame, and it needs no JFrame, so
+     * that it can be measured on its own.
+     * @param queue the TetrisEventQueue to drain
+     * @param lock the object whose lock guards the queue
+     * @param pending the TetrisEventQueue the events are moved to, which
+     * only the caller uses
+     * @param blockList the ModifyBlockBuffer for the changes to the well,
+     * created by createBlockList()
+     * @param holdGrid the BlockGridPanel of the hold piece
+     * @param nextGrid the BlockGridPanel of the next piece
+     * @param tetrisGrid the BlockGridPanel of the Tetris well
+     * @return the number of events removed, shifted left by 4, combined with
+     * the bit pattern of the lines that were cleared
+     */
+    static int drainEvents(TetrisEventQueue queue, Object lock,
+        TetrisEventQueue pending, ModifyBlockBuffer blockList,
+        BlockGridPanel holdGrid, BlockGridPanel nextGrid,
+        BlockGridPanel tetrisGrid) {
+        blockList.clear();
+        int event_count = 0;
+        int clear_row = 0, clear_lines = 0;
+        int highlight_row = 0, highlight_lines = 0;
+        synchronized(lock) {
+            queue.transferTo(pending);
+        }
+        // Process all of the events in the TetrisController's Queue
+        while(pending.hasNext()) {
+            int event = pending.remove();
+            event_count++;
+            int row = TetrisEventQueue.getRow(event);
+            int column = TetrisEventQueue.getColumn(event);
+            int shape = TetrisEventQueue.getShape(event);
+            int rotation = TetrisEventQueue.getRotation(event);
+            int[][] coords = Tetrimino.getCoordinates(shape, rotation);
+            switch(TetrisEventQueue.getOpcode(event)) {
+                case TetrisEventQueue.HOLD:
+                    // Update the hold piece
+                    drawPieceOnGrid(shape, rotation, holdGrid);
+                    break;
+                case TetrisEventQueue.NEXT:
+                    // Update the next piece
+                    drawPieceOnGrid(shape, rotation, nextGrid);
+                    break;
+                case TetrisEventQueue.GHOST:
+                    // Update the ghost image
+                    for(int i = 0; i < 4; i++) {
+                        blockList.add(row + coords[i][0], column + coords[i][1],
+                            GHOST_BLOCK + shape);
+                    }
+                    break;
+                case TetrisEventQueue.DISPLAY:
+                    // Update the current Tetrimino
+                    for(int i = 0; i < 4; i++) {
+                        blockList.add(row + coords[i][0], column + coords[i][1],
+                            TETRIMINO_BLOCK + shape);
+                    }
+                    break;
+                case TetrisEventQueue.ERASE:
+                    // Erase a Tetrimino that has moved
+                    for(int i = 0; i < 4; i++) {
+                        blockList.add(row + coords[i][0], column + coords[i][1],
+                            ((row + coords[i][0]) < 4) ? HIDDEN_BLOCK : EMPTY_BLOCK);
+                    }
+                    break;
+                case TetrisEventQueue.HIGHLIGHT:
+                    // Save for now, process after the Queue is empty
+                    highlight_row = row;
+                    highlight_lines = TetrisEventQueue.getLines(event);
+                    break;
+                case TetrisEventQueue.CLEAR:
+                    // Save for now, process after the Queue is empty
+                    clear_row = row;
+                    clear_lines = TetrisEventQueue.getLines(event);
+                    break;
             }
         }
         /*
@@ -390,35 +501,28 @@ public class TetrisView {
             If there are lines to clear, clear those lines first and then take
             care of the block list afterward.
         */
-        if(cl == null) tetrisGrid.paintBlockList(blockList);
-        else {
-            for(int r = 3; r >= 0; r--) {
-                if(cl.clear_line[r]) {
-                    tetrisGrid.removeRow(cl.first_line + r);
+        tetrisGrid.beginUpdate();
+        if(clear_lines != 0) {
+            // Clear from the top down, so the rows below keep their indices
+            for(int r = 0; r < 4; r++) {
+                if((clear_lines & (1 << r)) != 0) {
+                    tetrisGrid.clearRow(clear_row + r, 4, null, EMPTY_BLOCK_OUTLINE_COLOR);
                 }
             }
-            for(int i = 0; i < cl.line_count; i++) {
-                tetrisGrid.addNewRow(4, null, EMPTY_BLOCK_OUTLINE_COLOR);
-            }
-            tetrisGrid.paintBlockList(blockList);
-            // play sound effect
-            if (cl.line_count <= 3) {
-            	controller.playCL();
-            } else {
-            	controller.playTetris();
-            }
         }
+        tetrisGrid.paintBlockList(blockList);
         // Highlight the indicated lines (they will be cleared on next update)
-        if(hl != null) {
+        if(highlight_lines != 0) {
             for(int r = 3; r >= 0; r--) {
-                if(hl.highlight_line[r]) {
-                    tetrisGrid.removeRow(hl.first_line + r);
-                    tetrisGrid.addNewRow(hl.first_line + r,
+                if((highlight_lines & (1 << r)) != 0) {
+                    tetrisGrid.paintRow(highlight_row + r,
                         HIGHLIGHTED_BLOCK_COLOR, HIGHLIGHTED_BLOCK_OUTLINE_COLOR);
                 }
             }
-            tetrisGrid.repaint();
         }
+        // Repaint everything that changed on the well at once
+        tetrisGrid.endUpdate();
+        return event_count << 4 | clear_lines;
     }
     
     
@@ -0,0 +1,176 @@
+/**
+ * A hashed timer wheel, which schedules a large number of timers against a
+ * single clock for the price of one array slot per timer. Time is divided
+ * into ticks of a fixed length, and each timer is kept in a doubly linked list
+ * in the slot for the tick it is due in, so scheduling and cancelling a timer
+ * take constant time and nothing is allocated once the Timers exist. Timers
+ * due more than one turn of the wheel away wait in their slot until their
+ * turn comes around.
+ * 
+ * A TimerWheel is not thread safe. It is meant to be advanced by the same
+ * thread that schedules its timers, such as a server's event loop.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TimerWheel {
+    
+    /**
+     * A timer that runs a task once when it expires. A Timer may be scheduled
+     * again after it expires, but only on one TimerWheel at a time.
+     */
+    public static class Timer {
+        
+        private final Runnable task;
+        private long deadline, tick;
+        private Timer next, prev;
+        private boolean scheduled;
+        
+        /**
+         * Constructor for a new Timer, which is not scheduled.
+         * @param task the task to run when the Timer expires
+         */
+        public Timer(Runnable task) {
+            if(task == null) {
+                throw new IllegalArgumentException("Invalid argument!");
+            }
+            this.task = task;
+        }
+        
+        /**
+         * Check to see if the Timer is waiting to expire.
+         * @return true if the Timer is scheduled, false otherwise
+         */
+        public boolean isScheduled() {
+            return scheduled;
+        }
+        
+        /**
+         * Get the time the Timer was last scheduled to expire.
+         * @return the System.nanoTime() of the deadline
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+    
+    }
+    
+    private Timer[] slots;
+    private int mask;
+    private long tick_nanos;
+    private long start;
+    private long current_tick;
+    private int size;
+    
+    /**
+     * Constructor for a new, empty TimerWheel.
+     * @param slots the number of slots, rounded up to a power of 2
+     * @param tick_nanos the nanoseconds in one tick
+     * @param start the System.nanoTime() of the first tick
+     */
+    public TimerWheel(int slots, long tick_nanos, long start) {
+        if(slots < 1 || slots > (1 << 30) || tick_nanos < 1) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        int size = 1;
+        while(size < slots) size <<= 1;
+        this.slots = new Timer[size];
+        this.mask = size - 1;
+        this.tick_nanos = tick_nanos;
+        this.start = start;
+    }
+    
+    /**
+     * Schedules a Timer to expire at a deadline, replacing its old deadline if
+     * it was already scheduled. A deadline that has already passed expires on
+     * the next call to advance().
+     * @param timer the Timer to schedule
+     * @param deadline the System.nanoTime() when the Timer should expire
+     */
+    public void schedule(Timer timer, long deadline) {
+        if(timer.scheduled) cancel(timer);
+        // Round up, so a Timer never expires before its deadline
+        long tick = Math.floorDiv(deadline - start + tick_nanos - 1, tick_nanos);
+        if(tick <= current_tick) tick = current_tick + 1;
+        timer.deadline = deadline;
+        timer.tick = tick;
+        timer.scheduled = true;
+        int slot = (int) tick & mask;
+        timer.prev = null;
+        timer.next = slots[slot];
+        if(timer.next != null) timer.next.prev = timer;
+        slots[slot] = timer;
+        size++;
+    }
+    
+    /**
+     * Stops a Timer from expiring. Nothing happens if it is not scheduled.
+     * @param timer the Timer to cancel
+     */
+    public void cancel(Timer timer) {
+        if(!timer.scheduled) return;
+        if(timer.prev != null) timer.prev.next = timer.next;
+        else slots[(int) timer.tick & mask] = timer.next;
+        if(timer.next != null) timer.next.prev = timer.prev;
+        timer.next = timer.prev = null;
+        timer.scheduled = false;
+        size--;
+    }
+    
+    /**
+     * Moves the wheel forward to the given time, running the task of every
+     * Timer whose tick has passed, in order of their ticks. A task may
+     * schedule its own Timer again, or schedule Timers that are not yet
+     * scheduled.
+     * @param now the current System.nanoTime()
+     * @return the number of Timers that expired
+     */
+    public int advance(long now) {
+        long target = Math.floorDiv(now - start, tick_nanos);
+        int expired = 0;
+        while(current_tick < target) {
+            current_tick++;
+            int slot = (int) current_tick & mask;
+            Timer timer = slots[slot];
+            while(timer != null) {
+                Timer next = timer.next;
+                if(timer.tick <= current_tick) {
+                    cancel(timer);
+                    timer.task.run();
+                    expired++;
+                }
+                timer = next;
+            }
+            // Skip over a long idle stretch instead of visiting every tick
+            if(size == 0) current_tick = Math.max(current_tick, target);
+        }
+        return expired;
+    }
+    
+    /**
+     * Get the nanoseconds until the wheel's next tick, which is the longest
+     * the owner of the wheel can wait before advancing it again.
+     * @param now the current System.nanoTime()
+     * @return the nanoseconds until the next tick
+     */
+    public long nanosUntilNextTick(long now) {
+        return Math.max(0, start + (current_tick + 1) * tick_nanos - now);
+    }
+    
+    /**
+     * Get the number of scheduled Timers.
+     * @return the number of Timers
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Get the nanoseconds in one tick of the wheel.
+     * @return the tick length
+     */
+    public long getTickNanos() {
+        return tick_nanos;
+    }
+
+}
@@ -0,0 +1,295 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of search results keyed by 64 bit hashes, such as the
+ * Zobrist hash of a TetriminoWell, that any number of threads can read and
+ * write at once without locks. It is open addressed: a key can only be
+ * stored in the BUCKET_SIZE slots of its own bucket, and when the bucket is
+ * full the least useful entry is replaced, which is one left over from an
+ * earlier generation if there is one, and otherwise the shallowest.
+ * 
+ * Each entry is a key and a 64 bit data word holding a value, a move, a
+ * depth and the generation it was stored in. The key is stored mixed with
+ * the data, so an entry torn by two threads writing the same slot at once
+ * simply fails to match and counts as a miss. The table counts its probes,
+ * hits and replacements, so that its size can be tuned to the memory each
+ * core can spare.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class TranspositionTable {
+    
+    public static final int BUCKET_SIZE = 4;
+    public static final int MAX_DEPTH = 255;
+    
+    /**
+     * The value returned by probe() when the key is not in the table. Every
+     * entry has its top bit set, so no entry is ever equal to MISS.
+     */
+    public static final long MISS = 0;
+    
+    /**
+     * The number of bytes each entry takes up, for the key and the data.
+     */
+    public static final int ENTRY_BYTES = 16;
+    
+    /**
+     * The layout of the data word, from the lowest bits up: the value as a
+     * float, then the move, the depth, the generation and the bit that marks
+     * an entry as present.
+     */
+    private static final int MOVE_SHIFT = 32;
+    private static final int DEPTH_SHIFT = 48;
+    private static final int GENERATION_SHIFT = 56;
+    private static final int GENERATIONS = 128;
+    private static final long PRESENT = 1L << 63;
+    
+    /**
+     * The keys and data words, two longs to an entry, and the mask that
+     * picks the first entry of a bucket from a key.
+     */
+    private AtomicLongArray entries;
+    private int capacity, bucket_mask;
+    private volatile int generation;
+    
+    /**
+     * Counters for the statistics, which are only ever added to and are
+     * spread across cells so that threads do not fight over them.
+     */
+    private LongAdder probes = new LongAdder();
+    private LongAdder hits = new LongAdder();
+    private LongAdder stores = new LongAdder();
+    private LongAdder replacements = new LongAdder();
+    
+    /**
+     * Constructor for a new TranspositionTable.
+     * @param capacity the number of entries, rounded up to a power of two
+     * that is at least BUCKET_SIZE
+     */
+    public TranspositionTable(int capacity) {
+        if(capacity < 1 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.capacity = Math.max(BUCKET_SIZE, Integer.highestOneBit(capacity - 1) << 1);
+        entries = new AtomicLongArray(2 * this.capacity);
+        bucket_mask = this.capacity - BUCKET_SIZE;
+    }
+    
+    /**
+     * Creates the largest TranspositionTable that fits in a memory budget.
+     * @param bytes the number of bytes the entries may take up
+     * @return the new TranspositionTable
+     */
+    public static TranspositionTable forMemory(long bytes) {
+        long capacity = Math.max(BUCKET_SIZE, Math.min(bytes / ENTRY_BYTES, 1 << 29));
+        return new TranspositionTable((int) Long.highestOneBit(capacity));
+    }
+    
+    /**
+     * Looks a key up in the table.
+     * @param key the 64 bit key
+     * @return the data word of its entry, or MISS if it is not in the table
+     */
+    public long probe(long key) {
+        probes.increment();
+        int first = (int) key & bucket_mask;
+        for(int i = first; i < first + BUCKET_SIZE; i++) {
+            long data = entries.getOpaque(2 * i + 1);
+            if(data != MISS && (entries.getOpaque(2 * i) ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        return MISS;
+    }
+    
+    /**
+     * Stores an entry in the table, in the current generation. An entry with
+     * the same key is always overwritten.
+     * @param key the 64 bit key
+     * @param value the value, which is stored as a float
+     * @param depth the depth the value was searched to, from 0 to MAX_DEPTH
+     * @param move the move found, from 0 to 65535
+     */
+    public void store(long key, double value, int depth, int move) {
+        if(depth < 0 || depth > MAX_DEPTH || (move & ~0xFFFF) != 0) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        int current = generation;
+        long data = PRESENT | (long) current << GENERATION_SHIFT |
+            (long) depth << DEPTH_SHIFT | (long) move << MOVE_SHIFT |
+            (Float.floatToRawIntBits((float) value) & 0xFFFFFFFFL);
+        int first = (int) key & bucket_mask;
+        int victim = first;
+        int victim_worth = Integer.MAX_VALUE;
+        for(int i = first; i < first + BUCKET_SIZE; i++) {
+            long old = entries.getOpaque(2 * i + 1);
+            if(old == MISS || (entries.getOpaque(2 * i) ^ old) == key) {
+                victim = i;
+                victim_worth = -1;
+                break;
+            }
+            // Entries from the current generation are worth keeping over any
+            // older ones, and deeper entries over shallower ones
+            int worth = getDepth(old);
+            if(getGeneration(old) == current) worth += MAX_DEPTH + 1;
+            if(worth < victim_worth) {
+                victim = i;
+                victim_worth = worth;
+            }
+        }
+        if(victim_worth >= 0) replacements.increment();
+        stores.increment();
+        entries.setOpaque(2 * victim, key ^ data);
+        entries.setOpaque(2 * victim + 1, data);
+    }
+    
+    /**
+     * Starts a new generation, after which the entries stored before are the
+     * first to be replaced. A search should call this once per decision.
+     */
+    public void newGeneration() {
+        generation = (generation + 1) % GENERATIONS;
+    }
+    
+    /**
+     * Get the current generation.
+     * @return the generation, from 0 to 127
+     */
+    public int getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * Get the value of an entry.
+     * @param data the data word returned by probe()
+     * @return the value
+     */
+    public static double getValue(long data) {
+        return Float.intBitsToFloat((int) data);
+    }
+    
+    /**
+     * Get the move of an entry.
+     * @param data the data word returned by probe()
+     * @return the move
+     */
+    public static int getMove(long data) {
+        return (int) (data >>> MOVE_SHIFT) & 0xFFFF;
+    }
+    
+    /**
+     * Get the depth of an entry.
+     * @param data the data word returned by probe()
+     * @return the depth
+     */
+    public static int getDepth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+    
+    /**
+     * Get the generation an entry was stored in.
+     * @param data the data word returned by probe()
+     * @return the generation
+     */
+    public static int getGeneration(long data) {
+        return (int) (data >>> GENERATION_SHIFT) & (GENERATIONS - 1);
+    }
+    
+    /**
+     * Removes every entry from the table and resets the statistics.
+     */
+    public void clear() {
+        for(int i = 0; i < entries.length(); i++) {
+            entries.setOpaque(i, 0);
+        }
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        replacements.reset();
+    }
+    
+    /**
+     * Get the number of entries the table can hold.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Get the number of bytes taken up by the entries of the table.
+     * @return the memory used
+     */
+    public long getMemoryBytes() {
+        return (long) capacity * ENTRY_BYTES;
+    }
+    
+    /**
+     * Get the number of times probe() has been called.
+     * @return the number of probes
+     */
+    public long getProbes() {
+        return probes.sum();
+    }
+    
+    /**
+     * Get the number of times probe() found its key.
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    /**
+     * Get the fraction of probes that found their key.
+     * @return the hit rate, from 0 to 1
+     */
+    public double getHitRate() {
+        long p = probes.sum();
+        return p == 0 ? 0 : (double) hits.sum() / p;
+    }
+    
+    /**
+     * Get the number of times store() has been called.
+     * @return the number of stores
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+    
+    /**
+     * Get the number of stores that pushed out an entry with another key.
+     * @return the number of replacements
+     */
+    public long getReplacements() {
+        return replacements.sum();
+    }
+    
+    /**
+     * Get the number of entries in use, by looking at every slot.
+     * @return the number of entries
+     */
+    public int countEntries() {
+        int count = 0;
+        for(int i = 0; i < capacity; i++) {
+            if(entries.getOpaque(2 * i + 1) != MISS) count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Describes the size of the table and how well it has been doing.
+     * @return the description
+     */
+    @Override
+    public String toString() {
+        return String.format("%d entries (%d KB), %d in use, %d probes, %.1f%% hits, " +
+            "%d stores, %d replacements", capacity, getMemoryBytes() >> 10,
+            countEntries(), getProbes(), 100 * getHitRate(), getStores(),
+            getReplacements());
+    }
+
+}
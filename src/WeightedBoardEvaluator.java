@@ -0,0 +1,78 @@
+/**
+ * A BoardEvaluator that adds up the WellMetrics of a well, each multiplied
+ * by its own weight. The default weights penalize a tall, bumpy stack with
+ * holes in it and reward clearing lines, which is enough for a
+ * LookaheadSearch to play for a very long time.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public class WeightedBoardEvaluator implements BoardEvaluator {
+    
+    /**
+     * The weights for the aggregate height, the holes, the bumpiness, the
+     * row transitions and the total well depth, and the reward for clearing
+     * each number of lines at once.
+     */
+    private double height_weight, hole_weight, bumpiness_weight;
+    private double transition_weight, well_weight;
+    private double[] clear_rewards;
+    
+    /**
+     * Constructor for a new WeightedBoardEvaluator with the default weights.
+     */
+    public WeightedBoardEvaluator() {
+        this(-0.51, -0.36, -0.18, -0.05, -0.02,
+            new double[] {0.0, 0.76, 1.52, 2.28, 3.04});
+    }
+    
+    /**
+     * Constructor for a new WeightedBoardEvaluator with the given weights.
+     * Weights for things that make a well worse should be negative.
+     * @param height_weight the weight of the aggregate height
+     * @param hole_weight the weight of the number of holes
+     * @param bumpiness_weight the weight of the bumpiness
+     * @param transition_weight the weight of the row transitions
+     * @param well_weight the weight of the total well depth
+     * @param clear_rewards the reward for clearing 0 to 4 lines at once
+     */
+    public WeightedBoardEvaluator(double height_weight, double hole_weight,
+        double bumpiness_weight, double transition_weight, double well_weight,
+        double[] clear_rewards) {
+        if(clear_rewards.length != 5) {
+            throw new IllegalArgumentException("Invalid argument!");
+        }
+        this.height_weight = height_weight;
+        this.hole_weight = hole_weight;
+        this.bumpiness_weight = bumpiness_weight;
+        this.transition_weight = transition_weight;
+        this.well_weight = well_weight;
+        this.clear_rewards = clear_rewards.clone();
+    }
+    
+    /**
+     * Judge the shape of the stack in a well.
+     * @param well the TetriminoWell
+     * @return the weighted sum of its metrics
+     */
+    @Override
+    public double evaluate(TetriminoWell well) {
+        WellMetrics metrics = well.getMetrics();
+        return height_weight * metrics.getAggregateHeight() +
+            hole_weight * metrics.getHoles() +
+            bumpiness_weight * metrics.getBumpiness() +
+            transition_weight * metrics.getRowTransitions() +
+            well_weight * metrics.getWellDepthSum();
+    }
+    
+    /**
+     * Get the reward for clearing lines with one Tetrimino.
+     * @param lines the number of lines cleared, from 0 to 4
+     * @return the reward
+     */
+    @Override
+    public double getClearReward(int lines) {
+        return clear_rewards[lines];
+    }
+
+}
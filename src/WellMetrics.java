@@ -0,0 +1,85 @@
+/**
+ * A read-only view of the shape of the stack in a TetriminoWell, for bots
+ * and analytics that judge a position after every placement. The
+ * TetriminoWell keeps the heights, holes and row transitions up to date as
+ * Tetriminos settle and lines are cleared, and works the bumpiness and well
+ * depths out from the heights when they are read, which takes a pass over
+ * the columns. Columns are numbered from 0 to Tetris.TETRIS_WIDTH - 1, the
+ * same as in the TetrisModel, and heights are counted up from the floor of
+ * the well.
+ * 
+ * @author John Cowgill, Baldwin Browne, Chunda Zeng
+ * @version October 18, 2026
+ */
+public interface WellMetrics {
+    
+    /**
+     * Get the rows occupied in one column of the well, as a bit board.
+     * @param column the column
+     * @return the bit mask, where bit r is set if row r is occupied
+     */
+    int getColumnMask(int column);
+    
+    /**
+     * Get the height of one column, from the floor to its highest block.
+     * @param column the column
+     * @return the height, or 0 if the column is empty
+     */
+    int getColumnHeight(int column);
+    
+    /**
+     * Get the number of holes in one column, which are the empty cells
+     * below its highest block.
+     * @param column the column
+     * @return the number of holes
+     */
+    int getColumnHoles(int column);
+    
+    /**
+     * Get the depth of the well at one column, which is how far the column
+     * is below the lower of its two neighbours. The sides of the well count
+     * as neighbours that reach all the way to the top.
+     * @param column the column
+     * @return the depth, or 0 if the column is not below both neighbours
+     */
+    int getWellDepth(int column);
+    
+    /**
+     * Get the height of the highest column.
+     * @return the height
+     */
+    int getMaxHeight();
+    
+    /**
+     * Get the sum of the heights of every column.
+     * @return the aggregate height
+     */
+    int getAggregateHeight();
+    
+    /**
+     * Get the number of holes in every column.
+     * @return the number of holes
+     */
+    int getHoles();
+    
+    /**
+     * Get the sum of the differences in height between neighbouring columns.
+     * @return the bumpiness
+     */
+    int getBumpiness();
+    
+    /**
+     * Get the sum of the well depths of every column.
+     * @return the total well depth
+     */
+    int getWellDepthSum();
+    
+    /**
+     * Get the number of times a filled cell is next to an empty one along a
+     * row, counting the sides of the well as filled, summed over every row
+     * above the floor.
+     * @return the number of row transitions
+     */
+    int getRowTransitions();
+
+}